@@ -0,0 +1,33 @@
+package com.apiextractor.agent;
+
+import java.lang.management.ManagementFactory;
+
+// 读取当前线程累计分配的堆内存，用于统计每个扫描类产生的垃圾；JVM不支持时返回-1
+final class AllocationMeter {
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = init();
+
+    private AllocationMeter() {
+    }
+
+    private static com.sun.management.ThreadMXBean init() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                    return sunBean;
+                }
+            }
+        } catch (Throwable ignore) {
+        }
+        return null;
+    }
+
+    static boolean isSupported() {
+        return THREAD_BEAN != null;
+    }
+
+    static long currentThreadAllocatedBytes() {
+        return THREAD_BEAN == null ? -1 : THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,239 @@
+package com.apiextractor.agent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+// 一次扫描中遇到的注解定义图：注解类型描述符 -> 其上的元注解
+// 组合注解（如以@GetMapping标注的@ApiGet）沿元注解解析到AnnotationTable中的角色，每个注解类型的结果只计算一次
+// 扫描过程中定义还不完整，依赖尚未出现的定义的注解解析为null；访问器先按无关处理并记下这些注解，
+// 单元结束或complete()之后它们确实影响结果时才重新分析使用它们的类
+final class AnnotationGraph {
+    // 这些包中的注解定义不会被扫描，也不可能组合Spring注解，直接视为无关
+    // Spring自身的组合注解都在AnnotationTable中，表外的Spring注解（@CrossOrigin、@Validated等）不会是控制器或映射
+    private static final String[] TERMINAL_PREFIXES = {"Ljava/", "Ljavax/", "Ljakarta/", "Ljdk/", "Lkotlin/", "Lsun/",
+            "Lorg/springframework/"};
+
+    // 注解解析后的角色；组合注解可能同时是控制器和请求映射，例如同时标注@RestController和@RequestMapping
+    static final class Resolution {
+        static final Resolution NONE = new Resolution(null, false, null, null, null);
+
+        final AnnotationTable.Role stereotype;
+        final boolean mapping;
+        final String httpMethod;
+        // 元注解上声明的路径，组合注解自身的value/path属性优先
+        final String path;
+        final String parameterSource;
+
+        Resolution(AnnotationTable.Role stereotype, boolean mapping, String httpMethod, String path,
+                   String parameterSource) {
+            this.stereotype = stereotype;
+            this.mapping = mapping;
+            this.httpMethod = httpMethod;
+            this.path = path;
+            this.parameterSource = parameterSource;
+        }
+
+        static Resolution of(AnnotationTable.Entry entry) {
+            switch (entry.role) {
+                case CONTROLLER:
+                case REST_CONTROLLER:
+                    return new Resolution(entry.role, false, null, null, null);
+                case MAPPING:
+                    return new Resolution(null, true, entry.httpMethod, null, null);
+                default:
+                    return new Resolution(null, false, null, null, entry.parameterSource);
+            }
+        }
+
+        boolean isController() {
+            return stereotype != null;
+        }
+    }
+
+    // 注解类型上的元注解，以及元注解value/path属性的第一个值
+    static final class Definition {
+        final List<String> metaAnnotations;
+        final Map<String, String> metaPaths;
+
+        Definition(List<String> metaAnnotations, Map<String, String> metaPaths) {
+            this.metaAnnotations = metaAnnotations;
+            this.metaPaths = metaPaths;
+        }
+    }
+
+    private final AnnotationTable table;
+    // 类名 -> 是否会被扫描；被包过滤排除的注解永远不会有定义，直接视为无关
+    private final Predicate<String> scannedClasses;
+    private final ConcurrentHashMap<String, Resolution> tableResolutions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Definition> definitions = new ConcurrentHashMap<>();
+    // 已确定的解析结果；定义只增不改，确定的结果在之后也不会变化
+    private final ConcurrentHashMap<String, Resolution> resolved = new ConcurrentHashMap<>();
+    private volatile boolean complete;
+    private volatile byte[][] prefilterDescriptors;
+
+    AnnotationGraph(AnnotationTable table, Predicate<String> scannedClasses) {
+        this.table = table;
+        this.scannedClasses = scannedClasses;
+        this.prefilterDescriptors = table.candidateDescriptors();
+    }
+
+    AnnotationTable table() {
+        return table;
+    }
+
+    // 同一个注解类型在多个单元中出现时保留第一个定义
+    void define(String descriptor, Definition definition) {
+        if (table.lookup(descriptor) == null) {
+            definitions.putIfAbsent(descriptor, definition);
+        }
+    }
+
+    boolean isDefined(String descriptor) {
+        return definitions.containsKey(descriptor) || table.lookup(descriptor) != null;
+    }
+
+    int definitionCount() {
+        return definitions.size();
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    // 所有单元都已扫描，之后仍没有定义的注解视为无关；同时把组合控制器和组合映射注解加入预过滤的候选描述符
+    void complete() {
+        complete = true;
+        List<byte[]> descriptors = new ArrayList<>();
+        Collections.addAll(descriptors, table.candidateDescriptors());
+        for (String descriptor : composedCandidates()) {
+            descriptors.add(descriptor.getBytes(StandardCharsets.UTF_8));
+        }
+        prefilterDescriptors = descriptors.toArray(new byte[0][]);
+    }
+
+    // 常量池预过滤的候选描述符
+    byte[][] prefilterDescriptors() {
+        return prefilterDescriptors;
+    }
+
+    // 间接标注了控制器注解的注解类型，只在complete()之后有意义
+    List<String> composedControllers() {
+        List<String> composed = new ArrayList<>();
+        for (String descriptor : definitions.keySet()) {
+            Resolution resolution = resolve(descriptor);
+            if (resolution != null && resolution.isController()) {
+                composed.add(descriptor);
+            }
+        }
+        Collections.sort(composed);
+        return composed;
+    }
+
+    // 间接标注了控制器或请求映射注解的注解类型，只在complete()之后有意义
+    List<String> composedCandidates() {
+        List<String> composed = new ArrayList<>();
+        for (String descriptor : definitions.keySet()) {
+            Resolution resolution = resolve(descriptor);
+            if (resolution != null && (resolution.isController() || resolution.mapping)) {
+                composed.add(descriptor);
+            }
+        }
+        Collections.sort(composed);
+        return composed;
+    }
+
+    // 返回注解的角色，无关的注解返回Resolution.NONE；定义尚不完整时返回null
+    Resolution resolve(String descriptor) {
+        AnnotationTable.Entry entry = table.lookup(descriptor);
+        if (entry != null) {
+            return tableResolutions.computeIfAbsent(descriptor, d -> Resolution.of(entry));
+        }
+        Resolution result = resolved.get(descriptor);
+        if (result != null) {
+            return result;
+        }
+        return resolve(descriptor, new HashSet<>());
+    }
+
+    private Resolution resolve(String descriptor, Set<String> visiting) {
+        AnnotationTable.Entry entry = table.lookup(descriptor);
+        if (entry != null) {
+            return tableResolutions.computeIfAbsent(descriptor, d -> Resolution.of(entry));
+        }
+        Resolution result = resolved.get(descriptor);
+        if (result != null) {
+            return result;
+        }
+        if (isTerminal(descriptor)) {
+            return memoize(descriptor, Resolution.NONE);
+        }
+        Definition definition = definitions.get(descriptor);
+        if (definition == null) {
+            return complete || !scannedClasses.test(className(descriptor)) ? memoize(descriptor, Resolution.NONE) : null;
+        }
+        // 元注解之间可能互相引用（例如@Documented），回到正在解析的注解时按无关处理
+        if (!visiting.add(descriptor)) {
+            return Resolution.NONE;
+        }
+
+        AnnotationTable.Role stereotype = null;
+        boolean mapping = false;
+        String httpMethod = null;
+        String path = null;
+        String parameterSource = null;
+        boolean unknown = false;
+        for (String meta : definition.metaAnnotations) {
+            Resolution metaResolution = resolve(meta, visiting);
+            if (metaResolution == null) {
+                unknown = true;
+                continue;
+            }
+            if (metaResolution.stereotype != null && stereotype != AnnotationTable.Role.REST_CONTROLLER) {
+                stereotype = metaResolution.stereotype;
+            }
+            if (metaResolution.mapping && !mapping) {
+                mapping = true;
+                httpMethod = metaResolution.httpMethod;
+                String metaPath = definition.metaPaths.get(meta);
+                path = metaPath != null ? metaPath : metaResolution.path;
+            }
+            if (parameterSource == null) {
+                parameterSource = metaResolution.parameterSource;
+            }
+        }
+        visiting.remove(descriptor);
+        if (unknown) {
+            return null;
+        }
+        if (stereotype == null && !mapping && parameterSource == null) {
+            return memoize(descriptor, Resolution.NONE);
+        }
+        return memoize(descriptor, new Resolution(stereotype, mapping, httpMethod, path, parameterSource));
+    }
+
+    private Resolution memoize(String descriptor, Resolution resolution) {
+        Resolution previous = resolved.putIfAbsent(descriptor, resolution);
+        return previous != null ? previous : resolution;
+    }
+
+    // 注解描述符 Lcom/acme/ApiGet; 对应的类名
+    static String className(String descriptor) {
+        return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+    }
+
+    private static boolean isTerminal(String descriptor) {
+        for (String prefix : TERMINAL_PREFIXES) {
+            if (descriptor.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,165 @@
+package com.apiextractor.agent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// 注解描述符 -> 角色的查找表，访问器对每个注解只做一次哈希查找，不再逐个做子串匹配
+// 参数 annotations= 可以追加自定义注解，格式为 类名:角色，多个条目以 ; 分隔，例如
+// annotations=com.acme.ApiController:controller;com.acme.ApiGet:get;com.acme.Query:query
+final class AnnotationTable {
+    // @RequestMapping(method = ...) 中的枚举类型
+    static final String REQUEST_METHOD = "Lorg/springframework/web/bind/annotation/RequestMethod;";
+
+    private static final String WEB_BIND = "org.springframework.web.bind.annotation.";
+
+    enum Role {
+        // 类上的控制器注解
+        CONTROLLER,
+        REST_CONTROLLER,
+        // 类或方法上的请求映射，httpMethod为空时从method属性读取
+        MAPPING,
+        // 方法参数的来源
+        PARAMETER
+    }
+
+    static final class Entry {
+        final Role role;
+        final String httpMethod;
+        final String parameterSource;
+
+        private Entry(Role role, String httpMethod, String parameterSource) {
+            this.role = role;
+            this.httpMethod = httpMethod;
+            this.parameterSource = parameterSource;
+        }
+
+        boolean isController() {
+            return role == Role.CONTROLLER || role == Role.REST_CONTROLLER;
+        }
+    }
+
+    private static final AnnotationTable DEFAULTS = new AnnotationTable(Collections.<String>emptyList());
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    // 控制器注解的描述符字节，供常量池预过滤逐字节比较
+    private final byte[][] controllerDescriptors;
+    // 控制器和请求映射注解的描述符字节；接口和父类上的映射也需要完整解析
+    private final byte[][] candidateDescriptors;
+    // 控制器和请求映射注解的类名，用于在Jandex索引中查找候选类
+    private final List<String> candidateClassNames;
+    private final String fingerprint;
+
+    AnnotationTable(List<String> customSpecs) {
+        put("org.springframework.stereotype.Controller", new Entry(Role.CONTROLLER, null, null));
+        put(WEB_BIND + "RestController", new Entry(Role.REST_CONTROLLER, null, null));
+        put(WEB_BIND + "RequestMapping", new Entry(Role.MAPPING, null, null));
+        put(WEB_BIND + "GetMapping", new Entry(Role.MAPPING, "GET", null));
+        put(WEB_BIND + "PostMapping", new Entry(Role.MAPPING, "POST", null));
+        put(WEB_BIND + "PutMapping", new Entry(Role.MAPPING, "PUT", null));
+        put(WEB_BIND + "DeleteMapping", new Entry(Role.MAPPING, "DELETE", null));
+        put(WEB_BIND + "PatchMapping", new Entry(Role.MAPPING, "PATCH", null));
+        put(WEB_BIND + "RequestParam", new Entry(Role.PARAMETER, null, "query"));
+        put(WEB_BIND + "PathVariable", new Entry(Role.PARAMETER, null, "path"));
+        put(WEB_BIND + "RequestBody", new Entry(Role.PARAMETER, null, "body"));
+        put(WEB_BIND + "RequestHeader", new Entry(Role.PARAMETER, null, "header"));
+
+        List<String> accepted = new ArrayList<>();
+        for (String spec : customSpecs) {
+            String trimmed = spec.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.lastIndexOf(':');
+            Entry entry = colon > 0 ? parseRole(trimmed.substring(colon + 1).trim()) : null;
+            if (entry == null) {
+                System.err.println("[API Scanner] Warning: Ignoring annotation mapping '" + trimmed
+                        + "', expected <class>:controller|rest|mapping|get|post|put|delete|patch|query|path|body|header");
+                continue;
+            }
+            put(trimmed.substring(0, colon).trim(), entry);
+            accepted.add(trimmed);
+        }
+
+        List<byte[]> controllers = new ArrayList<>();
+        List<byte[]> candidates = new ArrayList<>();
+        List<String> candidateNames = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            byte[] descriptor = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            if (entry.getValue().isController()) {
+                controllers.add(descriptor);
+            }
+            if (entry.getValue().isController() || entry.getValue().role == Role.MAPPING) {
+                candidates.add(descriptor);
+                candidateNames.add(AnnotationGraph.className(entry.getKey()));
+            }
+        }
+        this.candidateClassNames = Collections.unmodifiableList(candidateNames);
+        this.controllerDescriptors = controllers.toArray(new byte[0][]);
+        this.candidateDescriptors = candidates.toArray(new byte[0][]);
+        this.fingerprint = accepted.isEmpty() ? "default" : String.join(";", accepted);
+    }
+
+    static AnnotationTable defaults() {
+        return DEFAULTS;
+    }
+
+    private static Entry parseRole(String role) {
+        switch (role.toLowerCase(Locale.ROOT)) {
+            case "controller":
+                return new Entry(Role.CONTROLLER, null, null);
+            case "rest":
+            case "restcontroller":
+                return new Entry(Role.REST_CONTROLLER, null, null);
+            case "mapping":
+                return new Entry(Role.MAPPING, null, null);
+            case "get":
+            case "post":
+            case "put":
+            case "delete":
+            case "patch":
+                return new Entry(Role.MAPPING, role.toUpperCase(Locale.ROOT), null);
+            case "query":
+            case "path":
+            case "body":
+            case "header":
+                return new Entry(Role.PARAMETER, null, role.toLowerCase(Locale.ROOT));
+            default:
+                return null;
+        }
+    }
+
+    private void put(String className, Entry entry) {
+        entries.put(descriptorOf(className), entry);
+    }
+
+    static String descriptorOf(String className) {
+        return "L" + className.replace('.', '/') + ";";
+    }
+
+    // 不认识的注解返回null
+    Entry lookup(String descriptor) {
+        return entries.get(descriptor);
+    }
+
+    byte[][] controllerDescriptors() {
+        return controllerDescriptors;
+    }
+
+    byte[][] candidateDescriptors() {
+        return candidateDescriptors;
+    }
+
+    List<String> candidateClassNames() {
+        return candidateClassNames;
+    }
+
+    // 自定义映射会改变扫描结果，计入缓存规则
+    String fingerprint() {
+        return fingerprint;
+    }
+}
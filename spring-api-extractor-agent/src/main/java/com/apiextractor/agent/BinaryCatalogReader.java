@@ -0,0 +1,280 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// 读取format=bin的结果文件（格式见BinaryCatalogWriter），整个文件只读映射，不读入堆
+// 端点通过可复用的Endpoint按编号解码，只保存字符串编号；字符串只在调用方需要时才解码，
+// 因此汇总大量结果文件时可以直接比较编号或按需取出少数字段，不必为每个端点创建对象
+public final class BinaryCatalogReader implements Closeable {
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int endpointCount;
+    private final int stringCount;
+    private final int controllers;
+    private final int scannedJars;
+    private final int timestampString;
+    private final int stringIndexPos;
+    private final int recordIndexPos;
+    // 下一个要解码的变长整数的位置，因此读取器不是线程安全的，每个线程各自打开
+    private int position;
+
+    // 一个端点记录的解码结果，read时整体覆盖，可以在遍历中反复使用
+    public static final class Endpoint {
+        private final BinaryCatalogReader reader;
+        int index = -1;
+        int path;
+        int sourceClass;
+        int sourceMethod;
+        int methodCount;
+        int[] methods = new int[4];
+        int parameterCount;
+        // 参数名与来源交替存放
+        int[] parameters = new int[8];
+        long invocations;
+
+        private Endpoint(BinaryCatalogReader reader) {
+            this.reader = reader;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public int pathId() {
+            return path;
+        }
+
+        public int sourceClassId() {
+            return sourceClass;
+        }
+
+        public String path() {
+            return reader.string(path);
+        }
+
+        public String sourceClass() {
+            return reader.string(sourceClass);
+        }
+
+        public String sourceMethod() {
+            return reader.string(sourceMethod);
+        }
+
+        public int methodCount() {
+            return methodCount;
+        }
+
+        public String method(int i) {
+            return reader.string(methods[i]);
+        }
+
+        public int parameterCount() {
+            return parameterCount;
+        }
+
+        public String parameterName(int i) {
+            return reader.string(parameters[i * 2]);
+        }
+
+        public String parameterSource(int i) {
+            return reader.string(parameters[i * 2 + 1]);
+        }
+
+        // 写出时没有启用调用计数则返回-1
+        public long invocations() {
+            return invocations;
+        }
+
+        public ApiDefinition toApiDefinition() {
+            ApiDefinition api = new ApiDefinition(path());
+            for (int i = 0; i < methodCount; i++) {
+                api.methods.add(method(i));
+            }
+            for (int i = 0; i < parameterCount; i++) {
+                api.parameters.put(parameterName(i), parameterSource(i));
+            }
+            api.sourceClass = sourceClass();
+            api.sourceMethod = sourceMethod();
+            return api;
+        }
+    }
+
+    private BinaryCatalogReader(FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.limit() < BinaryCatalogWriter.HEADER_SIZE || buffer.getInt(0) != BinaryCatalogWriter.MAGIC) {
+            throw new IOException("Not a binary API catalog");
+        }
+        int version = buffer.getInt(4);
+        if (version != BinaryCatalogWriter.VERSION) {
+            throw new IOException("Unsupported binary catalog version " + version);
+        }
+        endpointCount = buffer.getInt(8);
+        stringCount = buffer.getInt(12);
+        controllers = buffer.getInt(16);
+        scannedJars = buffer.getInt(20);
+        timestampString = buffer.getInt(24);
+        stringIndexPos = buffer.getInt(28);
+        recordIndexPos = buffer.getInt(32);
+    }
+
+    public static BinaryCatalogReader open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BinaryCatalogReader(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return endpointCount;
+    }
+
+    public int controllers() {
+        return controllers;
+    }
+
+    public int scannedJars() {
+        return scannedJars;
+    }
+
+    public String timestamp() {
+        return string(timestampString);
+    }
+
+    public int stringCount() {
+        return stringCount;
+    }
+
+    public String string(int id) {
+        int start = buffer.getInt(stringIndexPos + id * 4);
+        int end = buffer.getInt(stringIndexPos + id * 4 + 4);
+        byte[] bytes = new byte[end - start];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(start);
+        slice.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // 字符串表按字节序排列，二分查找时直接与映射的字节比较；不存在时返回-1
+    public int stringId(String value) {
+        byte[] target = value.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = stringCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareString(mid, target);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public Endpoint newEndpoint() {
+        return new Endpoint(this);
+    }
+
+    // 解码第index个端点到endpoint中并返回它
+    public Endpoint read(int index, Endpoint endpoint) {
+        position = buffer.getInt(recordIndexPos + index * 4);
+        endpoint.index = index;
+        endpoint.path = (int) nextVarint();
+        endpoint.sourceClass = (int) nextVarint();
+        endpoint.sourceMethod = (int) nextVarint();
+        int methodCount = (int) nextVarint();
+        if (endpoint.methods.length < methodCount) {
+            endpoint.methods = Arrays.copyOf(endpoint.methods, methodCount);
+        }
+        for (int i = 0; i < methodCount; i++) {
+            endpoint.methods[i] = (int) nextVarint();
+        }
+        endpoint.methodCount = methodCount;
+        int parameterCount = (int) nextVarint();
+        if (endpoint.parameters.length < parameterCount * 2) {
+            endpoint.parameters = Arrays.copyOf(endpoint.parameters, parameterCount * 2);
+        }
+        for (int i = 0; i < parameterCount * 2; i++) {
+            endpoint.parameters[i] = (int) nextVarint();
+        }
+        endpoint.parameterCount = parameterCount;
+        endpoint.invocations = nextVarint() - 1;
+        return endpoint;
+    }
+
+    // 第一个路径等于path、且声明了httpMethod（为null时不限）的端点编号，没有时返回-1
+    // 只比较记录开头的字符串编号，扫描过程中不解码字符串
+    public int find(String path, String httpMethod) {
+        int pathId = stringId(path);
+        int methodId = httpMethod == null ? -1 : stringId(httpMethod);
+        if (pathId < 0 || (httpMethod != null && methodId < 0)) {
+            return -1;
+        }
+        for (int index = 0; index < endpointCount; index++) {
+            position = buffer.getInt(recordIndexPos + index * 4);
+            if (nextVarint() != pathId) {
+                continue;
+            }
+            if (methodId < 0) {
+                return index;
+            }
+            nextVarint();
+            nextVarint();
+            int methodCount = (int) nextVarint();
+            for (int i = 0; i < methodCount; i++) {
+                if (nextVarint() == methodId) {
+                    return index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int compareString(int id, byte[] target) {
+        int start = buffer.getInt(stringIndexPos + id * 4);
+        int end = buffer.getInt(stringIndexPos + id * 4 + 4);
+        int length = Math.min(end - start, target.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (buffer.get(start + i) & 0xff) - (target[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (end - start) - target.length;
+    }
+
+    private long nextVarint() {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
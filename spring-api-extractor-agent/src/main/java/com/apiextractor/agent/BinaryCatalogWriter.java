@@ -0,0 +1,176 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// format=bin 的二进制结果文件，由BinaryCatalogReader内存映射读取，所有整数为大端序
+//
+// 头部（44字节）：
+//   magic "APIB" | version:int | endpointCount:int | stringCount:int | controllers:int | scannedJars:int
+//   timestampString:int | stringIndexPos:int | recordIndexPos:int | reserved:long
+// 字符串索引：stringCount+1个int，第i个字符串的UTF-8字节位于[offset[i], offset[i+1])
+// 字符串数据：去重后按UTF-8字节无符号序排列，读取方可以二分查找字符串编号而不解码
+// 端点索引：endpointCount个int，每个端点记录的起始位置
+// 端点记录（无符号LEB128变长整数）：
+//   path | class | method | httpMethodCount | httpMethod... | parameterCount | (name, source)... | invocations+1
+//   前几项都是字符串编号；invocations+1为0表示没有调用计数
+final class BinaryCatalogWriter {
+    static final int MAGIC = 0x41504942;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 44;
+
+    private final List<ApiDefinition> apis = new ArrayList<>();
+    private final Map<String, Integer> strings = new HashMap<>();
+    private String timestamp = "";
+    private int controllers;
+    private int scannedJars;
+
+    void header(String timestamp, int scannedJars, int controllers) {
+        this.timestamp = timestamp;
+        this.scannedJars = scannedJars;
+        this.controllers = controllers;
+    }
+
+    // 字符串表在写出时才能排序，端点先保存引用，只有最后一次性编码
+    void add(ApiDefinition api) {
+        apis.add(api);
+    }
+
+    void write(WritableByteChannel channel) throws IOException {
+        intern(timestamp);
+        for (ApiDefinition api : apis) {
+            intern(api.path);
+            intern(api.sourceClass);
+            intern(api.sourceMethod);
+            for (String method : api.methods) {
+                intern(method);
+            }
+            for (Map.Entry<String, String> parameter : api.parameters.entrySet()) {
+                intern(parameter.getKey());
+                intern(parameter.getValue());
+            }
+        }
+
+        // 按字节序排序后重新编号
+        byte[][] encoded = new byte[strings.size()][];
+        String[] values = strings.keySet().toArray(new String[0]);
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compareUnsigned(encoded[a], encoded[b]));
+        int stringDataSize = 0;
+        for (int i = 0; i < order.length; i++) {
+            strings.put(values[order[i]], i);
+            stringDataSize += encoded[order[i]].length;
+        }
+
+        VarintBuffer records = new VarintBuffer(apis.size() * 16);
+        int[] recordOffsets = new int[apis.size()];
+        for (int i = 0; i < apis.size(); i++) {
+            ApiDefinition api = apis.get(i);
+            recordOffsets[i] = records.size();
+            records.write(id(api.path));
+            records.write(id(api.sourceClass));
+            records.write(id(api.sourceMethod));
+            records.write(api.methods.size());
+            for (String method : api.methods) {
+                records.write(id(method));
+            }
+            records.write(api.parameters.size());
+            for (Map.Entry<String, String> parameter : api.parameters.entrySet()) {
+                records.write(id(parameter.getKey()));
+                records.write(id(parameter.getValue()));
+            }
+            records.write(api.counterId >= 0 ? InvocationCounters.count(api.counterId) + 1 : 0);
+        }
+
+        int stringIndexPos = HEADER_SIZE;
+        int stringDataPos = stringIndexPos + (order.length + 1) * 4;
+        int recordIndexPos = stringDataPos + stringDataSize;
+        int recordsPos = recordIndexPos + recordOffsets.length * 4;
+        ByteBuffer head = ByteBuffer.allocate(recordsPos);
+        head.putInt(MAGIC).putInt(VERSION).putInt(apis.size()).putInt(order.length)
+                .putInt(controllers).putInt(scannedJars).putInt(id(timestamp))
+                .putInt(stringIndexPos).putInt(recordIndexPos).putLong(0);
+        int position = stringDataPos;
+        for (Integer index : order) {
+            head.putInt(position);
+            position += encoded[index].length;
+        }
+        head.putInt(position);
+        for (Integer index : order) {
+            head.put(encoded[index]);
+        }
+        for (int offset : recordOffsets) {
+            head.putInt(recordsPos + offset);
+        }
+        head.flip();
+        writeFully(channel, head);
+        writeFully(channel, ByteBuffer.wrap(records.bytes(), 0, records.size()));
+    }
+
+    private void intern(String value) {
+        strings.putIfAbsent(value == null ? "" : value, 0);
+    }
+
+    private int id(String value) {
+        return strings.get(value == null ? "" : value);
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[i] & 0xff) - (b[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // 按需扩容的字节缓冲区，写入无符号LEB128
+    private static final class VarintBuffer {
+        private byte[] bytes;
+        private int size;
+
+        VarintBuffer(int capacity) {
+            bytes = new byte[Math.max(capacity, 64)];
+        }
+
+        void write(long value) {
+            if (size + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
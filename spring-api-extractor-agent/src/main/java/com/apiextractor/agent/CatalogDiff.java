@@ -0,0 +1,726 @@
+package com.apiextractor.agent;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.zip.GZIPInputStream;
+
+// 比较两份扫描结果，输出新增、删除和变化的端点
+// 端点按规范键（路径 + 规范类名 + 处理方法名）排序后做一次归并：两边都只顺序读取，HTTP方法集合和参数的差异记为变化
+// 排序顺序是键的哈希值，哈希相同时再比较键本身，因此排序和归并基本只比较long；输出的差异也按这个顺序排列
+// 读取是流式的，端点估算占用达到RUN_BYTES时排序一段写到临时文件，最后多路归并，内存占用与结果大小无关
+// 两份结果在两个线程上同时读取和排序；支持所有输出格式：json、compact、ndjson（可gzip压缩）以及bin
+public final class CatalogDiff {
+    private static final long RUN_BYTES = 32L * 1024 * 1024;
+    // 排序时哈希值和段内下标打包在一个long中，下标占低24位
+    private static final int INDEX_BITS = 24;
+    private static final int MAX_RUN_ENTRIES = (1 << INDEX_BITS) - 1;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // 比较结果的汇总
+    public static final class Summary {
+        public int added;
+        public int removed;
+        public int changed;
+        public int unchanged;
+
+        public boolean hasChanges() {
+            return added + removed + changed > 0;
+        }
+
+        @Override
+        public String toString() {
+            return added + " added, " + removed + " removed, " + changed + " changed, " + unchanged + " unchanged";
+        }
+    }
+
+    // 一个端点的规范形式：HTTP方法排序去重，参数按名称排序
+    static final class Entry implements Comparable<Entry> {
+        // 键的39位哈希，非负，左移INDEX_BITS后仍为正数
+        final long hash;
+        final String path;
+        final String sourceClass;
+        final String sourceMethod;
+        final String[] methods;
+        // 参数名与来源交替存放
+        final String[] parameters;
+
+        Entry(String path, String sourceClass, String sourceMethod, String[] methods, String[] parameters) {
+            this.path = path;
+            this.sourceClass = sourceClass;
+            this.sourceMethod = sourceMethod;
+            this.methods = methods;
+            this.parameters = parameters;
+            this.hash = keyHash(path, sourceClass, sourceMethod);
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (hash != other.hash) {
+                return hash < other.hash ? -1 : 1;
+            }
+            int cmp = path.compareTo(other.path);
+            if (cmp == 0) {
+                cmp = sourceClass.compareTo(other.sourceClass);
+            }
+            return cmp != 0 ? cmp : sourceMethod.compareTo(other.sourceMethod);
+        }
+
+        // 同一个键出现多次（旧版本的结果中有重复端点）时合并HTTP方法和参数
+        Entry merge(Entry other) {
+            TreeSet<String> mergedMethods = new TreeSet<>(Arrays.asList(methods));
+            mergedMethods.addAll(Arrays.asList(other.methods));
+            TreeMap<String, String> mergedParameters = parameterMap(other);
+            mergedParameters.putAll(parameterMap(this));
+            return new Entry(path, sourceClass, sourceMethod, mergedMethods.toArray(new String[0]),
+                    flatten(mergedParameters));
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(path);
+            out.writeUTF(sourceClass);
+            out.writeUTF(sourceMethod);
+            writeStrings(out, methods);
+            writeStrings(out, parameters);
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            String path;
+            try {
+                path = in.readUTF();
+            } catch (EOFException e) {
+                return null;
+            }
+            return new Entry(path, in.readUTF(), in.readUTF(), readStrings(in), readStrings(in));
+        }
+    }
+
+    // 从读取到的字段构造规范化的端点，并估算这一段已占用的内存
+    // 类名、HTTP方法和参数在一份结果中大量重复，同一段内共享同一个字符串实例
+    static final class EntryBuilder {
+        private final Map<String, String> strings = new HashMap<>();
+        final List<String> methods = new ArrayList<>();
+        // 参数名与来源交替存放
+        final List<String> parameters = new ArrayList<>();
+        long retainedBytes;
+
+        Entry build(String path, String sourceClass, String sourceMethod) {
+            String[] sortedMethods = new String[methods.size()];
+            int methodCount = 0;
+            methods.sort(null);
+            for (String method : methods) {
+                if (methodCount == 0 || !method.equals(sortedMethods[methodCount - 1])) {
+                    sortedMethods[methodCount++] = shared(method);
+                }
+            }
+            String[] sortedParameters = parameters.toArray(new String[0]);
+            // 参数通常只有几个，按名称插入排序
+            for (int i = 2; i < sortedParameters.length; i += 2) {
+                String name = sortedParameters[i];
+                String source = sortedParameters[i + 1];
+                int j = i - 2;
+                while (j >= 0 && sortedParameters[j].compareTo(name) > 0) {
+                    sortedParameters[j + 2] = sortedParameters[j];
+                    sortedParameters[j + 3] = sortedParameters[j + 1];
+                    j -= 2;
+                }
+                sortedParameters[j + 2] = name;
+                sortedParameters[j + 3] = source;
+            }
+            for (int i = 0; i < sortedParameters.length; i++) {
+                sortedParameters[i] = shared(sortedParameters[i]);
+            }
+            methods.clear();
+            parameters.clear();
+            path = nullToEmpty(path);
+            sourceMethod = nullToEmpty(sourceMethod);
+            retainedBytes += 72 + 4L * (methodCount + sortedParameters.length)
+                    + stringBytes(path) + stringBytes(sourceMethod);
+            return new Entry(path, shared(nullToEmpty(EndpointRegistry.normalizeClassName(sourceClass))),
+                    sourceMethod, methodCount == sortedMethods.length ? sortedMethods
+                    : Arrays.copyOf(sortedMethods, methodCount), sortedParameters);
+        }
+
+        private String shared(String value) {
+            String existing = strings.putIfAbsent(value, value);
+            if (existing != null) {
+                return existing;
+            }
+            retainedBytes += stringBytes(value) + 48;
+            return value;
+        }
+
+        // 一段写出后其中的端点不再被引用，共享的字符串也重新开始统计
+        void reset() {
+            strings.clear();
+            retainedBytes = 0;
+        }
+
+        private static long stringBytes(String value) {
+            return 40 + 2L * value.length();
+        }
+    }
+
+    // 三个字符串的哈希值组合后再混合（MurmurHash3的fmix64），取高39位
+    static long keyHash(String path, String sourceClass, String sourceMethod) {
+        long h = path.hashCode();
+        h = h * 0x9E3779B97F4A7C15L + sourceClass.hashCode();
+        h = h * 0x9E3779B97F4A7C15L + sourceMethod.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h >>> (INDEX_BITS + 1);
+    }
+
+    private CatalogDiff() {
+    }
+
+    // 把差异以NDJSON写到out，每行一个变化的端点，并返回汇总；out由调用方关闭
+    public static Summary diff(File oldCatalog, File newCatalog, OutputStream out) throws IOException {
+        FutureTask<SortedEntries> oldTask = new FutureTask<>(() -> sort(oldCatalog));
+        Thread sorter = new Thread(oldTask, "api-diff-sort");
+        sorter.setDaemon(true);
+        sorter.start();
+        SortedEntries newEntries = null;
+        try {
+            newEntries = sort(newCatalog);
+        } finally {
+            if (newEntries == null) {
+                try {
+                    await(oldTask).close();
+                } catch (IOException | RuntimeException ignored) {
+                }
+            }
+        }
+
+        Summary summary = new Summary();
+        try (SortedEntries after = newEntries;
+             SortedEntries before = await(oldTask);
+             JsonGenerator generator = JSON_FACTORY.createGenerator(new NonClosingOutputStream(out),
+                     JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            Entry left = before.next();
+            Entry right = after.next();
+            while (left != null || right != null) {
+                int cmp = left == null ? 1 : right == null ? -1 : left.compareTo(right);
+                if (cmp < 0) {
+                    writeEndpoint(generator, "removed", left);
+                    summary.removed++;
+                    left = before.next();
+                } else if (cmp > 0) {
+                    writeEndpoint(generator, "added", right);
+                    summary.added++;
+                    right = after.next();
+                } else {
+                    if (writeChange(generator, left, right)) {
+                        summary.changed++;
+                    } else {
+                        summary.unchanged++;
+                    }
+                    left = before.next();
+                    right = after.next();
+                }
+            }
+            if (summary.hasChanges()) {
+                generator.writeRaw('\n');
+            }
+        }
+        return summary;
+    }
+
+    private static SortedEntries await(FutureTask<SortedEntries> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sorting catalog");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static void writeEndpoint(JsonGenerator generator, String change, Entry entry) throws IOException {
+        generator.writeStartObject();
+        writeKey(generator, change, entry);
+        generator.writeArrayFieldStart("methods");
+        for (String method : entry.methods) {
+            generator.writeString(method);
+        }
+        generator.writeEndArray();
+        generator.writeObjectFieldStart("parameters");
+        for (int i = 0; i < entry.parameters.length; i += 2) {
+            generator.writeStringField(entry.parameters[i], entry.parameters[i + 1]);
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    // 只写出有差异的部分：methods中是新增和删除的HTTP方法，parameters中是新增、删除和来源变化的参数
+    private static boolean writeChange(JsonGenerator generator, Entry before, Entry after) throws IOException {
+        boolean methodsChanged = !Arrays.equals(before.methods, after.methods);
+        boolean parametersChanged = !Arrays.equals(before.parameters, after.parameters);
+        if (!methodsChanged && !parametersChanged) {
+            return false;
+        }
+        generator.writeStartObject();
+        writeKey(generator, "changed", after);
+        if (methodsChanged) {
+            TreeSet<String> added = new TreeSet<>(Arrays.asList(after.methods));
+            added.removeAll(Arrays.asList(before.methods));
+            TreeSet<String> removed = new TreeSet<>(Arrays.asList(before.methods));
+            removed.removeAll(Arrays.asList(after.methods));
+            generator.writeObjectFieldStart("methods");
+            writeStringArray(generator, "added", added);
+            writeStringArray(generator, "removed", removed);
+            generator.writeEndObject();
+        }
+        if (parametersChanged) {
+            TreeMap<String, String> oldParameters = parameterMap(before);
+            TreeMap<String, String> newParameters = parameterMap(after);
+            generator.writeObjectFieldStart("parameters");
+            generator.writeObjectFieldStart("added");
+            for (String name : newParameters.keySet()) {
+                if (!oldParameters.containsKey(name)) {
+                    generator.writeStringField(name, newParameters.get(name));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeObjectFieldStart("removed");
+            for (String name : oldParameters.keySet()) {
+                if (!newParameters.containsKey(name)) {
+                    generator.writeStringField(name, oldParameters.get(name));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeObjectFieldStart("changed");
+            for (String name : newParameters.keySet()) {
+                String previous = oldParameters.get(name);
+                if (previous != null && !previous.equals(newParameters.get(name))) {
+                    generator.writeObjectFieldStart(name);
+                    generator.writeStringField("from", previous);
+                    generator.writeStringField("to", newParameters.get(name));
+                    generator.writeEndObject();
+                }
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        return true;
+    }
+
+    private static void writeKey(JsonGenerator generator, String change, Entry entry) throws IOException {
+        generator.writeStringField("change", change);
+        generator.writeStringField("path", entry.path);
+        generator.writeObjectFieldStart("source");
+        generator.writeStringField("class", entry.sourceClass);
+        generator.writeStringField("method", entry.sourceMethod);
+        generator.writeEndObject();
+    }
+
+    private static void writeStringArray(JsonGenerator generator, String name, Iterable<String> values)
+            throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (String value : values) {
+            generator.writeString(value);
+        }
+        generator.writeEndArray();
+    }
+
+    // 读取一份结果并按规范键排序；同一个键的多个端点合并成一个
+    static SortedEntries sort(File catalog) throws IOException {
+        List<File> runs = new ArrayList<>();
+        List<Entry> run = new ArrayList<>();
+        EntryBuilder builder = new EntryBuilder();
+        try {
+            try (EntrySource source = open(catalog, builder)) {
+                Entry entry;
+                while ((entry = source.next()) != null) {
+                    run.add(entry);
+                    if (builder.retainedBytes >= RUN_BYTES || run.size() == MAX_RUN_ENTRIES) {
+                        runs.add(spill(run));
+                        run.clear();
+                        builder.reset();
+                    }
+                }
+            }
+            sortRun(run);
+            if (!runs.isEmpty() && !run.isEmpty()) {
+                runs.add(spill(run));
+                run.clear();
+            }
+            return new SortedEntries(run, runs);
+        } catch (IOException | RuntimeException e) {
+            deleteAll(runs);
+            throw e;
+        }
+    }
+
+    // 先对打包了哈希和下标的long数组做基本类型排序，再只对哈希相同的少数端点按键排序
+    static void sortRun(List<Entry> run) {
+        long[] order = new long[run.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = run.get(i).hash << INDEX_BITS | i;
+        }
+        Arrays.sort(order);
+        Entry[] sorted = new Entry[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = run.get((int) (order[i] & MAX_RUN_ENTRIES));
+        }
+        for (int start = 0, end; start < sorted.length; start = end) {
+            end = start + 1;
+            while (end < sorted.length && sorted[end].hash == sorted[start].hash) {
+                end++;
+            }
+            if (end - start > 1) {
+                Arrays.sort(sorted, start, end);
+            }
+        }
+        run.clear();
+        run.addAll(Arrays.asList(sorted));
+    }
+
+    private static File spill(List<Entry> run) throws IOException {
+        sortRun(run);
+        File file = File.createTempFile("api-diff", ".run");
+        file.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+                64 * 1024))) {
+            for (Entry entry : run) {
+                entry.write(out);
+            }
+        }
+        return file;
+    }
+
+    private static void deleteAll(List<File> files) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    // 按键升序返回端点，内存中的一段或多个临时文件的多路归并
+    static final class SortedEntries implements Closeable {
+        private static final class Cursor {
+            final DataInputStream in;
+            Entry head;
+
+            Cursor(DataInputStream in) throws IOException {
+                this.in = in;
+                this.head = Entry.read(in);
+            }
+        }
+
+        private final List<Entry> memory;
+        private int memoryIndex;
+        private final List<File> files;
+        private final List<Cursor> cursors = new ArrayList<>();
+        private final PriorityQueue<Cursor> queue = new PriorityQueue<>((a, b) -> a.head.compareTo(b.head));
+        private Entry pending;
+
+        SortedEntries(List<Entry> memory, List<File> files) throws IOException {
+            this.memory = memory;
+            this.files = files;
+            try {
+                for (File file : files) {
+                    Cursor cursor = new Cursor(new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+                            64 * 1024)));
+                    cursors.add(cursor);
+                    if (cursor.head != null) {
+                        queue.add(cursor);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+            pending = nextRaw();
+        }
+
+        Entry next() throws IOException {
+            Entry current = pending;
+            if (current == null) {
+                return null;
+            }
+            Entry following = nextRaw();
+            while (following != null && following.compareTo(current) == 0) {
+                current = current.merge(following);
+                following = nextRaw();
+            }
+            pending = following;
+            return current;
+        }
+
+        private Entry nextRaw() throws IOException {
+            if (files.isEmpty()) {
+                return memoryIndex < memory.size() ? memory.get(memoryIndex++) : null;
+            }
+            Cursor cursor = queue.poll();
+            if (cursor == null) {
+                return null;
+            }
+            Entry head = cursor.head;
+            cursor.head = Entry.read(cursor.in);
+            if (cursor.head != null) {
+                queue.add(cursor);
+            }
+            return head;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Cursor cursor : cursors) {
+                cursor.in.close();
+            }
+            deleteAll(files);
+        }
+    }
+
+    // 依次返回一份结果中的端点，读完时返回null
+    interface EntrySource extends Closeable {
+        Entry next() throws IOException;
+    }
+
+    // 按文件开头的魔数选择读取方式
+    static EntrySource open(File catalog, EntryBuilder builder) throws IOException {
+        byte[] magic = new byte[4];
+        int read;
+        try (InputStream in = new FileInputStream(catalog)) {
+            read = in.read(magic);
+        }
+        if (read == 4 && (magic[0] & 0xff) == 'A' && magic[1] == 'P' && magic[2] == 'I' && magic[3] == 'B') {
+            return binarySource(catalog, builder);
+        }
+        InputStream in = new BufferedInputStream(new FileInputStream(catalog), 64 * 1024);
+        if (read >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        return jsonSource(JSON_FACTORY.createParser(in), builder);
+    }
+
+    private static EntrySource binarySource(File catalog, EntryBuilder builder) throws IOException {
+        BinaryCatalogReader reader = BinaryCatalogReader.open(catalog);
+        BinaryCatalogReader.Endpoint endpoint = reader.newEndpoint();
+        return new EntrySource() {
+            private int index;
+
+            @Override
+            public Entry next() {
+                if (index == reader.size()) {
+                    return null;
+                }
+                reader.read(index++, endpoint);
+                for (int i = 0; i < endpoint.methodCount(); i++) {
+                    builder.methods.add(endpoint.method(i));
+                }
+                for (int i = 0; i < endpoint.parameterCount(); i++) {
+                    builder.parameters.add(endpoint.parameterName(i));
+                    builder.parameters.add(endpoint.parameterSource(i));
+                }
+                return builder.build(endpoint.path(), endpoint.sourceClass(), endpoint.sourceMethod());
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    // JSON文档中读取apis数组的元素，NDJSON中读取每个顶层对象；其余字段跳过
+    // 顶层对象的第一个字段决定它是端点（NDJSON的一行）还是包含apis数组的结果文档
+    private static EntrySource jsonSource(JsonParser parser, EntryBuilder builder) {
+        return new EntrySource() {
+            private boolean inDocument;
+            private boolean inApis;
+
+            @Override
+            public Entry next() throws IOException {
+                JsonToken token;
+                while ((token = parser.nextToken()) != null) {
+                    if (inApis) {
+                        if (token == JsonToken.END_ARRAY) {
+                            inApis = false;
+                        } else if (token == JsonToken.START_OBJECT) {
+                            parser.nextToken();
+                            return readEndpoint(parser, builder);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    } else if (inDocument) {
+                        if (token == JsonToken.END_OBJECT) {
+                            inDocument = false;
+                        } else {
+                            documentField(parser);
+                        }
+                    } else if (token == JsonToken.START_OBJECT) {
+                        if (parser.nextToken() != JsonToken.FIELD_NAME || isEndpointField(parser.getCurrentName())) {
+                            return readEndpoint(parser, builder);
+                        }
+                        inDocument = true;
+                        documentField(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                return null;
+            }
+
+            // 当前记号为文档的字段名，进入apis数组或跳过字段值
+            private void documentField(JsonParser parser) throws IOException {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY && "apis".equals(field)) {
+                    inApis = true;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                parser.close();
+            }
+        };
+    }
+
+    private static boolean isEndpointField(String field) {
+        return "path".equals(field) || "methods".equals(field) || "parameters".equals(field)
+                || "source".equals(field) || "invocations".equals(field);
+    }
+
+    // 解析一个端点对象，调用时当前记号为第一个字段名（空对象时为END_OBJECT）
+    private static Entry readEndpoint(JsonParser parser, EntryBuilder builder) throws IOException {
+        String path = "";
+        String sourceClass = "";
+        String sourceMethod = "";
+        for (JsonToken token = parser.currentToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("path".equals(field) && value == JsonToken.VALUE_STRING) {
+                path = parser.getText();
+            } else if ("methods".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    builder.methods.add(parser.getText());
+                }
+            } else if ("parameters".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    builder.parameters.add(parser.getCurrentName());
+                    parser.nextToken();
+                    builder.parameters.add(parser.getText());
+                }
+            } else if ("source".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("class".equals(name)) {
+                        sourceClass = parser.getText();
+                    } else if ("method".equals(name)) {
+                        sourceMethod = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return builder.build(path, sourceClass, sourceMethod);
+    }
+
+    private static TreeMap<String, String> parameterMap(Entry entry) {
+        TreeMap<String, String> map = new TreeMap<>();
+        for (int i = 0; i < entry.parameters.length; i += 2) {
+            map.put(entry.parameters[i], entry.parameters[i + 1]);
+        }
+        return map;
+    }
+
+    private static String[] flatten(TreeMap<String, String> parameters) {
+        String[] flat = new String[parameters.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            flat[i++] = parameter.getKey();
+            flat[i++] = parameter.getValue();
+        }
+        return flat;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readUTF();
+        }
+        return values;
+    }
+
+    // 生成器关闭时不关闭调用方的流，只刷新
+    private static final class NonClosingOutputStream extends OutputStream {
+        private final OutputStream out;
+
+        NonClosingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// 查询端点使用的结果快照，每次结果变化时整体重建，之后只读，查询线程无需加锁
+// 按路径排序的下标数组支持前缀查询，HTTP方法和控制器类各有一张倒排表；所有下标按端点顺序升序排列，
+// 多个条件的结果由有序数组求交得到，返回的端点保持与结果文件相同的顺序
+final class CatalogIndex {
+    private static final int[] NONE = new int[0];
+
+    final ApiDefinition[] apis;
+    final int controllers;
+    final int scannedJars;
+    final long createdMillis;
+    // 端点内容的哈希，作为ETag；内容不变时重建快照得到相同的ETag
+    final String etag;
+    private final int[] byPath;
+    private final String[] sortedPaths;
+    private final Map<String, int[]> byMethod;
+    // 没有限定HTTP方法的端点匹配任何方法
+    private final int[] anyMethod;
+    private final Map<String, int[]> byClass;
+
+    CatalogIndex(List<ApiDefinition> apis, int controllers, int scannedJars) {
+        this.apis = apis.toArray(new ApiDefinition[0]);
+        this.controllers = controllers;
+        this.scannedJars = scannedJars;
+        this.createdMillis = System.currentTimeMillis();
+
+        Integer[] order = new Integer[this.apis.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> pathOf(this.apis[i])).thenComparing(i -> i));
+        byPath = new int[order.length];
+        sortedPaths = new String[order.length];
+        for (int i = 0; i < order.length; i++) {
+            byPath[i] = order[i];
+            sortedPaths[i] = pathOf(this.apis[order[i]]);
+        }
+
+        Map<String, List<Integer>> methods = new HashMap<>();
+        Map<String, List<Integer>> classes = new HashMap<>();
+        List<Integer> any = new ArrayList<>();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < this.apis.length; i++) {
+            ApiDefinition api = this.apis[i];
+            if (api.methods.isEmpty()) {
+                any.add(i);
+            }
+            for (String method : api.methods) {
+                methods.computeIfAbsent(method.toUpperCase(Locale.ROOT), k -> new ArrayList<>()).add(i);
+            }
+            classes.computeIfAbsent(api.sourceClass, k -> new ArrayList<>()).add(i);
+            hash = mix(hash, api.path);
+            hash = mix(hash, api.methods.toString());
+            hash = mix(hash, api.parameters.toString());
+            hash = mix(hash, api.sourceClass);
+            hash = mix(hash, api.sourceMethod);
+        }
+        byMethod = toArrays(methods);
+        byClass = toArrays(classes);
+        anyMethod = toArray(any);
+        etag = "\"" + Long.toHexString(hash) + "-" + this.apis.length + "\"";
+    }
+
+    // 条件为null表示不限制；返回匹配端点的下标，按端点顺序升序
+    int[] query(String pathPrefix, String method, String className) {
+        int[] result = null;
+        if (className != null) {
+            result = byClass.getOrDefault(className, NONE);
+        }
+        if (method != null) {
+            int[] matched = union(byMethod.getOrDefault(method.toUpperCase(Locale.ROOT), NONE), anyMethod);
+            result = result == null ? matched : intersect(result, matched);
+        }
+        if (pathPrefix != null && (result == null || result.length > 0)) {
+            int[] matched = pathRange(pathPrefix);
+            result = result == null ? matched : intersect(result, matched);
+        }
+        if (result == null) {
+            result = new int[apis.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = i;
+            }
+        }
+        return result;
+    }
+
+    // 路径有序，前缀相同的路径连续排列，二分找到起点后向后扫描
+    private int[] pathRange(String prefix) {
+        int low = 0;
+        int high = sortedPaths.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPaths[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int end = low;
+        while (end < sortedPaths.length && sortedPaths[end].startsWith(prefix)) {
+            end++;
+        }
+        int[] matched = Arrays.copyOfRange(byPath, low, end);
+        Arrays.sort(matched);
+        return matched;
+    }
+
+    private static String pathOf(ApiDefinition api) {
+        return api.path == null ? "" : api.path;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        int[] result = new int[a.length + b.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[count++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[count++] = b[j++];
+            } else {
+                result[count++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, List<Integer>> lists) {
+        Map<String, int[]> arrays = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : lists.entrySet()) {
+            arrays.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        return arrays;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    // FNV-1a，逐字符混入，字段之间加入分隔符
+    private static long mix(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+        }
+        hash ^= 0x1f;
+        return hash * 0x100000001b3L;
+    }
+}
@@ -0,0 +1,72 @@
+package com.apiextractor.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// 每个扫描线程复用的类字节缓冲区，读取类文件时不再为每个类分配新数组
+// 缓冲区内容只在下一次读取前有效，ClassReader以 (数组, 偏移, 长度) 的方式直接使用
+final class ClassBuffer {
+    private static final int INITIAL_SIZE = 16 * 1024;
+    private static final ThreadLocal<ClassBuffer> LOCAL = ThreadLocal.withInitial(ClassBuffer::new);
+
+    byte[] data = new byte[INITIAL_SIZE];
+    // 解压嵌套JAR条目时使用的压缩数据缓冲区
+    byte[] compressed = new byte[INITIAL_SIZE];
+    // 常量池预过滤记录的常量偏移，用于读取父类和接口
+    private int[] constantOffsets = new int[1024];
+
+    private ClassBuffer() {
+    }
+
+    static ClassBuffer get() {
+        return LOCAL.get();
+    }
+
+    // 扫描结束后释放调用线程上的缓冲区，避免长期占用目标应用主线程的内存
+    static void release() {
+        LOCAL.remove();
+    }
+
+    byte[] ensureCapacity(int size) {
+        if (data.length < size) {
+            data = new byte[Math.max(size, data.length * 2)];
+        }
+        return data;
+    }
+
+    byte[] ensureCompressedCapacity(int size) {
+        if (compressed.length < size) {
+            compressed = new byte[Math.max(size, compressed.length * 2)];
+        }
+        return compressed;
+    }
+
+    int[] constantOffsets(int constantCount) {
+        if (constantOffsets.length < constantCount) {
+            constantOffsets = new int[Math.max(constantCount, constantOffsets.length * 2)];
+        }
+        return constantOffsets;
+    }
+
+    // 读取整个流并返回长度；sizeHint为条目声明的大小，未知时传-1
+    int readFrom(InputStream in, long sizeHint) throws IOException {
+        if (sizeHint > 0 && sizeHint < Integer.MAX_VALUE - 1) {
+            // 多留一个字节，这样按声明大小读满后只需一次read即可确认流结束
+            ensureCapacity((int) sizeHint + 1);
+        }
+
+        int length = 0;
+        while (true) {
+            if (length == data.length) {
+                byte[] grown = new byte[data.length * 2];
+                System.arraycopy(data, 0, grown, 0, length);
+                data = grown;
+            }
+            int n = in.read(data, length, data.length - length);
+            if (n < 0) {
+                return length;
+            }
+            length += n;
+        }
+    }
+}
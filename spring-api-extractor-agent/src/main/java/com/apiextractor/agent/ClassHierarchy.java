@@ -0,0 +1,384 @@
+package com.apiextractor.agent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// 紧凑的类继承索引：类名（内部名称的UTF8字节）驻留为连续的int ID，父类和接口保存为int数组
+// 每个扫描单元在扫描时单线程地写入自己的局部索引，扫描结束后按单元顺序合并为全局索引，再压缩成CSR邻接数组
+// 只记录用户类型之间的边，java/ 下的父类和接口不可能声明请求映射，不记录
+final class ClassHierarchy {
+    private static final byte[] JAVA_PREFIX = "java/".getBytes(StandardCharsets.US_ASCII);
+
+    // 所有名称连续存放在一个字节池中，ID -> (起始位置, 长度)；名称为内部名称，如 com/acme/UserController
+    private byte[] pool = new byte[1024];
+    private int poolSize;
+    private int[] nameStarts = new int[16];
+    private int[] nameLengths = new int[16];
+    private int[] hashes = new int[16];
+    private int size;
+    // 开放寻址的驻留表，槽位保存 ID + 1，0表示空
+    private int[] slots = new int[32];
+
+    // 扫描期按 (子类, 父类) 成对追加；同一个类的父类总是连续追加，父类在接口之前
+    private int[] edges = new int[32];
+    private int edgeCount;
+    // 已经记录过父类的ID，同一个类被重新分析时不再重复追加
+    private boolean[] recorded = new boolean[16];
+
+    // freeze()之后有效：parentOffsets[id]..parentOffsets[id + 1] 是id的父类在parents中的区间
+    private int[] parentOffsets;
+    private int[] parents;
+    // 遍历祖先时的访问标记，每次遍历换一个新的标记值，不需要清空
+    private int[] visitStamps;
+    private int stamp;
+
+    int size() {
+        return size;
+    }
+
+    int edgeCount() {
+        return edgeCount;
+    }
+
+    // 从class文件头部记录父类和接口；offsets由ConstantPoolPrefilter.classify填写，offsets[0]是访问标志的位置
+    // 大多数类只继承java/下的类型，这些类不驻留名称，也不产生任何分配
+    void addSupertypes(byte[] b, int[] offsets) {
+        int pos = offsets[0];
+        int interfaceCount = ConstantPoolPrefilter.readUnsignedShort(b, pos + 6);
+        boolean hasParent = isUserType(b, offsets, ConstantPoolPrefilter.readUnsignedShort(b, pos + 4));
+        for (int i = 0; i < interfaceCount && !hasParent; i++) {
+            hasParent = isUserType(b, offsets, ConstantPoolPrefilter.readUnsignedShort(b, pos + 8 + i * 2));
+        }
+        if (!hasParent) {
+            return;
+        }
+
+        int child = internConstantClass(b, offsets, ConstantPoolPrefilter.readUnsignedShort(b, pos + 2));
+        if (child < 0 || !markRecorded(child)) {
+            return;
+        }
+        addParent(child, b, offsets, ConstantPoolPrefilter.readUnsignedShort(b, pos + 4));
+        for (int i = 0; i < interfaceCount; i++) {
+            addParent(child, b, offsets, ConstantPoolPrefilter.readUnsignedShort(b, pos + 8 + i * 2));
+        }
+    }
+
+    private static boolean isUserType(byte[] b, int[] offsets, int classIndex) {
+        int utf8 = classNameOffset(b, offsets, classIndex);
+        return utf8 >= 0 && !startsWith(b, utf8 + 3, ConstantPoolPrefilter.readUnsignedShort(b, utf8 + 1), JAVA_PREFIX);
+    }
+
+    // ASM已经解析出的名称，使用内部名称
+    void addSupertypes(String name, String superName, String[] interfaces) {
+        boolean hasParent = superName != null && !superName.startsWith("java/");
+        for (int i = 0; interfaces != null && i < interfaces.length && !hasParent; i++) {
+            hasParent = !interfaces[i].startsWith("java/");
+        }
+        if (!hasParent) {
+            return;
+        }
+        int child = intern(name);
+        if (!markRecorded(child)) {
+            return;
+        }
+        if (superName != null && !superName.startsWith("java/")) {
+            addEdge(child, intern(superName));
+        }
+        if (interfaces != null) {
+            for (String type : interfaces) {
+                if (!type.startsWith("java/")) {
+                    addEdge(child, intern(type));
+                }
+            }
+        }
+    }
+
+    // 父类索引为0表示module-info
+    private void addParent(int child, byte[] b, int[] offsets, int classIndex) {
+        int utf8 = classNameOffset(b, offsets, classIndex);
+        if (utf8 < 0) {
+            return;
+        }
+        int length = ConstantPoolPrefilter.readUnsignedShort(b, utf8 + 1);
+        if (startsWith(b, utf8 + 3, length, JAVA_PREFIX)) {
+            return;
+        }
+        addEdge(child, intern(b, utf8 + 3, length));
+    }
+
+    private int internConstantClass(byte[] b, int[] offsets, int classIndex) {
+        int utf8 = classNameOffset(b, offsets, classIndex);
+        if (utf8 < 0) {
+            return -1;
+        }
+        return intern(b, utf8 + 3, ConstantPoolPrefilter.readUnsignedShort(b, utf8 + 1));
+    }
+
+    // CONSTANT_Class指向的UTF8常量的位置；索引或常量类型不对时返回-1，按格式无法识别处理
+    private static int classNameOffset(byte[] b, int[] offsets, int classIndex) {
+        if (classIndex <= 0 || classIndex >= offsets.length || b[offsets[classIndex]] != 7) {
+            return -1;
+        }
+        int nameIndex = ConstantPoolPrefilter.readUnsignedShort(b, offsets[classIndex] + 1);
+        if (nameIndex <= 0 || nameIndex >= offsets.length || b[offsets[nameIndex]] != 1) {
+            return -1;
+        }
+        return offsets[nameIndex];
+    }
+
+    private boolean markRecorded(int id) {
+        if (recorded.length <= id) {
+            recorded = Arrays.copyOf(recorded, Math.max(id + 1, recorded.length * 2));
+        }
+        if (recorded[id]) {
+            return false;
+        }
+        recorded[id] = true;
+        return true;
+    }
+
+    private void addEdge(int child, int parent) {
+        if (edges.length < (edgeCount + 1) * 2) {
+            edges = Arrays.copyOf(edges, edges.length * 2);
+        }
+        edges[edgeCount * 2] = child;
+        edges[edgeCount * 2 + 1] = parent;
+        edgeCount++;
+        parentOffsets = null;
+    }
+
+    // 依次给出作为父类或接口出现过的名称，同一个名称可能出现多次
+    void forEachParent(Consumer<String> action) {
+        for (int i = 0; i < edgeCount; i++) {
+            action.accept(name(edges[i * 2 + 1]));
+        }
+    }
+
+    int intern(String internalName) {
+        byte[] bytes = internalName.getBytes(StandardCharsets.UTF_8);
+        return intern(bytes, 0, bytes.length);
+    }
+
+    // 命中时不分配任何对象，第一次出现的名称复制到字节池中
+    int intern(byte[] b, int start, int length) {
+        int hash = hash(b, start, length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return insert(b, start, length, hash, slot);
+            }
+            if (hashes[id] == hash && nameEquals(id, b, start, length)) {
+                return id;
+            }
+        }
+    }
+
+    // 不驻留，未出现过的名称返回-1
+    // 类是否记录了用户定义的父类或接口
+    boolean hasSupertypes(String internalName) {
+        int id = find(internalName);
+        return id >= 0 && id < recorded.length && recorded[id];
+    }
+
+    int find(String internalName) {
+        byte[] bytes = internalName.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes, 0, bytes.length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (hashes[id] == hash && nameEquals(id, bytes, 0, bytes.length)) {
+                return id;
+            }
+        }
+    }
+
+    String name(int id) {
+        return new String(pool, nameStarts[id], nameLengths[id], StandardCharsets.UTF_8);
+    }
+
+    private boolean nameEquals(int id, byte[] b, int start, int length) {
+        if (nameLengths[id] != length) {
+            return false;
+        }
+        int nameStart = nameStarts[id];
+        for (int i = 0; i < length; i++) {
+            if (pool[nameStart + i] != b[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int insert(byte[] b, int start, int length, int hash, int slot) {
+        int id = size++;
+        if (nameStarts.length == id) {
+            nameStarts = Arrays.copyOf(nameStarts, id * 2);
+            nameLengths = Arrays.copyOf(nameLengths, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        if (pool.length < poolSize + length) {
+            pool = Arrays.copyOf(pool, Math.max(poolSize + length, pool.length * 2));
+        }
+        System.arraycopy(b, start, pool, poolSize, length);
+        nameStarts[id] = poolSize;
+        nameLengths[id] = length;
+        poolSize += length;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        // 装载因子超过1/2时扩容
+        if (size * 2 > slots.length) {
+            int[] grown = new int[slots.length * 2];
+            int mask = grown.length - 1;
+            for (int i = 0; i < size; i++) {
+                int s = hashes[i] & mask;
+                while (grown[s] != 0) {
+                    s = (s + 1) & mask;
+                }
+                grown[s] = i + 1;
+            }
+            slots = grown;
+        }
+        return id;
+    }
+
+    // 按单元顺序合并局部索引，局部ID重新映射为本索引的ID；owns用内部名称判断子类是否归该单元所有
+    void merge(ClassHierarchy local, Predicate<String> owns) {
+        int[] remap = new int[local.size];
+        Arrays.fill(remap, -1);
+        int lastChild = -1;
+        boolean owned = false;
+        for (int i = 0; i < local.edgeCount; i++) {
+            int child = local.edges[i * 2];
+            if (child != lastChild) {
+                lastChild = child;
+                owned = owns.test(local.name(child));
+                if (owned) {
+                    owned = markRecorded(remap(local, remap, child));
+                }
+            }
+            if (owned) {
+                addEdge(remap[child], remap(local, remap, local.edges[i * 2 + 1]));
+            }
+        }
+    }
+
+    private int remap(ClassHierarchy local, int[] remap, int id) {
+        if (remap[id] < 0) {
+            remap[id] = intern(local.pool, local.nameStarts[id], local.nameLengths[id]);
+        }
+        return remap[id];
+    }
+
+    // 把成对的边按子类分组压缩成CSR数组，组内保持追加顺序
+    void freeze() {
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            offsets[edges[i * 2] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] next = Arrays.copyOf(offsets, size);
+        int[] flat = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            flat[next[edges[i * 2]]++] = edges[i * 2 + 1];
+        }
+        parentOffsets = offsets;
+        parents = flat;
+        visitStamps = new int[size];
+        stamp = 0;
+    }
+
+    // 按广度优先返回所有祖先的ID，近的在前，同一层中父类在接口之前；需要先freeze()
+    int[] ancestors(int id) {
+        if (parentOffsets == null) {
+            throw new IllegalStateException("Class hierarchy is not frozen");
+        }
+        int current = ++stamp;
+        int[] queue = new int[8];
+        int head = 0;
+        int tail = 0;
+        visitStamps[id] = current;
+        int type = id;
+        while (true) {
+            for (int i = parentOffsets[type]; i < parentOffsets[type + 1]; i++) {
+                int parent = parents[i];
+                if (visitStamps[parent] != current) {
+                    visitStamps[parent] = current;
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = parent;
+                }
+            }
+            if (head == tail) {
+                return Arrays.copyOf(queue, tail);
+            }
+            type = queue[head++];
+        }
+    }
+
+    // 写入缓存时只保留出现在边中的名称：返回按首次出现顺序重新编号的名称，pairs中的ID同时改写为新编号
+    String[] compactEdges(int[] pairs) {
+        int[] remap = new int[size];
+        Arrays.fill(remap, -1);
+        String[] compact = new String[size];
+        int count = 0;
+        for (int i = 0; i < edgeCount * 2; i++) {
+            int id = edges[i];
+            if (remap[id] < 0) {
+                remap[id] = count;
+                compact[count++] = name(id);
+            }
+            pairs[i] = remap[id];
+        }
+        return Arrays.copyOf(compact, count);
+    }
+
+    // 从缓存恢复时按原样追加边，names与edges的ID对应
+    void addEdges(String[] edgeNames, int[] edgePairs) {
+        int[] ids = new int[edgeNames.length];
+        for (int i = 0; i < edgeNames.length; i++) {
+            ids[i] = intern(edgeNames[i]);
+        }
+        int lastChild = -1;
+        boolean fresh = false;
+        for (int i = 0; i < edgePairs.length; i += 2) {
+            int child = ids[edgePairs[i]];
+            if (child != lastChild) {
+                lastChild = child;
+                fresh = markRecorded(child);
+            }
+            if (fresh) {
+                addEdge(child, ids[edgePairs[i + 1]]);
+            }
+        }
+    }
+
+    private static int hash(byte[] b, int start, int length) {
+        int h = 0;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + b[i];
+        }
+        // 混合高位，名称的哈希值在低位上分布不均
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean startsWith(byte[] b, int start, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (b[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
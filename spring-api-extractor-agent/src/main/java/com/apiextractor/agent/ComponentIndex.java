@@ -0,0 +1,145 @@
+package com.apiextractor.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+// 构建期生成的组件索引：Spring的META-INF/spring.components和Jandex的META-INF/jandex.idx
+// 存在索引时只需要解析其中列出的类，以及这些类引用的、在同一归档中的注解类型等，其余类文件不再读取
+final class ComponentIndex {
+    static final String SPRING_COMPONENTS = "META-INF/spring.components";
+    static final String JANDEX = "META-INF/jandex.idx";
+
+    private static final String COMPONENT_STEREOTYPE = "org.springframework.stereotype.Component";
+
+    private static final JandexAccess JANDEX_ACCESS = JandexAccess.load();
+
+    private ComponentIndex() {
+    }
+
+    // 按条目名称打开索引文件，不存在时返回null；目录、JAR和映射的嵌套JAR各自提供实现
+    interface Source {
+        InputStream open(String name) throws IOException;
+    }
+
+    // spring.components优先，其次是Jandex；都不可用时返回null，调用方按完整扫描处理
+    // annotations是控制器和请求映射注解的类名，Jandex索引按它们查找候选类
+    static Set<String> read(Source source, Collection<String> annotations) throws IOException {
+        try (InputStream in = source.open(SPRING_COMPONENTS)) {
+            if (in != null) {
+                return parseSpringComponents(in);
+            }
+        }
+        if (JANDEX_ACCESS == null) {
+            return null;
+        }
+        try (InputStream in = source.open(JANDEX)) {
+            return in != null ? parseJandex(in, annotations) : null;
+        }
+    }
+
+    // spring.components 的格式为 类名=构造型1,构造型2；控制器都带有Component构造型
+    static Set<String> parseSpringComponents(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        Set<String> classes = new HashSet<>();
+        for (String className : properties.stringPropertyNames()) {
+            for (String stereotype : properties.getProperty(className).split(",")) {
+                if (COMPONENT_STEREOTYPE.equals(stereotype.trim())) {
+                    classes.add(className);
+                    break;
+                }
+            }
+        }
+        return classes;
+    }
+
+    // Jandex索引是二进制格式，只有agent能加载到Jandex库时才使用；否则返回null，调用方退回完整扫描
+    static Set<String> parseJandex(InputStream in, Collection<String> annotations) {
+        if (JANDEX_ACCESS == null) {
+            return null;
+        }
+        try {
+            return JANDEX_ACCESS.controllerClasses(in, annotations);
+        } catch (Exception e) {
+            System.err.println("[API Scanner] Warning: Could not read Jandex index: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 通过反射调用Jandex，agent本身不依赖Jandex
+    private static final class JandexAccess {
+        private final Class<?> readerClass;
+        private final Method read;
+        private final Method createDotName;
+        private final Method getAnnotations;
+        private final Method target;
+        private final Method kind;
+        private final Method asClass;
+        private final Method asMethod;
+        private final Method declaringClass;
+        private final Method className;
+
+        private JandexAccess(ClassLoader loader) throws Exception {
+            readerClass = Class.forName("org.jboss.jandex.IndexReader", false, loader);
+            read = readerClass.getMethod("read");
+            Class<?> dotName = Class.forName("org.jboss.jandex.DotName", false, loader);
+            createDotName = dotName.getMethod("createSimple", String.class);
+            getAnnotations = Class.forName("org.jboss.jandex.IndexView", false, loader)
+                    .getMethod("getAnnotations", dotName);
+            target = Class.forName("org.jboss.jandex.AnnotationInstance", false, loader).getMethod("target");
+            Class<?> annotationTarget = Class.forName("org.jboss.jandex.AnnotationTarget", false, loader);
+            kind = annotationTarget.getMethod("kind");
+            asClass = annotationTarget.getMethod("asClass");
+            asMethod = annotationTarget.getMethod("asMethod");
+            declaringClass = Class.forName("org.jboss.jandex.MethodInfo", false, loader).getMethod("declaringClass");
+            className = Class.forName("org.jboss.jandex.ClassInfo", false, loader).getMethod("name");
+        }
+
+        static JandexAccess load() {
+            try {
+                return new JandexAccess(ClassLoader.getSystemClassLoader());
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+
+        // Jandex只记录直接注解：标注了候选注解的类型如果本身是注解（组合注解），再查找标注了它的类，直到没有新的类；
+        // 方法上的映射注解给出声明它的类，没有类级别注解的映射接口和父类也因此被列出
+        Set<String> controllerClasses(InputStream in, Collection<String> annotations) throws Exception {
+            Object index = read.invoke(readerClass.getConstructor(InputStream.class).newInstance(in));
+            Set<String> classes = new HashSet<>();
+            Set<String> queried = new HashSet<>();
+            Deque<String> pending = new ArrayDeque<>(annotations);
+            while (!pending.isEmpty()) {
+                String annotation = pending.poll();
+                if (!queried.add(annotation)) {
+                    continue;
+                }
+                Collection<?> instances = (Collection<?>) getAnnotations.invoke(index, createDotName.invoke(null, annotation));
+                for (Object instance : instances) {
+                    Object annotated = target.invoke(instance);
+                    if (annotated == null) {
+                        continue;
+                    }
+                    String targetKind = String.valueOf(kind.invoke(annotated));
+                    if ("CLASS".equals(targetKind)) {
+                        String name = String.valueOf(className.invoke(asClass.invoke(annotated)));
+                        if (classes.add(name)) {
+                            pending.add(name);
+                        }
+                    } else if ("METHOD".equals(targetKind)) {
+                        classes.add(String.valueOf(className.invoke(declaringClass.invoke(asMethod.invoke(annotated)))));
+                    }
+                }
+            }
+            return classes;
+        }
+    }
+}
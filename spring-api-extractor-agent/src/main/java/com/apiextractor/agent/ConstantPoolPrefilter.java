@@ -0,0 +1,169 @@
+package com.apiextractor.agent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+// 常量池预过滤：只遍历class文件的常量池，不构建ASM访问器，也不创建字符串
+// 注解的类型描述符一定以UTF8常量的形式出现在常量池中，不含任何控制器或请求映射注解描述符的类不需要完整解析
+final class ConstantPoolPrefilter {
+    // 需要完整解析：引用了候选描述符（控制器或请求映射注解）、是注解类型，或格式无法识别
+    static final int CANDIDATE = 0;
+    // 不是控制器，但带有运行时注解，可能使用了尚未解析的组合控制器注解
+    static final int ANNOTATED = 1;
+    static final int REJECTED = 2;
+
+    private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS =
+            "RuntimeVisibleAnnotations".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JAVA_TYPE_PREFIX = "Ljava/".getBytes(StandardCharsets.US_ASCII);
+    private static final int ACC_ANNOTATION = 0x2000;
+
+    private ConstantPoolPrefilter() {
+    }
+
+    // 返回false表示该类一定不是控制器，可以跳过完整解析；格式无法识别时返回true，交给ASM处理
+    static boolean mayBeController(byte[] b, int off, int len, byte[][] candidates) {
+        return classify(b, off, len, candidates, null) == CANDIDATE;
+    }
+
+    // 常量池的条目数（含不使用的0号），即offsets所需的长度；格式无法识别时返回0
+    static int constantCount(byte[] b, int off, int len) {
+        return len < 10 ? 0 : readUnsignedShort(b, off + 8);
+    }
+
+    // 注解类型总是需要解析，用来建立元注解图；常量池之后紧接着就是访问标志，不需要额外遍历
+    // offsets非空时记录每个常量的起始位置，offsets[0]记录访问标志的位置，返回非CANDIDATE时可据此读取父类和接口
+    // offsets的长度至少为constantCount()
+    static int classify(byte[] b, int off, int len, byte[][] candidates, int[] offsets) {
+        int end = off + len;
+        if (len < 10 || readInt(b, off) != 0xCAFEBABE) {
+            return CANDIDATE;
+        }
+
+        boolean annotated = false;
+        int count = readUnsignedShort(b, off + 8);
+        int pos = off + 10;
+        for (int i = 1; i < count; i++) {
+            if (pos >= end) {
+                return CANDIDATE;
+            }
+            if (offsets != null) {
+                offsets[i] = pos;
+            }
+            int tag = b[pos] & 0xFF;
+            switch (tag) {
+                case 1: // Utf8
+                    if (pos + 3 > end) {
+                        return CANDIDATE;
+                    }
+                    int length = readUnsignedShort(b, pos + 1);
+                    int start = pos + 3;
+                    if (start + length > end) {
+                        return CANDIDATE;
+                    }
+                    if (isCandidateDescriptor(b, start, length, candidates)) {
+                        return CANDIDATE;
+                    }
+                    if (!annotated && length == RUNTIME_VISIBLE_ANNOTATIONS.length
+                            && equals(b, start, RUNTIME_VISIBLE_ANNOTATIONS)) {
+                        annotated = true;
+                    }
+                    pos = start + length;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    pos += 5;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    pos += 9;
+                    i++;
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    pos += 3;
+                    break;
+                case 15: // MethodHandle
+                    pos += 4;
+                    break;
+                default:
+                    return CANDIDATE;
+            }
+        }
+        if (pos + 8 > end || (readUnsignedShort(b, pos) & ACC_ANNOTATION) != 0
+                || pos + 8 + readUnsignedShort(b, pos + 6) * 2 > end) {
+            return CANDIDATE;
+        }
+        if (offsets != null) {
+            offsets[0] = pos;
+        }
+        return annotated ? ANNOTATED : REJECTED;
+    }
+
+    // classify返回非CANDIDATE后，依次给出常量池中java/以外的类型描述符（形如Lcom/x/Y;），其中包含类使用的注解
+    // 只读取classify记录的常量位置，不再遍历整个class文件
+    static void forEachTypeDescriptor(byte[] b, int[] offsets, int count, Consumer<String> action) {
+        for (int i = 1; i < count; i++) {
+            int pos = offsets[i];
+            int tag = b[pos] & 0xFF;
+            if (tag == 5 || tag == 6) {
+                // Long和Double占两个条目，第二个条目没有记录位置
+                i++;
+            } else if (tag == 1) {
+                int length = readUnsignedShort(b, pos + 1);
+                int start = pos + 3;
+                if (length > 2 && b[start] == 'L' && b[start + length - 1] == ';'
+                        && !(length > JAVA_TYPE_PREFIX.length && equals(b, start, JAVA_TYPE_PREFIX))) {
+                    action.accept(new String(b, start, length, StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    private static boolean equals(byte[] b, int start, byte[] expected) {
+        for (int j = 0; j < expected.length; j++) {
+            if (b[start + j] != expected[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 与SpringControllerVisitor的判断保持一致：与查找表中的某个控制器注解描述符完全相同
+    private static boolean isCandidateDescriptor(byte[] b, int start, int length, byte[][] candidates) {
+        if (length < 3 || b[start] != 'L' || b[start + length - 1] != ';') {
+            return false;
+        }
+        outer:
+        for (byte[] candidate : candidates) {
+            if (candidate.length != length) {
+                continue;
+            }
+            // 包名前缀大多相同，从末尾向前比较
+            for (int j = length - 2; j > 0; j--) {
+                if (b[start + j] != candidate[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    static int readUnsignedShort(byte[] b, int pos) {
+        return ((b[pos] & 0xFF) << 8) | (b[pos + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] b, int pos) {
+        return ((b[pos] & 0xFF) << 24) | ((b[pos + 1] & 0xFF) << 16)
+                | ((b[pos + 2] & 0xFF) << 8) | (b[pos + 3] & 0xFF);
+    }
+}
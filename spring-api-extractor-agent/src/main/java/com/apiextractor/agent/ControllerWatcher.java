@@ -0,0 +1,103 @@
+package com.apiextractor.agent;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// 监视扫描开始之后才定义的类：transform只在类加载线程上做一次常量池预过滤，从不修改字节码
+// 候选类的字节码复制后放入有界队列，由后台线程在初始扫描完成后分批交给回调，增量加入结果
+final class ControllerWatcher implements ClassFileTransformer {
+    private static final int QUEUE_CAPACITY = 1024;
+    // 应用启动时类往往成批加载，等待一小段时间把同一批类合并处理，减少结果文件的重写次数
+    private static final long BATCH_DELAY_MILLIS = 200;
+
+    // 新定义的候选类，bytes是transform收到的字节码的副本
+    static final class DefinedClass {
+        final String name;
+        final byte[] bytes;
+
+        DefinedClass(String name, byte[] bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+    }
+
+    private final BlockingQueue<DefinedClass> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final CountDownLatch firstScan = new CountDownLatch(1);
+    private final Consumer<List<DefinedClass>> consumer;
+    // 初始扫描完成前使用注解表的候选描述符，完成后换成包含组合注解的描述符
+    private volatile byte[][] candidates;
+    final LongAdder classesInspected = new LongAdder();
+    final LongAdder classesQueued = new LongAdder();
+    final LongAdder classesDropped = new LongAdder();
+    // transform在类加载线程上花费的总时间，用于确认对非控制器类的开销
+    final LongAdder transformNanos = new LongAdder();
+
+    ControllerWatcher(byte[][] candidates, Consumer<List<DefinedClass>> consumer) {
+        this.candidates = candidates;
+        this.consumer = consumer;
+        Thread thread = new Thread(this::drain, "api-scanner-watcher");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    // 每次扫描完成后调用，第一次调用之后队列中的类才开始处理
+    void scanCompleted(byte[][] candidates) {
+        this.candidates = candidates;
+        firstScan.countDown();
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        // 重定义和重转换的类在扫描时已经存在，JDK自身的类不可能是控制器
+        if (className == null || classBeingRedefined != null || classfileBuffer == null
+                || className.startsWith("java/") || className.startsWith("jdk/") || className.startsWith("sun/")) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            classesInspected.increment();
+            int kind = ConstantPoolPrefilter.classify(classfileBuffer, 0, classfileBuffer.length, candidates, null);
+            if (kind == ConstantPoolPrefilter.CANDIDATE) {
+                if (queue.offer(new DefinedClass(className, classfileBuffer.clone()))) {
+                    classesQueued.increment();
+                } else {
+                    classesDropped.increment();
+                }
+            }
+        } catch (RuntimeException ignore) {
+            // 无法解析的字节码交给JVM自己报告，这里只是不处理
+        } finally {
+            transformNanos.add(System.nanoTime() - start);
+        }
+        return null;
+    }
+
+    private void drain() {
+        try {
+            firstScan.await();
+            List<DefinedClass> batch = new ArrayList<>();
+            while (true) {
+                batch.add(queue.take());
+                Thread.sleep(BATCH_DELAY_MILLIS);
+                queue.drainTo(batch);
+                try {
+                    consumer.accept(batch);
+                } catch (RuntimeException e) {
+                    System.err.println("[API Scanner] Error analyzing newly defined classes: " + e.getMessage());
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.apiextractor.agent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+// 读取当前线程累计的CPU时间（纳秒），用于统计各扫描阶段的CPU开销；JVM不支持时返回-1
+final class CpuMeter {
+    private static final ThreadMXBean THREAD_BEAN = init();
+
+    private CpuMeter() {
+    }
+
+    private static ThreadMXBean init() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean.isCurrentThreadCpuTimeSupported() && bean.isThreadCpuTimeEnabled()) {
+                return bean;
+            }
+        } catch (Throwable ignore) {
+        }
+        return null;
+    }
+
+    static boolean isSupported() {
+        return THREAD_BEAN != null;
+    }
+
+    static long currentThreadCpuTime() {
+        return THREAD_BEAN == null ? -1 : THREAD_BEAN.getCurrentThreadCpuTime();
+    }
+}
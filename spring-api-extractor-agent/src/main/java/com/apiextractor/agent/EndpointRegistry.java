@@ -0,0 +1,186 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 去重后的端点集合，键为 规范类名 + 方法名 + 描述符 + 路径 + HTTP方法集合
+// 同一个端点被多个扫描路径重复发现时在插入时合并，内存和输出只与不同端点的数量有关
+// 端点按类分组，类的位置在第一次合并它的端点或为它预留位置时确定；类被重新分析时只替换该类的端点，位置不变，
+// 因此输出顺序只取决于单元顺序和类在单元中的顺序，与并行度和调度无关
+final class EndpointRegistry {
+    // Spring Boot JAR和WAR中的应用类按JAR条目路径命名时带有这两个前缀
+    static final String BOOT_INF_CLASSES_PREFIX = "BOOT-INF.classes.";
+    static final String WEB_INF_CLASSES_PREFIX = "WEB-INF.classes.";
+
+    // 规范类名 -> 该类的端点，类按位置顺序、类内按插入顺序；不保留端点时值为null，只用键去重
+    private final Map<String, Map<Key, ApiDefinition>> classes = new LinkedHashMap<>();
+    // 已撤回、等待重新分析结果的端点；重新加入的相同端点不算新端点
+    private final Set<Key> retracted = new HashSet<>();
+    private int size;
+    private int duplicates;
+
+    static String normalizeClassName(String className) {
+        int prefixLength = className != null ? applicationPrefixLength(className) : 0;
+        return prefixLength > 0 ? className.substring(prefixLength) : className;
+    }
+
+    // 类名中BOOT-INF.classes.或WEB-INF.classes.前缀的长度，没有前缀时为0
+    static int applicationPrefixLength(String className) {
+        if (className.startsWith(BOOT_INF_CLASSES_PREFIX)) {
+            return BOOT_INF_CLASSES_PREFIX.length();
+        }
+        return className.startsWith(WEB_INF_CLASSES_PREFIX) ? WEB_INF_CLASSES_PREFIX.length() : 0;
+    }
+
+    // 新端点返回true；retain为false时只记录键，端点由调用方直接写出
+    boolean add(ApiDefinition api, boolean retain) {
+        api.sourceClass = normalizeClassName(api.sourceClass);
+        Key key = new Key(api);
+        Map<Key, ApiDefinition> endpoints = classes.computeIfAbsent(key.className, k -> new LinkedHashMap<>());
+        if (retracted.remove(key)) {
+            endpoints.put(key, retain ? api : null);
+            size++;
+            return false;
+        }
+        if (endpoints.containsKey(key)) {
+            duplicates++;
+            return false;
+        }
+        endpoints.put(key, retain ? api : null);
+        size++;
+        return true;
+    }
+
+    // 为类预留位置：类的端点稍后才确定时（例如等待其他单元中的注解定义），它们仍按类在扫描中出现的位置输出
+    void reserve(String className) {
+        classes.computeIfAbsent(normalizeClassName(className), k -> new LinkedHashMap<>());
+    }
+
+    // 撤回这些类的全部端点，类的结果需要重新分析时使用；之后重新加入的相同端点add返回false，调用方不会重复计数或写出
+    // 类的位置保留，重新分析得到的端点按新的顺序放回原位置
+    void retractClasses(Set<String> classNames) {
+        for (String className : classNames) {
+            Map<Key, ApiDefinition> endpoints = classes.get(className);
+            if (endpoints != null) {
+                retracted.addAll(endpoints.keySet());
+                size -= endpoints.size();
+                endpoints.clear();
+            }
+        }
+    }
+
+    // 结束撤回，返回重新分析后不再存在的端点数
+    int dropRetracted() {
+        int stale = retracted.size();
+        retracted.clear();
+        return stale;
+    }
+
+    // 这些类的端点，按类的位置；retain为false时返回后只保留键
+    List<ApiDefinition> takeEndpoints(Set<String> classNames, boolean retain) {
+        List<ApiDefinition> result = new ArrayList<>();
+        for (Map.Entry<String, Map<Key, ApiDefinition>> entry : classes.entrySet()) {
+            if (!classNames.contains(entry.getKey())) {
+                continue;
+            }
+            for (Map.Entry<Key, ApiDefinition> endpoint : entry.getValue().entrySet()) {
+                if (endpoint.getValue() != null) {
+                    result.add(endpoint.getValue());
+                    if (!retain) {
+                        endpoint.setValue(null);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // 保留下来的端点，按类的位置和类内的插入顺序
+    List<ApiDefinition> endpoints() {
+        List<ApiDefinition> result = new ArrayList<>(size);
+        for (Map<Key, ApiDefinition> endpoints : classes.values()) {
+            for (ApiDefinition api : endpoints.values()) {
+                if (api != null) {
+                    result.add(api);
+                }
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int duplicates() {
+        return duplicates;
+    }
+
+    void clear() {
+        classes.clear();
+        retracted.clear();
+        size = 0;
+        duplicates = 0;
+    }
+
+    private static final class Key {
+        private final String className;
+        private final String methodName;
+        private final String descriptor;
+        private final String path;
+        private final Set<String> httpMethods;
+        private final int hash;
+
+        Key(ApiDefinition api) {
+            this.className = nullToEmpty(api.sourceClass);
+            this.methodName = nullToEmpty(api.sourceMethod);
+            this.descriptor = nullToEmpty(api.descriptor);
+            this.path = nullToEmpty(api.path);
+            // 方法集合与注解中的书写顺序无关
+            this.httpMethods = api.methods.size() == 1
+                    ? Collections.singleton(api.methods.get(0)) : new HashSet<>(api.methods);
+            int h = className.hashCode();
+            h = 31 * h + methodName.hashCode();
+            h = 31 * h + descriptor.hashCode();
+            h = 31 * h + path.hashCode();
+            this.hash = 31 * h + httpMethods.hashCode();
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                    && path.equals(other.path)
+                    && className.equals(other.className)
+                    && methodName.equals(other.methodName)
+                    && descriptor.equals(other.descriptor)
+                    && httpMethods.equals(other.httpMethods);
+        }
+    }
+}
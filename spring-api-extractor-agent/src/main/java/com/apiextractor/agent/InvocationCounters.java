@@ -0,0 +1,229 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.matcher.ElementMatchers;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// 处理方法的调用计数：扫描发现的每个处理方法分配一个稠密编号，用ByteBuddy Advice在方法入口内联一次计数
+// 计数器是按编号索引的LongAdder数组，竞争时自动分散到多个单元；计数路径只有一次数组读取和一次increment，不产生对象
+// 映射继承自父类或接口时方法体通常在声明映射的类型中，多个控制器可能共用它：这个方法按接收者的类分派到各控制器自己的编号，
+// 控制器覆盖了该方法时改为直接计数覆盖的方法，并从分派表中移除，调用super时不会重复计数
+// 被插桩的类通过系统类加载器访问这个类，所以它和increment、incrementInherited必须是public的
+public final class InvocationCounters {
+    // 绑定到Advice参数上的编号常量，每个方法内联时替换成自己的编号
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    @interface CounterId {
+    }
+
+    static final class CountingAdvice {
+        @Advice.OnMethodEnter
+        static void enter(@CounterId int id) {
+            InvocationCounters.increment(id);
+        }
+    }
+
+    // 声明映射的父类或接口中的方法，编号是分派表的下标
+    static final class InheritedCountingAdvice {
+        @Advice.OnMethodEnter
+        static void enter(@CounterId int table, @Advice.This Object self) {
+            InvocationCounters.incrementInherited(table, self);
+        }
+    }
+
+    private static volatile LongAdder[] counters = new LongAdder[0];
+    // 类名 + 方法名 + 描述符 -> 编号，只增不减，重复扫描时同一个方法保持原来的编号
+    private static final Map<String, Integer> ids = new HashMap<>();
+    // 类名 -> 该类中需要计数的方法，转换器在类加载或重转换时读取
+    private static final Map<String, Map<String, Integer>> methodsByClass = new ConcurrentHashMap<>();
+    // 声明映射的类名 -> 方法 -> 分派表下标；分派表为接收者的类名 -> 编号
+    private static final Map<String, Map<String, Integer>> inheritedByClass = new ConcurrentHashMap<>();
+    private static final List<Map<String, Integer>> dispatchTables = new ArrayList<>();
+    private static volatile Map<?, ?>[] dispatch = new Map<?, ?>[0];
+    // 继承了映射的控制器类名 -> 方法 -> 分派表下标，控制器覆盖了该方法时用来移除分派
+    private static final Map<String, Map<String, Integer>> overridable = new ConcurrentHashMap<>();
+    private static boolean installed;
+
+    private InvocationCounters() {
+    }
+
+    public static void increment(int id) {
+        LongAdder[] adders = counters;
+        if (id < adders.length) {
+            adders[id].increment();
+        }
+    }
+
+    public static void incrementInherited(int table, Object self) {
+        Map<?, ?>[] tables = dispatch;
+        if (table < tables.length && self != null) {
+            Object id = tables[table].get(self.getClass().getName());
+            if (id != null) {
+                increment((Integer) id);
+            }
+        }
+    }
+
+    static boolean isEnabled() {
+        return installed;
+    }
+
+    static long count(int id) {
+        LongAdder[] adders = counters;
+        return id >= 0 && id < adders.length ? adders[id].sum() : 0;
+    }
+
+    // 所有计数之和，任何一次调用都会使它变化，查询端点用它区分计数是否有更新
+    static long total() {
+        long total = 0;
+        for (LongAdder adder : counters) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    // 为新发现的处理方法分配编号并写回端点，然后插桩：尚未加载的类在加载时转换，已加载的类重转换
+    // 返回本次新加入计数的方法数
+    static synchronized int instrument(Instrumentation instrumentation, List<ApiDefinition> apis) {
+        Set<String> changedClasses = new HashSet<>();
+        int added = 0;
+        for (ApiDefinition api : apis) {
+            String key = api.sourceClass + '#' + api.sourceMethod + api.descriptor;
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = ids.size();
+                ids.put(key, id);
+                String method = api.sourceMethod + api.descriptor;
+                methodsByClass.computeIfAbsent(api.sourceClass, k -> new ConcurrentHashMap<>()).put(method, id);
+                changedClasses.add(api.sourceClass);
+                if (api.declaringClass != null) {
+                    int table = inheritedTable(api.declaringClass, method);
+                    dispatchTables.get(table).put(api.sourceClass, id);
+                    overridable.computeIfAbsent(api.sourceClass, k -> new ConcurrentHashMap<>()).put(method, table);
+                    changedClasses.add(api.declaringClass);
+                }
+                added++;
+            }
+            api.counterId = id;
+        }
+        if (ids.size() > counters.length) {
+            LongAdder[] grown = new LongAdder[ids.size()];
+            LongAdder[] current = counters;
+            System.arraycopy(current, 0, grown, 0, current.length);
+            for (int i = current.length; i < grown.length; i++) {
+                grown[i] = new LongAdder();
+            }
+            counters = grown;
+        }
+        if (dispatchTables.size() > dispatch.length) {
+            dispatch = dispatchTables.toArray(new Map<?, ?>[0]);
+        }
+        if (!installed) {
+            install(instrumentation);
+            installed = true;
+        } else if (!changedClasses.isEmpty()) {
+            retransform(instrumentation, changedClasses);
+        }
+        return added;
+    }
+
+    private static int inheritedTable(String declaringClass, String method) {
+        Map<String, Integer> methods = inheritedByClass.computeIfAbsent(declaringClass, k -> new ConcurrentHashMap<>());
+        Integer table = methods.get(method);
+        if (table == null) {
+            table = dispatchTables.size();
+            dispatchTables.add(new ConcurrentHashMap<>());
+            methods.put(method, table);
+        }
+        return table;
+    }
+
+    // 安装时重转换已加载的匹配类；之后加载的类由同一个转换器处理
+    // 重转换总是从原始字节码开始，每次按当前的方法表完整地重新插桩，不会重复计数
+    private static void install(Instrumentation instrumentation) {
+        new AgentBuilder.Default()
+                .disableClassFormatChanges()
+                .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+                .type(type -> methodsByClass.containsKey(type.getName()) || inheritedByClass.containsKey(type.getName()))
+                .transform(InvocationCounters::transform)
+                .installOn(instrumentation);
+    }
+
+    private static DynamicType.Builder<?> transform(DynamicType.Builder<?> builder, TypeDescription type,
+                                                    ClassLoader loader, Object module, Object protectionDomain) {
+        String name = type.getName();
+        // 父类总是先于子类加载，控制器覆盖了继承的方法时在它第一次被调用之前移除分派
+        Map<String, Integer> overrides = overridable.get(name);
+        if (overrides != null) {
+            for (Map.Entry<String, Integer> method : overrides.entrySet()) {
+                if (!type.getDeclaredMethods().filter(matches(method.getKey())
+                        .and(ElementMatchers.not(ElementMatchers.isAbstract()))).isEmpty()) {
+                    dispatchTables.get(method.getValue()).remove(name);
+                }
+            }
+        }
+        Map<String, Integer> methods = methodsByClass.get(name);
+        if (methods != null) {
+            for (Map.Entry<String, Integer> method : methods.entrySet()) {
+                builder = builder.visit(Advice.withCustomMapping()
+                        .bind(CounterId.class, method.getValue())
+                        .to(CountingAdvice.class)
+                        .on(matches(method.getKey())));
+            }
+        }
+        Map<String, Integer> inherited = inheritedByClass.get(name);
+        if (inherited != null) {
+            for (Map.Entry<String, Integer> method : inherited.entrySet()) {
+                builder = builder.visit(Advice.withCustomMapping()
+                        .bind(CounterId.class, method.getValue())
+                        .to(InheritedCountingAdvice.class)
+                        .on(matches(method.getKey()).and(ElementMatchers.not(ElementMatchers.isAbstract()))));
+            }
+        }
+        return builder;
+    }
+
+    // 方法名 + 描述符
+    private static ElementMatcher.Junction<MethodDescription> matches(String signature) {
+        int descriptorStart = signature.indexOf('(');
+        return ElementMatchers.<MethodDescription>named(signature.substring(0, descriptorStart))
+                .and(ElementMatchers.hasDescriptor(signature.substring(descriptorStart)));
+    }
+
+    private static void retransform(Instrumentation instrumentation, Set<String> classNames) {
+        List<Class<?>> loaded = new ArrayList<>();
+        for (Class<?> type : instrumentation.getAllLoadedClasses()) {
+            if (classNames.contains(type.getName()) && instrumentation.isModifiableClass(type)) {
+                loaded.add(type);
+            }
+        }
+        if (loaded.isEmpty()) {
+            return;
+        }
+        try {
+            instrumentation.retransformClasses(loaded.toArray(new Class<?>[0]));
+        } catch (UnmodifiableClassException | RuntimeException e) {
+            System.err.println("[API Scanner] Warning: Could not instrument handler methods: " + e.getMessage());
+        }
+    }
+}
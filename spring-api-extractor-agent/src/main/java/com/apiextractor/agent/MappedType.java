@@ -0,0 +1,46 @@
+package com.apiextractor.agent;
+
+import java.util.List;
+import java.util.Map;
+
+// 一个类型上声明的请求映射
+// 控制器记录自己的映射方法，用来判断是否覆盖了继承的映射；接口和父类等非控制器类型的映射由继承它们的控制器在扫描结束后使用
+final class MappedType {
+    final String className;
+    final boolean controller;
+    // 类级别映射的路径，没有类级别映射时为null
+    final String basePath;
+    final List<String> httpMethods;
+    final List<Method> methods;
+
+    MappedType(String className, boolean controller, String basePath, List<String> httpMethods,
+               List<Method> methods) {
+        this.className = className;
+        this.controller = controller;
+        this.basePath = basePath;
+        this.httpMethods = httpMethods;
+        this.methods = methods;
+    }
+
+    // 方法上的映射，路径与HTTP方法是注解上声明的原始值，还没有与类级别映射组合
+    static final class Method {
+        final String name;
+        final String descriptor;
+        final String path;
+        final List<String> httpMethods;
+        final Map<String, String> parameters;
+
+        Method(String name, String descriptor, String path, List<String> httpMethods,
+               Map<String, String> parameters) {
+            this.name = name;
+            this.descriptor = descriptor;
+            this.path = path;
+            this.httpMethods = httpMethods;
+            this.parameters = parameters;
+        }
+
+        String key() {
+            return name + descriptor;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.apiextractor.agent;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// 随机访问Spring Boot JAR中的BOOT-INF/lib或WAR中的WEB-INF/lib嵌套JAR
+// Spring Boot以STORED方式存放嵌套JAR，可以直接映射其在外层文件中的区域，读取嵌套JAR自己的中央目录，
+// 只有需要分析的类条目才会被复制或解压，其余条目不产生I/O
+final class NestedJarReader implements Closeable {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_COMMENT = 0xFFFF;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    // 嵌套JAR名称 -> {本地文件头偏移, 大小}，只记录STORED条目
+    private final Map<String, long[]> storedJars;
+
+    private NestedJarReader(RandomAccessFile file, Map<String, long[]> storedJars) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.storedJars = storedJars;
+    }
+
+    // Spring Boot JAR的BOOT-INF/lib和WAR的WEB-INF/lib中的依赖JAR
+    static boolean isLibraryJar(String name) {
+        return (name.startsWith("BOOT-INF/lib/") || name.startsWith("WEB-INF/lib/")) && name.endsWith(".jar");
+    }
+
+    // 读取外层JAR的中央目录；不支持的格式（如ZIP64）返回null，由调用方退回流式读取
+    static NestedJarReader open(File jarFile) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(jarFile, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long fileSize = channel.size();
+            int tailSize = (int) Math.min(fileSize, EOCD_SIZE + MAX_COMMENT);
+            ByteBuffer tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, tail, fileSize - tailSize);
+
+            int eocd = findEndOfCentralDirectory(tail, 0, tailSize);
+            if (eocd < 0) {
+                raf.close();
+                return null;
+            }
+
+            long cdSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+            long cdOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+            int entryCount = tail.getShort(eocd + 10) & 0xFFFF;
+            if (entryCount == 0xFFFF || cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL) {
+                raf.close();
+                return null;
+            }
+
+            // 可执行JAR前面可能带有启动脚本，中央目录中的偏移相对于ZIP数据的起点
+            long eocdPosition = fileSize - tailSize + eocd;
+            long base = eocdPosition - cdSize - cdOffset;
+            ByteBuffer cd = channel.map(FileChannel.MapMode.READ_ONLY, base + cdOffset, cdSize)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            Map<String, long[]> storedJars = new HashMap<>();
+            byte[] nameBuffer = new byte[256];
+            int pos = 0;
+            for (int i = 0; i < entryCount; i++) {
+                if (pos + 46 > cdSize || cd.getInt(pos) != CEN_SIGNATURE) {
+                    raf.close();
+                    return null;
+                }
+                int method = cd.getShort(pos + 10) & 0xFFFF;
+                long size = cd.getInt(pos + 24) & 0xFFFFFFFFL;
+                int nameLength = cd.getShort(pos + 28) & 0xFFFF;
+                int extraLength = cd.getShort(pos + 30) & 0xFFFF;
+                int commentLength = cd.getShort(pos + 32) & 0xFFFF;
+                long localHeader = cd.getInt(pos + 42) & 0xFFFFFFFFL;
+
+                if (method == STORED && size < Integer.MAX_VALUE) {
+                    if (nameBuffer.length < nameLength) {
+                        nameBuffer = new byte[nameLength];
+                    }
+                    for (int j = 0; j < nameLength; j++) {
+                        nameBuffer[j] = cd.get(pos + 46 + j);
+                    }
+                    String name = new String(nameBuffer, 0, nameLength, StandardCharsets.UTF_8);
+                    if (isLibraryJar(name)) {
+                        storedJars.put(name, new long[]{base + localHeader, size});
+                    }
+                }
+                pos += 46 + nameLength + extraLength + commentLength;
+            }
+            return new NestedJarReader(raf, storedJars);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    // 映射一个STORED嵌套JAR；未找到或格式不支持时返回null
+    NestedJar openNestedJar(String name) throws IOException {
+        long[] location = storedJars.get(name);
+        if (location == null) {
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, location[0]);
+        int nameLength = header.getShort(26) & 0xFFFF;
+        int extraLength = header.getShort(28) & 0xFFFF;
+        long dataOffset = location[0] + 30 + nameLength + extraLength;
+
+        ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, location[1])
+                .order(ByteOrder.LITTLE_ENDIAN);
+        return NestedJar.open(data);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer buffer, int from, int to) {
+        for (int pos = to - EOCD_SIZE; pos >= from; pos--) {
+            if (buffer.getInt(pos) == EOCD_SIGNATURE) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    // 映射到内存的嵌套JAR，按中央目录顺序遍历条目，只由一个线程使用
+    static final class NestedJar implements Closeable {
+        private final ByteBuffer data;
+        private final ByteBuffer cursor;
+        private final int base;
+        private final int entryCount;
+        private final int cdStart;
+        private int cdPos;
+        private int index = -1;
+        private byte[] nameBuffer = new byte[256];
+        private Inflater inflater;
+
+        private String name;
+        private int method;
+        private int compressedSize;
+        private int size;
+        private int localHeader;
+
+        private NestedJar(ByteBuffer data, int base, int cdOffset, int entryCount) {
+            this.data = data;
+            this.cursor = data.duplicate();
+            this.base = base;
+            this.cdStart = base + cdOffset;
+            this.cdPos = cdStart;
+            this.entryCount = entryCount;
+        }
+
+        static NestedJar open(ByteBuffer data) {
+            int limit = data.limit();
+            int tail = Math.min(limit, EOCD_SIZE + MAX_COMMENT);
+            int eocd = findEndOfCentralDirectory(data, limit - tail, limit);
+            if (eocd < 0) {
+                return null;
+            }
+
+            int entryCount = data.getShort(eocd + 10) & 0xFFFF;
+            long cdSize = data.getInt(eocd + 12) & 0xFFFFFFFFL;
+            long cdOffset = data.getInt(eocd + 16) & 0xFFFFFFFFL;
+            if (entryCount == 0xFFFF || cdSize + cdOffset > eocd) {
+                return null;
+            }
+            int base = (int) (eocd - cdSize - cdOffset);
+            return new NestedJar(data, base, (int) cdOffset, entryCount);
+        }
+
+        // 按名称定位条目，逐个比较中央目录中的原始名称字节；之后需要rewind()才能从头遍历
+        boolean seek(String entryName) throws IOException {
+            byte[] target = entryName.getBytes(StandardCharsets.UTF_8);
+            rewind();
+            while (index + 1 < entryCount) {
+                int pos = index < 0 ? cdPos : cdPos + 46 + (data.getShort(cdPos + 28) & 0xFFFF)
+                        + (data.getShort(cdPos + 30) & 0xFFFF) + (data.getShort(cdPos + 32) & 0xFFFF);
+                if (pos + 46 > data.limit() || data.getInt(pos) != CEN_SIGNATURE) {
+                    throw new IOException("Invalid central directory entry");
+                }
+                cdPos = pos;
+                index++;
+                if ((data.getShort(pos + 28) & 0xFFFF) == target.length && nameEquals(pos + 46, target)) {
+                    loadEntry();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void rewind() {
+            cdPos = cdStart;
+            index = -1;
+        }
+
+        private boolean nameEquals(int pos, byte[] target) {
+            for (int i = 0; i < target.length; i++) {
+                if (data.get(pos + i) != target[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // 前进到下一个条目，只读取中央目录，不触碰条目数据
+        boolean next() throws IOException {
+            if (index >= 0) {
+                cdPos += 46 + (data.getShort(cdPos + 28) & 0xFFFF) + (data.getShort(cdPos + 30) & 0xFFFF)
+                        + (data.getShort(cdPos + 32) & 0xFFFF);
+            }
+            if (++index >= entryCount) {
+                return false;
+            }
+            if (cdPos + 46 > data.limit() || data.getInt(cdPos) != CEN_SIGNATURE) {
+                throw new IOException("Invalid central directory entry");
+            }
+            loadEntry();
+            return true;
+        }
+
+        private void loadEntry() throws IOException {
+            method = data.getShort(cdPos + 10) & 0xFFFF;
+            compressedSize = data.getInt(cdPos + 20);
+            size = data.getInt(cdPos + 24);
+            localHeader = data.getInt(cdPos + 42);
+
+            int nameLength = data.getShort(cdPos + 28) & 0xFFFF;
+            if (cdPos + 46 + nameLength > data.limit()) {
+                throw new IOException("Invalid central directory entry");
+            }
+            if (nameBuffer.length < nameLength) {
+                nameBuffer = new byte[nameLength];
+            }
+            cursor.position(cdPos + 46);
+            cursor.get(nameBuffer, 0, nameLength);
+            name = new String(nameBuffer, 0, nameLength, StandardCharsets.UTF_8);
+        }
+
+        String name() {
+            return name;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isCompressed() {
+            return method != STORED;
+        }
+
+        // 把当前条目的内容读入线程复用的缓冲区并返回长度，STORED条目直接复制，DEFLATED条目在这里解压
+        // 本地头和条目数据的范围在读取前检查，损坏的条目只抛出IOException，由调用方跳过该条目
+        int readInto(ClassBuffer buffer) throws IOException {
+            if (size < 0 || compressedSize < 0) {
+                throw new IOException("Entry too large: " + name);
+            }
+            long header = (long) base + (localHeader & 0xFFFFFFFFL);
+            if (header + 30 > data.limit() || data.getInt((int) header) != LOC_SIGNATURE) {
+                throw new IOException("Invalid local header: " + name);
+            }
+            int dataStart = (int) header + 30 + (data.getShort((int) header + 26) & 0xFFFF)
+                    + (data.getShort((int) header + 28) & 0xFFFF);
+            if ((long) dataStart + (method == STORED ? size : compressedSize) > data.limit()) {
+                throw new IOException("Entry extends past end of JAR: " + name);
+            }
+            byte[] result = buffer.ensureCapacity(size);
+
+            if (method == STORED) {
+                cursor.position(dataStart);
+                cursor.get(result, 0, size);
+                return size;
+            }
+            if (method != DEFLATED) {
+                throw new IOException("Unsupported compression method " + method + ": " + name);
+            }
+
+            byte[] compressed = buffer.ensureCompressedCapacity(compressedSize);
+            cursor.position(dataStart);
+            cursor.get(compressed, 0, compressedSize);
+
+            if (inflater == null) {
+                inflater = new Inflater(true);
+            } else {
+                inflater.reset();
+            }
+            inflater.setInput(compressed, 0, compressedSize);
+            try {
+                int n = 0;
+                while (n < size) {
+                    int read = inflater.inflate(result, n, size - n);
+                    if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    n += read;
+                }
+                if (n != size) {
+                    throw new IOException("Truncated entry: " + name);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt entry: " + name, e);
+            }
+            return size;
+        }
+
+        @Override
+        public void close() {
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 把具体的请求路径（如访问日志中的 /users/42/orders）匹配到扫描得到的端点（/users/{id}/orders）
+// 所有路径模板在构造时编译成按段组织的前缀树：每个节点的字面量子节点放在开放寻址哈希表中，变量段共用一个子节点；
+// 匹配时字面量优先、变量其次，失败时回溯，与Spring选择更具体映射的规则一致。匹配只读取CharSequence，不产生任何对象
+// 变量段（{id}、*，以及 {name}.json 这类部分变量）匹配任意一个非空段；** 和 {*rest} 匹配剩余的所有段
+// 连续的斜杠和末尾的斜杠被忽略，查询串和片段不参与匹配，完整URL会跳过协议和主机部分
+public final class PathTemplateMatcher {
+    private static final int[] NONE = new int[0];
+
+    private static final class Node {
+        // 构造期间使用，freeze之后清空
+        Map<String, Node> literals = new LinkedHashMap<>();
+        List<Integer> endpointList = new ArrayList<>();
+        List<Integer> catchAllList = new ArrayList<>();
+
+        // 字面量子节点的哈希表，容量为2的幂，空槽为null
+        String[] labels;
+        int[] labelHashes;
+        Node[] children;
+        int mask;
+        Node variable;
+        // 模板在这个节点结束的端点，以及在这里以 ** 结束的端点
+        int[] endpoints = NONE;
+        int[] catchAll = NONE;
+
+        Node literalChild(String label) {
+            return literals.computeIfAbsent(label, k -> new Node());
+        }
+
+        Node variableChild() {
+            if (variable == null) {
+                variable = new Node();
+            }
+            return variable;
+        }
+
+        void freeze() {
+            endpoints = toArray(endpointList);
+            catchAll = toArray(catchAllList);
+            endpointList = null;
+            catchAllList = null;
+            if (!literals.isEmpty()) {
+                int capacity = Integer.highestOneBit(literals.size() * 2 - 1) << 1;
+                labels = new String[capacity];
+                labelHashes = new int[capacity];
+                children = new Node[capacity];
+                mask = capacity - 1;
+                for (Map.Entry<String, Node> entry : literals.entrySet()) {
+                    int hash = entry.getKey().hashCode();
+                    int slot = spread(hash) & mask;
+                    while (labels[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    labels[slot] = entry.getKey();
+                    labelHashes[slot] = hash;
+                    children[slot] = entry.getValue();
+                    entry.getValue().freeze();
+                }
+            }
+            literals = null;
+            if (variable != null) {
+                variable.freeze();
+            }
+        }
+
+        // hash是按String.hashCode规则对[start, end)计算的值，只有哈希相等时才逐字符比较
+        Node find(CharSequence path, int start, int end, int hash) {
+            if (labels == null) {
+                return null;
+            }
+            int length = end - start;
+            for (int slot = spread(hash) & mask; labels[slot] != null; slot = (slot + 1) & mask) {
+                String label = labels[slot];
+                if (labelHashes[slot] == hash && label.length() == length && regionEquals(label, path, start)) {
+                    return children[slot];
+                }
+            }
+            return null;
+        }
+    }
+
+    private final ApiDefinition[] endpoints;
+    // 每个端点的HTTP方法，空数组表示不限定方法
+    private final String[][] endpointMethods;
+    private final Node root = new Node();
+
+    public PathTemplateMatcher(List<ApiDefinition> apis) {
+        endpoints = apis.toArray(new ApiDefinition[0]);
+        endpointMethods = new String[endpoints.length][];
+        for (int id = 0; id < endpoints.length; id++) {
+            ApiDefinition api = endpoints[id];
+            endpointMethods[id] = api.methods.toArray(new String[0]);
+            add(api.path == null ? "" : api.path, id);
+        }
+        root.freeze();
+    }
+
+    // 端点编号即构造时列表中的下标
+    public ApiDefinition endpoint(int id) {
+        return endpoints[id];
+    }
+
+    public int size() {
+        return endpoints.length;
+    }
+
+    // 返回匹配的端点编号，没有匹配时返回-1
+    public int match(CharSequence url) {
+        return match(url, null);
+    }
+
+    // 只匹配声明了该HTTP方法或未限定方法的端点；路径匹配但方法都不符时返回-1
+    public int match(CharSequence url, CharSequence method) {
+        int end = url.length();
+        int start = 0;
+        for (int i = 0; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        if (end > 0 && url.charAt(0) != '/') {
+            start = pathStart(url, end);
+        }
+        return match(root, url, start, end, method);
+    }
+
+    // 批量匹配前count个路径，results[i]为urls[i]的端点编号或-1；methods为null时不区分HTTP方法
+    // 返回匹配成功的数量。调用方可以复用数组逐批处理日志，整个过程不产生对象
+    public int matchAll(CharSequence[] urls, CharSequence[] methods, int count, int[] results) {
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            int id = match(urls[i], methods == null ? null : methods[i]);
+            results[i] = id;
+            if (id >= 0) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private void add(String path, int id) {
+        Node node = root;
+        int length = path.length();
+        int pos = 0;
+        while (true) {
+            while (pos < length && path.charAt(pos) == '/') {
+                pos++;
+            }
+            if (pos == length) {
+                node.endpointList.add(id);
+                return;
+            }
+            // 正则约束中可能出现斜杠，花括号内的斜杠不作为分隔符
+            int end = pos;
+            int depth = 0;
+            while (end < length && (depth > 0 || path.charAt(end) != '/')) {
+                char c = path.charAt(end);
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}' && depth > 0) {
+                    depth--;
+                }
+                end++;
+            }
+            String segment = path.substring(pos, end);
+            if (segment.equals("**") || segment.startsWith("{*")) {
+                node.catchAllList.add(id);
+                return;
+            }
+            node = segment.indexOf('{') >= 0 || segment.indexOf('*') >= 0
+                    ? node.variableChild() : node.literalChild(segment);
+            pos = end;
+        }
+    }
+
+    private int match(Node node, CharSequence url, int pos, int end, CharSequence method) {
+        while (pos < end && url.charAt(pos) == '/') {
+            pos++;
+        }
+        if (pos == end) {
+            int id = select(node.endpoints, method);
+            return id >= 0 ? id : select(node.catchAll, method);
+        }
+        int segmentEnd = pos;
+        int hash = 0;
+        while (segmentEnd < end) {
+            char c = url.charAt(segmentEnd);
+            if (c == '/') {
+                break;
+            }
+            hash = 31 * hash + c;
+            segmentEnd++;
+        }
+        Node literal = node.find(url, pos, segmentEnd, hash);
+        if (literal != null) {
+            int id = match(literal, url, segmentEnd, end, method);
+            if (id >= 0) {
+                return id;
+            }
+        }
+        if (node.variable != null) {
+            int id = match(node.variable, url, segmentEnd, end, method);
+            if (id >= 0) {
+                return id;
+            }
+        }
+        return select(node.catchAll, method);
+    }
+
+    private int select(int[] ids, CharSequence method) {
+        for (int id : ids) {
+            if (method == null) {
+                return id;
+            }
+            String[] methods = endpointMethods[id];
+            if (methods.length == 0) {
+                return id;
+            }
+            for (String candidate : methods) {
+                if (candidate.length() == method.length() && regionEqualsIgnoreCase(candidate, method)) {
+                    return id;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // http://host:port/path 形式的完整URL，返回路径开始的位置；不是完整URL时从头开始
+    private static int pathStart(CharSequence url, int end) {
+        for (int i = 0; i + 2 < end; i++) {
+            char c = url.charAt(i);
+            if (c == '/') {
+                return 0;
+            }
+            if (c == ':' && url.charAt(i + 1) == '/' && url.charAt(i + 2) == '/') {
+                for (int j = i + 3; j < end; j++) {
+                    if (url.charAt(j) == '/') {
+                        return j;
+                    }
+                }
+                return end;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean regionEquals(String label, CharSequence path, int start) {
+        for (int i = 0; i < label.length(); i++) {
+            if (label.charAt(i) != path.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionEqualsIgnoreCase(String a, CharSequence b) {
+        for (int i = 0; i < a.length(); i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y && Character.toUpperCase(x) != Character.toUpperCase(y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array.length == 0 ? NONE : array;
+    }
+}
@@ -0,0 +1,108 @@
+package com.apiextractor.agent;
+
+import java.util.Arrays;
+
+// 字符前缀树，参数中的包名前缀和JAR名通配符在启动时编译一次，匹配时只沿树走一遍，不产生对象
+final class PrefixTrie<V> {
+    // 对路径上某个前缀节点的值做进一步检查，例如通配符的剩余部分
+    interface ValueMatcher<V> {
+        boolean matches(V value, CharSequence input);
+    }
+
+    private static final class Node<V> {
+        char[] labels = new char[0];
+        Node<V>[] children = newArray(0);
+        V value;
+
+        Node<V> child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node<V> getOrAddChild(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int insert = -i - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node<V>[] newChildren = newArray(children.length + 1);
+            System.arraycopy(labels, 0, newLabels, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            newLabels[insert] = c;
+            newChildren[insert] = new Node<>();
+            System.arraycopy(labels, insert, newLabels, insert + 1, labels.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[insert];
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> Node<V>[] newArray(int size) {
+            return (Node<V>[]) new Node<?>[size];
+        }
+    }
+
+    private final Node<V> root = new Node<>();
+    private int size;
+
+    // 同一前缀重复添加时后添加的值覆盖先添加的值
+    void put(String prefix, V value) {
+        Node<V> node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.getOrAddChild(prefix.charAt(i));
+        }
+        if (node.value == null) {
+            size++;
+        }
+        node.value = value;
+    }
+
+    // 精确查找某个前缀对应的值
+    V get(String prefix) {
+        Node<V> node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        return node == null ? null : node.value;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // 返回input从from开始的最长匹配前缀对应的值，没有匹配时返回null
+    V longestPrefixValue(CharSequence input, int from) {
+        Node<V> node = root;
+        V result = root.value;
+        for (int i = from; i < input.length(); i++) {
+            node = node.child(input.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                result = node.value;
+            }
+        }
+        return result;
+    }
+
+    // 路径上任一前缀的值通过matcher检查即返回true
+    boolean anyPrefixMatches(CharSequence input, ValueMatcher<V> matcher) {
+        Node<V> node = root;
+        if (node.value != null && matcher.matches(node.value, input)) {
+            return true;
+        }
+        for (int i = 0; i < input.length(); i++) {
+            node = node.child(input.charAt(i));
+            if (node == null) {
+                return false;
+            }
+            if (node.value != null && matcher.matches(node.value, input)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,307 @@
+package com.apiextractor.agent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 本机查询端点：只绑定回环地址，或JDK 16及以上的Unix域套接字，按路径前缀、HTTP方法和控制器类查询当前结果
+// 两种传输都是ServerSocketChannel，共用同一个最小的HTTP/1.1实现：每个连接处理一个请求后关闭
+// 处理线程很少，连接以非阻塞方式读写，整个请求超过REQUEST_TIMEOUT_MILLIS就关闭，空闲或很慢的连接不会占住处理线程
+// 查询直接使用CatalogIndex快照；响应带ETag，If-None-Match命中时返回304，不生成响应体
+final class QueryServer {
+    static final String PATH = "/apis";
+    private static final String UNIX_PREFIX = "unix:";
+    private static final int MAX_REQUEST_BYTES = 8192;
+    private static final int HANDLER_THREADS = 2;
+    private static final long REQUEST_TIMEOUT_MILLIS = 2000;
+
+    private final ServerSocketChannel channel;
+    private final String description;
+    private final ExecutorService handlers;
+    // 扫描完成前为null，此时返回503
+    private volatile CatalogIndex catalog;
+
+    private QueryServer(ServerSocketChannel channel, String description) {
+        this.channel = channel;
+        this.description = description;
+        AtomicInteger count = new AtomicInteger();
+        this.handlers = Executors.newFixedThreadPool(HANDLER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "api-scanner-query-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread acceptor = new Thread(this::accept, "api-scanner-query");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // address为端口号（0表示任选空闲端口）或 unix:<套接字文件路径>
+    static QueryServer open(String address) throws IOException {
+        if (address.startsWith(UNIX_PREFIX)) {
+            Path file = Paths.get(address.substring(UNIX_PREFIX.length()));
+            ServerSocketChannel channel = openUnixChannel(file);
+            return new QueryServer(channel, UNIX_PREFIX + file.toAbsolutePath() + " " + PATH);
+        }
+        int port;
+        try {
+            port = Integer.parseInt(address.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid query address '" + address + "', expected a port or unix:<path>");
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        InetSocketAddress bound = (InetSocketAddress) channel.getLocalAddress();
+        return new QueryServer(channel, "http://" + bound.getAddress().getHostAddress() + ":" + bound.getPort() + PATH);
+    }
+
+    // Unix域套接字的API在JDK 16加入，编译目标是Java 8，只能通过反射调用
+    private static ServerSocketChannel openUnixChannel(Path file) throws IOException {
+        ServerSocketChannel channel;
+        SocketAddress address;
+        try {
+            Class<?> addressType = Class.forName("java.net.UnixDomainSocketAddress");
+            address = (SocketAddress) addressType.getMethod("of", Path.class).invoke(null, file);
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            channel = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+                    .invoke(null, unix);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalArgumentException | IllegalAccessException e) {
+            throw new IOException("Unix domain sockets require JDK 16 or later");
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        try {
+            // 上次运行残留的套接字文件会导致绑定失败
+            Files.deleteIfExists(file);
+            channel.bind(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException | IOException e) {
+            System.err.println("[API Scanner] Warning: Could not restrict permissions of " + file + ": " + e.getMessage());
+        }
+        file.toFile().deleteOnExit();
+        return channel;
+    }
+
+    String description() {
+        return description;
+    }
+
+    void publish(CatalogIndex catalog) {
+        this.catalog = catalog;
+    }
+
+    private void accept() {
+        while (true) {
+            try {
+                SocketChannel client = channel.accept();
+                handlers.execute(() -> handle(client));
+            } catch (IOException e) {
+                System.err.println("[API Scanner] Query endpoint stopped: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (SocketChannel channel = client; Selector selector = Selector.open()) {
+            channel.configureBlocking(false);
+            // 键的附件是请求的截止时间
+            SelectionKey c = channel.register(selector, SelectionKey.OP_READ,
+                    System.nanoTime() + REQUEST_TIMEOUT_MILLIS * 1_000_000L);
+            String request = readRequest(c);
+            if (request == null) {
+                respond(c, 400, "Bad Request", null, null, true);
+                return;
+            }
+            int lineEnd = request.indexOf("\r\n");
+            String[] line = request.substring(0, lineEnd).split(" ");
+            if (line.length != 3) {
+                respond(c, 400, "Bad Request", null, null, true);
+                return;
+            }
+            String method = line[0];
+            boolean head = "HEAD".equals(method);
+            if (!head && !"GET".equals(method)) {
+                respond(c, 405, "Method Not Allowed", "Allow: GET, HEAD\r\n", null, true);
+                return;
+            }
+            String target = line[1];
+            int queryStart = target.indexOf('?');
+            String path = queryStart < 0 ? target : target.substring(0, queryStart);
+            if (!PATH.equals(path)) {
+                respond(c, 404, "Not Found", null, null, head);
+                return;
+            }
+            CatalogIndex current = catalog;
+            if (current == null) {
+                respond(c, 503, "Service Unavailable", "Retry-After: 1\r\n", null, head);
+                return;
+            }
+            // 响应中带有调用计数时，计数变化也要使ETag变化
+            String etag = InvocationCounters.isEnabled()
+                    ? current.etag.substring(0, current.etag.length() - 1) + "-" + InvocationCounters.total() + "\""
+                    : current.etag;
+            String etagHeader = "ETag: " + etag + "\r\nCache-Control: no-cache\r\n";
+            String ifNoneMatch = header(request.substring(lineEnd + 2), "if-none-match");
+            if (ifNoneMatch != null && matchesEtag(ifNoneMatch, etag)) {
+                respond(c, 304, "Not Modified", etagHeader, null, true);
+                return;
+            }
+            Map<String, String> parameters = parseQuery(queryStart < 0 ? "" : target.substring(queryStart + 1));
+            int[] matched = current.query(parameters.get("path"), parameters.get("method"), parameters.get("class"));
+            respond(c, 200, "OK", etagHeader + "Content-Type: application/json; charset=utf-8\r\n",
+                    render(current, matched), head);
+        } catch (IOException | RuntimeException e) {
+            // 客户端提前断开或超时等情况只影响这一个请求
+        }
+    }
+
+    // 读到请求头结束为止；请求没有请求体，超过上限的请求视为无效
+    private static String readRequest(SelectionKey client) throws IOException {
+        SocketChannel channel = (SocketChannel) client.channel();
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_REQUEST_BYTES);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                return null;
+            }
+            if (read == 0) {
+                await(client, SelectionKey.OP_READ);
+                continue;
+            }
+            String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.ISO_8859_1);
+            if (text.contains("\r\n\r\n")) {
+                return text;
+            }
+        }
+        return null;
+    }
+
+    private static String header(String headers, String name) {
+        for (String line : headers.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.ROOT).equals(name)) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    // If-None-Match可以列出多个ETag，也可以是*；弱比较忽略W/前缀
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if ("*".equals(value) || etag.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            if (!value.isEmpty()) {
+                parameters.put(name, value);
+            }
+        }
+        return parameters;
+    }
+
+    // 与结果文件相同的文档结构，apiCount为匹配的端点数，不含扫描统计
+    private static byte[] render(CatalogIndex catalog, int[] matched) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 + matched.length * 192);
+        try (ResultWriter writer = ResultWriter.create(out, ResultWriter.Format.COMPACT)) {
+            writer.writeHeader(new Date(catalog.createdMillis).toString(), catalog.scannedJars, catalog.controllers,
+                    matched.length);
+            for (int index : matched) {
+                writer.writeApi(catalog.apis[index]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void respond(SelectionKey client, int status, String reason, String headers, byte[] body,
+                                boolean omitBody) throws IOException {
+        int length = body == null ? 0 : body.length;
+        String head = "HTTP/1.1 " + status + " " + reason + "\r\n"
+                + (headers == null ? "" : headers)
+                + (status == 304 ? "" : "Content-Length: " + length + "\r\n")
+                + "Connection: close\r\n\r\n";
+        writeFully(client, ByteBuffer.wrap(head.getBytes(StandardCharsets.ISO_8859_1)));
+        if (body != null && !omitBody) {
+            writeFully(client, ByteBuffer.wrap(body));
+        }
+    }
+
+    private static void writeFully(SelectionKey client, ByteBuffer buffer) throws IOException {
+        SocketChannel channel = (SocketChannel) client.channel();
+        while (true) {
+            channel.write(buffer);
+            if (!buffer.hasRemaining()) {
+                return;
+            }
+            await(client, SelectionKey.OP_WRITE);
+        }
+    }
+
+    // 等待连接可读或可写，到达请求的截止时间时抛出SocketTimeoutException，调用方关闭连接
+    private static void await(SelectionKey client, int ops) throws IOException {
+        client.interestOps(ops);
+        Selector selector = client.selector();
+        while (true) {
+            long remainingMillis = ((Long) client.attachment() - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                throw new SocketTimeoutException("Query request timed out");
+            }
+            if (selector.select(remainingMillis) > 0) {
+                selector.selectedKeys().clear();
+                return;
+            }
+        }
+    }
+}
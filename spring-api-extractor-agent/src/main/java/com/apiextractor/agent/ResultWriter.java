@@ -0,0 +1,248 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+// 流式输出扫描结果，JsonGenerator直接写入带缓冲的文件通道，字符串转义由Jackson处理
+// 每个端点写完即丢弃，输出阶段的内存占用与端点数量无关
+final class ResultWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    enum Format {
+        // 带缩进的单个JSON文档
+        JSON,
+        // 不带空白的单个JSON文档
+        COMPACT,
+        // 每行一个端点，没有外层文档
+        NDJSON,
+        // 共享字符串表的二进制文件，由BinaryCatalogReader内存映射读取，见BinaryCatalogWriter
+        BIN;
+
+        // 离线扫描按制品命名结果文件时使用的扩展名
+        String extension() {
+            switch (this) {
+                case NDJSON:
+                    return ".ndjson";
+                case BIN:
+                    return ".bin";
+                default:
+                    return ".json";
+            }
+        }
+
+        static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.err.println("[API Scanner] Warning: Unknown output format '" + value + "', using json");
+                return JSON;
+            }
+        }
+    }
+
+    private final Format format;
+    // BIN格式时generator为null，端点交给binary在close时一次写出
+    private final JsonGenerator generator;
+    private final BinaryCatalogWriter binary;
+    private final WritableByteChannel binaryChannel;
+    private int written;
+    private boolean apisEnded;
+
+    private ResultWriter(Format format, JsonGenerator generator) {
+        this.format = format;
+        this.generator = generator;
+        this.binary = null;
+        this.binaryChannel = null;
+    }
+
+    private ResultWriter(WritableByteChannel channel) {
+        this.format = Format.BIN;
+        this.generator = null;
+        this.binary = new BinaryCatalogWriter();
+        this.binaryChannel = channel;
+    }
+
+    static ResultWriter open(File file, Format format, boolean gzip) throws IOException {
+        return open(file, format, gzip, false);
+    }
+
+    // append只用于NDJSON：追加的端点仍是独立的行，gzip时追加一个新的gzip成员，解压工具会依次读出
+    // BIN格式需要能被内存映射，不压缩
+    static ResultWriter open(File file, Format format, boolean gzip, boolean append) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (format == Format.BIN) {
+            return new ResultWriter(channel);
+        }
+        OutputStream out = Channels.newOutputStream(channel);
+        try {
+            if (gzip) {
+                out = new GZIPOutputStream(out, BUFFER_SIZE);
+            }
+            return create(new BufferedOutputStream(out, BUFFER_SIZE), format);
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    // 写入调用方提供的流，例如查询端点的响应缓冲区；close时关闭该流
+    static ResultWriter create(OutputStream out, Format format) throws IOException {
+        if (format == Format.BIN) {
+            return new ResultWriter(Channels.newChannel(out));
+        }
+        JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+        if (format == Format.JSON) {
+            generator.useDefaultPrettyPrinter();
+        } else if (format == Format.NDJSON) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+        }
+        return new ResultWriter(format, generator);
+    }
+
+    Format format() {
+        return format;
+    }
+
+    // 文档头部的汇总字段，之后开始apis数组；NDJSON没有头部
+    void writeHeader(String timestamp, int scannedJars, int controllers, int apiCount) throws IOException {
+        if (binary != null) {
+            binary.header(timestamp, scannedJars, controllers);
+            return;
+        }
+        if (format == Format.NDJSON) {
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeStringField("timestamp", timestamp);
+        generator.writeNumberField("scannedJars", scannedJars);
+        generator.writeNumberField("controllers", controllers);
+        generator.writeNumberField("apiCount", apiCount);
+        generator.writeArrayFieldStart("apis");
+    }
+
+    void writeApi(ApiDefinition api) throws IOException {
+        if (binary != null) {
+            binary.add(api);
+            written++;
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeStringField("path", api.path);
+        generator.writeArrayFieldStart("methods");
+        for (String method : api.methods) {
+            generator.writeString(method);
+        }
+        generator.writeEndArray();
+        generator.writeObjectFieldStart("parameters");
+        for (Map.Entry<String, String> param : api.parameters.entrySet()) {
+            generator.writeStringField(param.getKey(), param.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("source");
+        generator.writeStringField("class", api.sourceClass);
+        generator.writeStringField("method", api.sourceMethod);
+        generator.writeEndObject();
+        // 启用调用计数时附带处理方法到目前为止的调用次数
+        if (api.counterId >= 0) {
+            generator.writeNumberField("invocations", InvocationCounters.count(api.counterId));
+        }
+        generator.writeEndObject();
+        written++;
+    }
+
+    // 结束apis数组，在文档末尾写出扫描统计；NDJSON的每一行都是端点，BIN只包含端点，都不写统计
+    void writeStats(ScanStats stats) throws IOException {
+        if (format == Format.NDJSON || format == Format.BIN || apisEnded) {
+            return;
+        }
+        generator.writeEndArray();
+        apisEnded = true;
+
+        generator.writeObjectFieldStart("stats");
+        generator.writeNumberField("scanMillis", stats.scanWallNanos / 1_000_000);
+        generator.writeNumberField("classesScanned", stats.classesScanned.sum());
+        generator.writeNumberField("classesParsed", stats.classesParsed.sum());
+        generator.writeNumberField("classesPerSecond", Math.round(stats.classesPerSecond()));
+        generator.writeNumberField("bytesRead", stats.bytesRead.sum());
+        generator.writeNumberField("bytesInflated", stats.bytesInflated.sum());
+        generator.writeNumberField("cpuMillis", stats.unitCpuNanos.sum() / 1_000_000);
+
+        generator.writeObjectFieldStart("phases");
+        for (ScanStats.Phase phase : ScanStats.Phase.values()) {
+            generator.writeObjectFieldStart(phase.key);
+            generator.writeNumberField("wallMillis", stats.phaseWallMillis(phase));
+            if (stats.cpuMeasured(phase)) {
+                generator.writeNumberField("cpuMillis", stats.phaseCpuMillis(phase));
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("skipped");
+        for (Map.Entry<String, Long> skipped : stats.skippedClasses().entrySet()) {
+            generator.writeNumberField(skipped.getKey(), skipped.getValue());
+        }
+        generator.writeNumberField("jarsByFilter", stats.jarsSkippedByFilter.sum());
+        generator.writeNumberField("unitsByBudget", stats.unitsSkippedByBudget.sum());
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("cache");
+        generator.writeNumberField("hits", stats.cacheHits.sum());
+        generator.writeNumberField("misses", stats.cacheMisses.sum());
+        generator.writeEndObject();
+
+        generator.writeArrayFieldStart("slowestUnits");
+        for (Map.Entry<String, Long> unit : stats.slowestUnits.entrySet()) {
+            generator.writeStartObject();
+            generator.writeStringField("name", unit.getKey());
+            generator.writeNumberField("millis", unit.getValue());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    // 结束文档并关闭底层流，gzip在这里写入尾部
+    @Override
+    public void close() throws IOException {
+        if (binary != null) {
+            try {
+                binary.write(binaryChannel);
+            } finally {
+                binaryChannel.close();
+            }
+            return;
+        }
+        try {
+            if (format != Format.NDJSON) {
+                if (!apisEnded) {
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
+            }
+            if (format != Format.NDJSON || written > 0) {
+                generator.writeRaw('\n');
+            }
+        } finally {
+            generator.close();
+        }
+    }
+}
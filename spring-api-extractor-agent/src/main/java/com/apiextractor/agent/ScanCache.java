@@ -0,0 +1,324 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+
+// 按JAR缓存扫描结果的磁盘缓存，键为 路径 + 大小 + 修改时间 + CRC
+// 每个JAR对应一个缓存文件，内容是该JAR声明过扫描权的全部类名、发现的控制器和API，以及解析组合注解和继承映射所需的注解定义、继承关系和映射声明
+// 回放时重新声明全部类名，同名类的归属与未使用缓存的扫描相同
+class ScanCache {
+    // 扫描规则或缓存格式变化时递增，旧缓存自动失效
+    private static final int CACHE_VERSION = 10;
+    private static final String SUFFIX = ".scan";
+
+    private final File dir;
+    // 过滤规则会影响缓存的结果，规则变化后旧缓存失效
+    private final String rules;
+
+    ScanCache(File dir, String rules) {
+        this.dir = dir;
+        this.rules = rules;
+    }
+
+    static class Key {
+        final String path;
+        final long size;
+        final long mtime;
+        final long crc;
+
+        Key(String path, long size, long mtime, long crc) {
+            this.path = path;
+            this.size = size;
+            this.mtime = mtime;
+            this.crc = crc;
+        }
+    }
+
+    // 普通JAR：CRC由中央目录中每个条目的名称和CRC累加得到，不需要解压任何条目
+    static Key keyForJar(File file, JarFile jar) {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[12];
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            putInt(buf, 0, entry.getName().hashCode());
+            putLong(buf, 4, entry.getCrc());
+            crc.update(buf, 0, buf.length);
+        }
+        return new Key(file.getAbsolutePath(), file.length(), file.lastModified(), crc.getValue());
+    }
+
+    // 嵌套JAR：直接使用外层JAR中央目录记录的大小、时间和CRC
+    static Key keyForNestedJar(File outer, JarEntry entry) {
+        return new Key(outer.getAbsolutePath() + "!/" + entry.getName(),
+                entry.getSize(), entry.getTime(), entry.getCrc());
+    }
+
+    // 命中时把缓存的结果写入单元并返回true
+    boolean replay(ScanUnit unit, Key key) {
+        File file = cacheFile(key);
+        if (!file.isFile()) {
+            return false;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != CACHE_VERSION
+                    || !rules.equals(in.readUTF())
+                    || !key.path.equals(in.readUTF())
+                    || in.readLong() != key.size
+                    || in.readLong() != key.mtime
+                    || in.readLong() != key.crc) {
+                return false;
+            }
+
+            for (String className : readStrings(in)) {
+                unit.claimClass(className);
+            }
+            unit.resultClasses.addAll(readStrings(in));
+
+            int hitCount = in.readInt();
+            for (int i = 0; i < hitCount; i++) {
+                String className = in.readUTF();
+                int hits = in.readInt();
+                unit.controllerHits.put(className, hits);
+            }
+
+            int apiCount = in.readInt();
+            for (int i = 0; i < apiCount; i++) {
+                ApiDefinition api = new ApiDefinition(in.readUTF());
+                api.sourceClass = in.readUTF();
+                api.sourceMethod = in.readUTF();
+                api.descriptor = in.readUTF();
+                int methodCount = in.readInt();
+                for (int j = 0; j < methodCount; j++) {
+                    api.methods.add(in.readUTF());
+                }
+                int paramCount = in.readInt();
+                for (int j = 0; j < paramCount; j++) {
+                    api.parameters.put(in.readUTF(), in.readUTF());
+                }
+                unit.addApi(api);
+            }
+
+            // 使用了当时未定义的注解的类和本单元定义的注解类型，扫描结束后与其他单元一起解析
+            int deferredCount = in.readInt();
+            for (int i = 0; i < deferredCount; i++) {
+                String className = in.readUTF();
+                unit.deferredClasses.put(className, readStrings(in));
+            }
+            int annotatedCount = in.readInt();
+            for (int i = 0; i < annotatedCount; i++) {
+                String className = in.readUTF();
+                unit.annotatedClasses.put(className, readStrings(in));
+            }
+            // 使用了组件索引的单元在其他单元引用了它未列出的类型时还要补读
+            if (in.readBoolean()) {
+                unit.useComponentIndex(Collections.<String>emptySet());
+            }
+            int definitionCount = in.readInt();
+            for (int i = 0; i < definitionCount; i++) {
+                String descriptor = in.readUTF();
+                List<String> metaAnnotations = readStrings(in);
+                Map<String, String> metaPaths = new LinkedHashMap<>();
+                int pathCount = in.readInt();
+                for (int j = 0; j < pathCount; j++) {
+                    metaPaths.put(in.readUTF(), in.readUTF());
+                }
+                unit.defineAnnotation(descriptor, new AnnotationGraph.Definition(metaAnnotations, metaPaths));
+            }
+
+            // 继承索引中的边和声明的映射，扫描结束后与其他单元合并
+            String[] edgeNames = readStrings(in).toArray(new String[0]);
+            int[] edgePairs = new int[in.readInt()];
+            for (int i = 0; i < edgePairs.length; i++) {
+                edgePairs[i] = in.readInt();
+            }
+            unit.hierarchy.addEdges(edgeNames, edgePairs);
+            int mappedTypeCount = in.readInt();
+            for (int i = 0; i < mappedTypeCount; i++) {
+                String className = in.readUTF();
+                boolean controller = in.readBoolean();
+                String basePath = in.readBoolean() ? in.readUTF() : null;
+                List<String> httpMethods = readStrings(in);
+                int methodCount = in.readInt();
+                List<MappedType.Method> methods = new ArrayList<>(methodCount);
+                for (int j = 0; j < methodCount; j++) {
+                    String name = in.readUTF();
+                    String descriptor = in.readUTF();
+                    String path = in.readUTF();
+                    List<String> methodHttpMethods = readStrings(in);
+                    Map<String, String> parameters = new LinkedHashMap<>();
+                    int paramCount = in.readInt();
+                    for (int k = 0; k < paramCount; k++) {
+                        parameters.put(in.readUTF(), in.readUTF());
+                    }
+                    methods.add(new MappedType.Method(name, descriptor, path, methodHttpMethods, parameters));
+                }
+                unit.mappedTypes.add(new MappedType(className, controller, basePath, httpMethods, methods));
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("[API Scanner] Warning: Ignoring unreadable cache entry: " + file.getPath());
+            return false;
+        }
+    }
+
+    void store(ScanUnit unit, Key key) {
+        File file = cacheFile(key);
+        File tmp = new File(dir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(CACHE_VERSION);
+                out.writeUTF(rules);
+                out.writeUTF(key.path);
+                out.writeLong(key.size);
+                out.writeLong(key.mtime);
+                out.writeLong(key.crc);
+
+                writeStrings(out, unit.claimedClasses());
+                writeStrings(out, unit.resultClasses);
+
+                out.writeInt(unit.controllerHits.size());
+                for (Map.Entry<String, Integer> hit : unit.controllerHits.entrySet()) {
+                    out.writeUTF(hit.getKey());
+                    out.writeInt(hit.getValue());
+                }
+
+                out.writeInt(unit.apis.size());
+                for (ApiDefinition api : unit.apis) {
+                    out.writeUTF(api.path);
+                    out.writeUTF(api.sourceClass);
+                    out.writeUTF(api.sourceMethod);
+                    out.writeUTF(api.descriptor != null ? api.descriptor : "");
+                    out.writeInt(api.methods.size());
+                    for (String method : api.methods) {
+                        out.writeUTF(method);
+                    }
+                    out.writeInt(api.parameters.size());
+                    for (Map.Entry<String, String> param : api.parameters.entrySet()) {
+                        out.writeUTF(param.getKey());
+                        out.writeUTF(param.getValue());
+                    }
+                }
+
+                out.writeInt(unit.deferredClasses.size());
+                for (Map.Entry<String, List<String>> deferred : unit.deferredClasses.entrySet()) {
+                    out.writeUTF(deferred.getKey());
+                    writeStrings(out, deferred.getValue());
+                }
+                out.writeInt(unit.annotatedClasses.size());
+                for (Map.Entry<String, List<String>> annotated : unit.annotatedClasses.entrySet()) {
+                    out.writeUTF(annotated.getKey());
+                    writeStrings(out, annotated.getValue());
+                }
+                out.writeBoolean(unit.indexReferences != null);
+                out.writeInt(unit.annotationDefinitions.size());
+                for (Map.Entry<String, AnnotationGraph.Definition> definition : unit.annotationDefinitions.entrySet()) {
+                    out.writeUTF(definition.getKey());
+                    writeStrings(out, definition.getValue().metaAnnotations);
+                    out.writeInt(definition.getValue().metaPaths.size());
+                    for (Map.Entry<String, String> path : definition.getValue().metaPaths.entrySet()) {
+                        out.writeUTF(path.getKey());
+                        out.writeUTF(path.getValue());
+                    }
+                }
+
+                int[] edgePairs = new int[unit.hierarchy.edgeCount() * 2];
+                writeStrings(out, Arrays.asList(unit.hierarchy.compactEdges(edgePairs)));
+                out.writeInt(edgePairs.length);
+                for (int pair : edgePairs) {
+                    out.writeInt(pair);
+                }
+                out.writeInt(unit.mappedTypes.size());
+                for (MappedType type : unit.mappedTypes) {
+                    out.writeUTF(type.className);
+                    out.writeBoolean(type.controller);
+                    out.writeBoolean(type.basePath != null);
+                    if (type.basePath != null) {
+                        out.writeUTF(type.basePath);
+                    }
+                    writeStrings(out, type.httpMethods);
+                    out.writeInt(type.methods.size());
+                    for (MappedType.Method method : type.methods) {
+                        out.writeUTF(method.name);
+                        out.writeUTF(method.descriptor);
+                        out.writeUTF(method.path);
+                        writeStrings(out, method.httpMethods);
+                        out.writeInt(method.parameters.size());
+                        for (Map.Entry<String, String> param : method.parameters.entrySet()) {
+                            out.writeUTF(param.getKey());
+                            out.writeUTF(param.getValue());
+                        }
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("[API Scanner] Warning: Could not write cache entry for " + key.path + ": " + e.getMessage());
+            tmp.delete();
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    // 文件名只取决于路径，JAR变化后新结果会覆盖旧的缓存文件
+    private File cacheFile(Key key) {
+        return new File(dir, sha1(key.path) + SUFFIX);
+    }
+
+    private static String sha1(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+
+    private static void putInt(byte[] buf, int pos, int value) {
+        buf[pos] = (byte) (value >>> 24);
+        buf[pos + 1] = (byte) (value >>> 16);
+        buf[pos + 2] = (byte) (value >>> 8);
+        buf[pos + 3] = (byte) value;
+    }
+
+    private static void putLong(byte[] buf, int pos, long value) {
+        putInt(buf, pos, (int) (value >>> 32));
+        putInt(buf, pos + 4, (int) value);
+    }
+}
@@ -0,0 +1,145 @@
+package com.apiextractor.agent;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+// 一次扫描的共享状态：扫描单元列表、类去重表、已扫描JAR集合
+class ScanContext {
+    // 类名 -> 拥有该类的最靠前单元的ordinal，用于无锁并发去重
+    private final ConcurrentHashMap<String, Integer> classOwners;
+    private final List<JarFile> openJars = new ArrayList<>();
+    // 外层JAR路径 -> 嵌套JAR读取器，不支持随机访问的JAR记录为空
+    private final ConcurrentHashMap<String, Optional<NestedJarReader>> nestedReaders = new ConcurrentHashMap<>();
+    final Set<String> scannedJars = ConcurrentHashMap.newKeySet();
+    // 已拆分成扫描单元的Spring Boot JAR
+    final Set<String> bootJars = new HashSet<>();
+    final List<ScanUnit> units = new ArrayList<>();
+    final AtomicInteger processedNestedJars = new AtomicInteger();
+    // 因不在组件索引中而跳过的类，同名类可能被其他单元读取，所有单元完成后才能计数
+    final Set<String> indexSkippedClasses = ConcurrentHashMap.newKeySet();
+    final ScanStats stats;
+    // 本次扫描遇到的注解定义，用于解析组合注解
+    final AnnotationGraph annotations;
+    int scannedJarCount = 0;
+    // 已经合并的单元数，之前的单元都已扫描完成，由本对象的锁保护
+    int mergedUnits = 0;
+    private int nextOrdinal;
+
+    ScanContext() {
+        this(false, AnnotationTable.defaults(), className -> true);
+    }
+
+    // scannedClasses判断一个类是否会被扫描，用于识别永远不会出现定义的注解
+    ScanContext(boolean detailedTiming, AnnotationTable annotationTable, Predicate<String> scannedClasses) {
+        stats = new ScanStats(detailedTiming);
+        annotations = new AnnotationGraph(annotationTable, scannedClasses);
+        classOwners = new ConcurrentHashMap<>();
+    }
+
+    // 扫描结束后分析新定义的类：共享类去重表和元注解图，单元排在原扫描的所有单元之后，统计单独计算
+    ScanContext(ScanContext base) {
+        stats = new ScanStats(false);
+        annotations = base.annotations;
+        classOwners = base.classOwners;
+        nextOrdinal = base.nextOrdinal;
+    }
+
+    ScanUnit addUnit(ScanUnit.Kind kind, File file) {
+        return addUnit(kind, file, null, null);
+    }
+
+    ScanUnit addUnit(ScanUnit.Kind kind, File file, JarFile outerJar, JarEntry entry) {
+        ScanUnit unit = new ScanUnit(this, nextOrdinal++, kind, file, outerJar, entry);
+        units.add(unit);
+        return unit;
+    }
+
+    // 每批新定义的类使用一个不进入units列表的单元，结果由调用方直接合并
+    ScanUnit newDefinedClassesUnit() {
+        return new ScanUnit(this, nextOrdinal++, ScanUnit.Kind.DEFINED_CLASSES, null, null, null);
+    }
+
+    // 打开一个由多个单元共享的JAR，扫描结束后统一关闭
+    JarFile openSharedJar(File file) throws IOException {
+        JarFile jar = new JarFile(file);
+        openJars.add(jar);
+        return jar;
+    }
+
+    // 同一个外层JAR的所有嵌套JAR单元共享一个读取器，第一次使用时解析外层中央目录
+    NestedJarReader nestedJarReader(File file) {
+        return nestedReaders.computeIfAbsent(file.getAbsolutePath(), path -> {
+            try {
+                return Optional.ofNullable(NestedJarReader.open(file));
+            } catch (IOException e) {
+                System.err.println("[API Scanner] Warning: Could not map " + file.getName() + ": " + e.getMessage());
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    // 顺序模式下，第一个遇到某类的单元获得扫描权；并行模式下，ordinal更小的单元可以抢回扫描权，
+    // 被抢走的单元的结果在合并时丢弃，所以最终结果与顺序模式一致
+    boolean claimClass(String className, int ordinal) {
+        while (true) {
+            Integer owner = classOwners.putIfAbsent(className, ordinal);
+            if (owner == null) {
+                return true;
+            }
+            if (owner <= ordinal) {
+                return false;
+            }
+            if (classOwners.replace(className, owner, ordinal)) {
+                return true;
+            }
+        }
+    }
+
+    // 没有任何单元读取的被跳过的类计入统计
+    void countIndexSkippedClasses() {
+        for (String className : indexSkippedClasses) {
+            if (!classOwners.containsKey(className)) {
+                stats.classesSkippedByIndex.increment();
+            }
+        }
+        indexSkippedClasses.clear();
+    }
+
+    boolean isClaimed(String className) {
+        return classOwners.containsKey(className);
+    }
+
+    boolean ownsClass(String className, int ordinal) {
+        Integer owner = classOwners.get(className);
+        return owner != null && owner == ordinal;
+    }
+
+    void close() {
+        for (JarFile jar : openJars) {
+            try {
+                jar.close();
+            } catch (IOException ignore) {
+            }
+        }
+        openJars.clear();
+        for (Optional<NestedJarReader> reader : nestedReaders.values()) {
+            if (reader.isPresent()) {
+                try {
+                    reader.get().close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+        nestedReaders.clear();
+    }
+}
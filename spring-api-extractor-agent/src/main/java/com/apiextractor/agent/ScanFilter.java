@@ -0,0 +1,163 @@
+package com.apiextractor.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// 扫描过滤器：按包名前缀过滤类，按文件名通配符过滤JAR
+// 参数 include=/exclude= 中以 .jar 结尾或包含 * 的条目视为JAR通配符，其余视为包名前缀
+final class ScanFilter {
+
+    // 始终跳过的JDK及agent自身依赖的包
+    private static final String[] BUILTIN_PACKAGE_EXCLUDES = {
+            "java.", "javax.", "sun.", "com.sun.", "org.objectweb.asm."
+    };
+
+    // 默认配置跳过的常见框架JAR，这些JAR中几乎没有业务控制器
+    private static final String[] DEFAULT_PROFILE_JAR_EXCLUDES = {
+            "spring-*", "jackson-*", "netty-*", "tomcat-*", "undertow-*", "jetty-*",
+            "logback-*", "log4j-*", "slf4j-*", "jul-to-slf4j-*", "snakeyaml-*",
+            "hibernate-*", "byte-buddy-*", "asm-*", "guava-*", "commons-*",
+            "jakarta.*", "javax.*", "reactor-*", "micrometer-*", "HdrHistogram-*",
+            "LatencyUtils-*", "lombok-*", "aspectjweaver-*", "jboss-logging-*",
+            "classmate-*", "HikariCP-*", "mysql-connector-*", "postgresql-*", "h2-*",
+            "kotlin-stdlib-*", "kotlin-reflect-*", "jna-*", "bcprov-*", "caffeine-*"
+    };
+
+    private static final PrefixTrie.ValueMatcher<List<Glob>> GLOB_MATCHER = (globs, input) -> {
+        for (Glob glob : globs) {
+            if (glob.matches(input)) {
+                return true;
+            }
+        }
+        return false;
+    };
+
+    // 包名前缀 -> 是否扫描，最长前缀决定结果
+    private final PrefixTrie<Boolean> packages = new PrefixTrie<>();
+    private final boolean includeByDefault;
+    private final PrefixTrie<List<Glob>> jarIncludes = new PrefixTrie<>();
+    private final PrefixTrie<List<Glob>> jarExcludes = new PrefixTrie<>();
+    private final PrefixTrie<List<Glob>> profileJarExcludes = new PrefixTrie<>();
+    private final String fingerprint;
+
+    ScanFilter(List<String> includes, List<String> excludes, boolean defaultProfile) {
+        List<String> packageIncludes = new ArrayList<>();
+        List<String> packageExcludes = new ArrayList<>();
+        List<String> jarIncludePatterns = new ArrayList<>();
+        List<String> jarExcludePatterns = new ArrayList<>();
+        split(includes, packageIncludes, jarIncludePatterns);
+        split(excludes, packageExcludes, jarExcludePatterns);
+
+        for (String prefix : BUILTIN_PACKAGE_EXCLUDES) {
+            packages.put(prefix, Boolean.FALSE);
+        }
+        for (String prefix : packageIncludes) {
+            packages.put(prefix, Boolean.TRUE);
+        }
+        // 相同前缀同时出现在include和exclude中时以exclude为准
+        for (String prefix : packageExcludes) {
+            packages.put(prefix, Boolean.FALSE);
+        }
+        includeByDefault = packageIncludes.isEmpty();
+
+        for (String pattern : jarIncludePatterns) {
+            addGlob(jarIncludes, pattern);
+        }
+        for (String pattern : jarExcludePatterns) {
+            addGlob(jarExcludes, pattern);
+        }
+        if (defaultProfile) {
+            for (String pattern : DEFAULT_PROFILE_JAR_EXCLUDES) {
+                addGlob(profileJarExcludes, pattern);
+            }
+        }
+
+        fingerprint = "include=" + includes + ";exclude=" + excludes + ";profile=" + (defaultProfile ? "default" : "none");
+    }
+
+    // 类名可能带有BOOT-INF.classes.或WEB-INF.classes.前缀，按去掉前缀后的真实包名判断
+    boolean acceptClass(String className) {
+        Boolean decision = packages.longestPrefixValue(className, EndpointRegistry.applicationPrefixLength(className));
+        return decision != null ? decision : includeByDefault;
+    }
+
+    // container为true表示Spring Boot应用JAR本身，它不受include通配符限制
+    boolean acceptJar(String jarName, boolean container) {
+        String name = jarName.toLowerCase(Locale.ROOT);
+        if (jarExcludes.anyPrefixMatches(name, GLOB_MATCHER)) {
+            return false;
+        }
+        if (!jarIncludes.isEmpty()) {
+            return container || jarIncludes.anyPrefixMatches(name, GLOB_MATCHER);
+        }
+        return !profileJarExcludes.anyPrefixMatches(name, GLOB_MATCHER);
+    }
+
+    // 过滤条件会影响缓存的结果，缓存文件中记录该值用于校验
+    String fingerprint() {
+        return fingerprint;
+    }
+
+    private static void split(List<String> values, List<String> packagePrefixes, List<String> jarPatterns) {
+        for (String value : values) {
+            String v = value.trim();
+            if (v.isEmpty()) {
+                continue;
+            }
+            if (v.endsWith(".jar") || v.indexOf('*') >= 0) {
+                jarPatterns.add(v);
+            } else {
+                // 按包边界匹配：com.demo 匹配 com.demo.X，不匹配 com.demox.X
+                packagePrefixes.add(v.endsWith(".") ? v : v + ".");
+            }
+        }
+    }
+
+    // 以通配符前的字面量作为树中的键，剩余部分由Glob检查
+    private static void addGlob(PrefixTrie<List<Glob>> trie, String pattern) {
+        Glob glob = new Glob(pattern.toLowerCase(Locale.ROOT));
+        List<Glob> globs = trie.get(glob.literalPrefix());
+        if (globs == null) {
+            globs = new ArrayList<>();
+            trie.put(glob.literalPrefix(), globs);
+        }
+        globs.add(glob);
+    }
+
+    // 只支持 * 通配符的文件名模式；不以 .jar 结尾的模式同样匹配带版本号和扩展名的文件名
+    static final class Glob {
+        private final String[] parts;
+        private final boolean anchoredEnd;
+
+        Glob(String pattern) {
+            String p = pattern.endsWith(".jar") || pattern.endsWith("*") ? pattern : pattern + "*";
+            anchoredEnd = !p.endsWith("*");
+            parts = p.split("\\*", -1);
+        }
+
+        String literalPrefix() {
+            return parts[0];
+        }
+
+        boolean matches(CharSequence input) {
+            String s = input.toString();
+            if (!s.startsWith(parts[0])) {
+                return false;
+            }
+            int pos = parts[0].length();
+            int last = parts.length - 1;
+            for (int i = 1; i < last; i++) {
+                int found = s.indexOf(parts[i], pos);
+                if (found < 0) {
+                    return false;
+                }
+                pos = found + parts[i].length();
+            }
+            if (last == 0) {
+                return s.length() == pos;
+            }
+            return anchoredEnd ? s.length() - parts[last].length() >= pos && s.endsWith(parts[last]) : true;
+        }
+    }
+}
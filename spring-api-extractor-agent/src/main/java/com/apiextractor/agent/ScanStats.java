@@ -0,0 +1,142 @@
+package com.apiextractor.agent;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// 扫描统计，并行扫描时由多个工作线程同时累加
+class ScanStats {
+    // 扫描的各个阶段；JAR_OPEN只统计扫描单元内打开JAR的时间，发现阶段打开JAR的时间计入DISCOVERY
+    enum Phase {
+        DISCOVERY("discovery"),
+        JAR_OPEN("jarOpen"),
+        ENTRY_READ("entryRead"),
+        PARSE("parse"),
+        OUTPUT("output");
+
+        final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    private final LongAdder[] phaseWallNanos = newAdders(Phase.values().length);
+    private final LongAdder[] phaseCpuNanos = newAdders(Phase.values().length);
+    // 逐类的CPU计时代价与预过滤本身相当，只在timing=detailed时统计ENTRY_READ和PARSE的CPU时间
+    final boolean detailedTiming;
+
+    final LongAdder classesScanned = new LongAdder();
+    final LongAdder classesSkippedByPrefilter = new LongAdder();
+    final LongAdder classesParsed = new LongAdder();
+    final LongAdder classesSkippedByFilter = new LongAdder();
+    // 已被更靠前的单元扫描过的类
+    final LongAdder classesSkippedAsDuplicate = new LongAdder();
+    final LongAdder jarsSkippedByFilter = new LongAdder();
+    // 通过构建期组件索引确定候选类的归档数，以及因不在索引中而未读取的类
+    final LongAdder indexedArchives = new LongAdder();
+    final LongAdder classesSkippedByIndex = new LongAdder();
+    // 超出扫描时间预算而没有扫描的单元
+    final LongAdder unitsSkippedByBudget = new LongAdder();
+    // 使用了尚未解析的注解、推迟到扫描结束后重新分析的类，以及重新分析时读取的类
+    final LongAdder classesDeferred = new LongAdder();
+    final LongAdder classesRescanned = new LongAdder();
+    // 合并后的继承索引规模，以及从接口或父类继承得到的端点
+    volatile int hierarchyTypes;
+    volatile int hierarchyEdges;
+    final LongAdder inheritedEndpoints = new LongAdder();
+    final LongAdder cacheHits = new LongAdder();
+    final LongAdder cacheMisses = new LongAdder();
+    // attach模式下检查过注解的已加载类，以及其中的控制器
+    final LongAdder loadedClassesInspected = new LongAdder();
+    final LongAdder loadedControllers = new LongAdder();
+    final LongAdder nestedJarsMapped = new LongAdder();
+    final LongAdder nestedJarsStreamed = new LongAdder();
+    // 扫描线程上的堆分配，AllocationMeter不可用时保持为0
+    final LongAdder bytesAllocated = new LongAdder();
+    final LongAdder rejectedBytesAllocated = new LongAdder();
+    final LongAdder rejectedClassesMeasured = new LongAdder();
+    // 读取的类字节数，以及其中需要解压得到的字节数
+    final LongAdder bytesRead = new LongAdder();
+    final LongAdder bytesInflated = new LongAdder();
+    // 所有扫描单元的CPU时间合计
+    final LongAdder unitCpuNanos = new LongAdder();
+    volatile long scanWallNanos;
+    // 单元名称 -> 耗时（毫秒），按耗时降序，扫描结束后设置
+    volatile Map<String, Long> slowestUnits = Collections.emptyMap();
+
+    ScanStats() {
+        this(false);
+    }
+
+    ScanStats(boolean detailedTiming) {
+        this.detailedTiming = detailedTiming;
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // cpuStart为-1时只记录墙钟时间
+    void recordPhase(Phase phase, long wallStart, long cpuStart) {
+        phaseWallNanos[phase.ordinal()].add(System.nanoTime() - wallStart);
+        if (cpuStart >= 0) {
+            phaseCpuNanos[phase.ordinal()].add(CpuMeter.currentThreadCpuTime() - cpuStart);
+        }
+    }
+
+    // 逐类阶段的CPU起点，未开启详细计时时返回-1
+    long classPhaseCpuStart() {
+        return detailedTiming ? CpuMeter.currentThreadCpuTime() : -1;
+    }
+
+    boolean cpuMeasured(Phase phase) {
+        if (!CpuMeter.isSupported()) {
+            return false;
+        }
+        return detailedTiming || (phase != Phase.ENTRY_READ && phase != Phase.PARSE);
+    }
+
+    long phaseWallMillis(Phase phase) {
+        return phaseWallNanos[phase.ordinal()].sum() / 1_000_000;
+    }
+
+    long phaseCpuMillis(Phase phase) {
+        return phaseCpuNanos[phase.ordinal()].sum() / 1_000_000;
+    }
+
+    double classesPerSecond() {
+        long nanos = scanWallNanos;
+        return nanos == 0 ? 0 : classesScanned.sum() * 1e9 / nanos;
+    }
+
+    // 按原因统计的被跳过的类
+    Map<String, Long> skippedClasses() {
+        Map<String, Long> skipped = new LinkedHashMap<>();
+        skipped.put("prefilter", classesSkippedByPrefilter.sum());
+        skipped.put("filter", classesSkippedByFilter.sum());
+        skipped.put("index", classesSkippedByIndex.sum());
+        skipped.put("duplicate", classesSkippedAsDuplicate.sum());
+        return skipped;
+    }
+
+    double prefilterSkipRatio() {
+        long scanned = classesScanned.sum();
+        return scanned == 0 ? 0 : (double) classesSkippedByPrefilter.sum() / scanned;
+    }
+
+    long allocatedBytesPerClass() {
+        long scanned = classesScanned.sum();
+        return scanned == 0 ? 0 : bytesAllocated.sum() / scanned;
+    }
+
+    long allocatedBytesPerRejectedClass() {
+        long measured = rejectedClassesMeasured.sum();
+        return measured == 0 ? 0 : rejectedBytesAllocated.sum() / measured;
+    }
+}
@@ -0,0 +1,154 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+// 扫描单元：一个类目录、一个JAR、一个Spring Boot JAR的BOOT-INF/classes（或WAR的WEB-INF/classes）、一个嵌套的依赖JAR、
+// JVM中已加载的类，或扫描之后新定义的一批类
+// 单元只写入自己的局部结果，扫描结束后按ordinal顺序合并，因此并行模式与顺序模式的输出完全一致
+class ScanUnit {
+    enum Kind {
+        DIRECTORY,
+        JAR,
+        BOOT_INF_CLASSES,
+        NESTED_JAR,
+        // attach时JVM中已加载的类
+        LOADED_CLASSES,
+        // 扫描开始后才定义的类，由ControllerWatcher收集
+        DEFINED_CLASSES
+    }
+
+    final ScanContext context;
+    final int ordinal;
+    final Kind kind;
+    final File file;
+    // BOOT_INF_CLASSES 和 NESTED_JAR 共享外层JAR，由ScanContext统一关闭
+    final JarFile outerJar;
+    final JarEntry entry;
+    // BOOT_INF_CLASSES单元的应用类目录，WAR中为WEB-INF/classes/
+    String classesDirectory = "BOOT-INF/classes/";
+    // Spring Boot JAR或WAR的整体JAR单元：应用类目录和依赖JAR已拆分成单独的单元，BOOT-INF/和WEB-INF/下的类留给它们
+    boolean skipApplicationClasses;
+
+    final List<ApiDefinition> apis = new ArrayList<>();
+    // 产生了端点或结果待定的类，按在单元中第一次分析的顺序；合并时按这个顺序为它们预留输出位置
+    final Set<String> resultClasses = new LinkedHashSet<>();
+    final Map<String, Integer> controllerHits = new LinkedHashMap<>();
+    // 非空时表示单元需要记录自身的完整结果（例如要写入缓存）
+    private Set<String> localClasses;
+    // 构建期组件索引列出的候选类，为null时表示没有索引，需要扫描全部类
+    Set<String> indexedClasses;
+    // 使用索引时，已读取的类引用、但索引不会列出的类型（组合注解等），单元结束前按需从本单元读取
+    Set<String> indexReferences;
+    private Set<String> referencedTypes;
+    // 使用了尚未定义的注解的类 -> 这些注解的描述符；类的结果先按这些注解无关得出，
+    // 单元结束或元注解图完整后它们确实影响结果时重新分析该类
+    final Map<String, List<String>> deferredClasses = new LinkedHashMap<>();
+    // 被预过滤跳过但带有运行时注解的类 -> 常量池中引用的、当时还不能确定无关的类型描述符；
+    // 元注解图完整后其中有组合控制器或组合映射注解时重新检查该类
+    final Map<String, List<String>> annotatedClasses = new LinkedHashMap<>();
+    // 本单元定义的注解类型，随扫描结果一起写入缓存
+    final Map<String, AnnotationGraph.Definition> annotationDefinitions = new LinkedHashMap<>();
+    // 本单元读取过的类的父类和接口，以及控制器、接口和父类上声明的映射，扫描结束后用于解析继承的映射
+    final ClassHierarchy hierarchy = new ClassHierarchy();
+    final List<MappedType> mappedTypes = new ArrayList<>();
+    // 非空时表示正在重新分析推迟的类，只分析其中列出的类
+    Set<String> rescanClasses;
+    // 单元的扫描耗时，用于找出最慢的JAR
+    long elapsedNanos;
+    // 扫描结束后置位，由ScanContext的锁保护，用于按单元顺序增量合并
+    boolean completed;
+
+    ScanUnit(ScanContext context, int ordinal, Kind kind, File file, JarFile outerJar, JarEntry entry) {
+        this.context = context;
+        this.ordinal = ordinal;
+        this.kind = kind;
+        this.file = file;
+        this.outerJar = outerJar;
+        this.entry = entry;
+    }
+
+    // 声明对某个类的扫描权，返回是否需要分析该类，已被更靠前的单元扫描过则返回false
+    // 记录完整结果的单元即使没有扫描权也要分析本单元内第一次出现的类，合并时仍只保留拥有者的结果
+    boolean claimClass(String className) {
+        boolean owner = context.claimClass(className, ordinal);
+        if (localClasses == null) {
+            return owner;
+        }
+        return localClasses.add(className);
+    }
+
+    void recordCompleteResults() {
+        localClasses = new HashSet<>();
+    }
+
+    // 记录完整结果时本单元声明过扫描权的全部类，包括没有任何结果的类，缓存回放时原样重新声明
+    Set<String> claimedClasses() {
+        return localClasses != null ? localClasses : Collections.<String>emptySet();
+    }
+
+    void useComponentIndex(Set<String> classes) {
+        indexedClasses = classes;
+        if (indexReferences == null) {
+            indexReferences = new LinkedHashSet<>();
+            referencedTypes = new HashSet<>();
+        }
+    }
+
+    // 记录已读取的类引用的类型，每个类型只记录一次；没有使用索引时所有类都会被读取，不需要记录
+    void referenceType(String className) {
+        if (indexReferences != null && referencedTypes.add(className)) {
+            indexReferences.add(className);
+        }
+    }
+
+    void addApi(ApiDefinition api) {
+        apis.add(api);
+    }
+
+    void addControllerHit(String className) {
+        controllerHits.merge(className, 1, Integer::sum);
+    }
+
+    void defineAnnotation(String descriptor, AnnotationGraph.Definition definition) {
+        annotationDefinitions.put(descriptor, definition);
+        context.annotations.define(descriptor, definition);
+    }
+
+    // 带外层JAR的完整名称，区分同一个Spring Boot JAR拆分出的多个单元
+    String qualifiedName() {
+        switch (kind) {
+            case BOOT_INF_CLASSES:
+                return file.getName() + "!/" + classesDirectory.substring(0, classesDirectory.length() - 1);
+            case NESTED_JAR:
+                return file.getName() + "!/" + entry.getName();
+            default:
+                return displayName();
+        }
+    }
+
+    String displayName() {
+        if (entry != null) {
+            String name = entry.getName();
+            return name.substring(name.lastIndexOf('/') + 1);
+        }
+        if (kind == Kind.DEFINED_CLASSES) {
+            return "defined classes";
+        }
+        if (file == null) {
+            return "loaded classes";
+        }
+        return file.getName();
+    }
+}
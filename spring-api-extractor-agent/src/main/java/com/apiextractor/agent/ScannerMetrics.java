@@ -0,0 +1,155 @@
+package com.apiextractor.agent;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// ScannerMetricsMXBean的实现，只读取最近一次扫描的ScanStats，不参与扫描本身
+final class ScannerMetrics implements ScannerMetricsMXBean {
+    static final String OBJECT_NAME = "com.apiextractor:type=SpringApiScanner";
+
+    private volatile ScanStats stats;
+    private volatile long startNanos;
+    private volatile boolean scanning;
+    private volatile int controllerCount;
+    private volatile int apiCount;
+    private volatile int scannedJarCount;
+    private boolean registered;
+
+    // 重复attach时同一个类只注册一次；平台MBeanServer不可用时只输出警告
+    synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            registered = true;
+        } catch (Exception | LinkageError e) {
+            System.err.println("[API Scanner] Warning: Could not register JMX MBean: " + e);
+        }
+    }
+
+    void scanStarted(ScanStats stats) {
+        this.stats = stats;
+        this.startNanos = System.nanoTime();
+        this.scanning = true;
+    }
+
+    void scanCompleted(int controllerCount, int apiCount, int scannedJarCount) {
+        this.controllerCount = controllerCount;
+        this.apiCount = apiCount;
+        this.scannedJarCount = scannedJarCount;
+    }
+
+    void scanFinished() {
+        scanning = false;
+    }
+
+    @Override
+    public String getState() {
+        if (stats == null) {
+            return "idle";
+        }
+        return scanning ? "scanning" : "completed";
+    }
+
+    @Override
+    public long getScanMillis() {
+        ScanStats current = stats;
+        if (current == null) {
+            return 0;
+        }
+        return scanning ? (System.nanoTime() - startNanos) / 1_000_000 : current.scanWallNanos / 1_000_000;
+    }
+
+    @Override
+    public long getClassesScanned() {
+        ScanStats current = stats;
+        return current == null ? 0 : current.classesScanned.sum();
+    }
+
+    @Override
+    public long getClassesParsed() {
+        ScanStats current = stats;
+        return current == null ? 0 : current.classesParsed.sum();
+    }
+
+    @Override
+    public double getClassesPerSecond() {
+        long millis = getScanMillis();
+        return millis == 0 ? 0 : getClassesScanned() * 1000.0 / millis;
+    }
+
+    @Override
+    public long getBytesRead() {
+        ScanStats current = stats;
+        return current == null ? 0 : current.bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesInflated() {
+        ScanStats current = stats;
+        return current == null ? 0 : current.bytesInflated.sum();
+    }
+
+    @Override
+    public int getControllerCount() {
+        return controllerCount;
+    }
+
+    @Override
+    public int getApiCount() {
+        return apiCount;
+    }
+
+    @Override
+    public int getScannedJarCount() {
+        return scannedJarCount;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseWallMillis() {
+        ScanStats current = stats;
+        Map<String, Long> phases = new LinkedHashMap<>();
+        if (current != null) {
+            for (ScanStats.Phase phase : ScanStats.Phase.values()) {
+                phases.put(phase.key, current.phaseWallMillis(phase));
+            }
+        }
+        return phases;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCpuMillis() {
+        ScanStats current = stats;
+        Map<String, Long> phases = new LinkedHashMap<>();
+        if (current != null) {
+            for (ScanStats.Phase phase : ScanStats.Phase.values()) {
+                if (current.cpuMeasured(phase)) {
+                    phases.put(phase.key, current.phaseCpuMillis(phase));
+                }
+            }
+        }
+        return phases;
+    }
+
+    @Override
+    public Map<String, Long> getSkippedClasses() {
+        ScanStats current = stats;
+        return current == null ? Collections.<String, Long>emptyMap() : current.skippedClasses();
+    }
+
+    @Override
+    public Map<String, Long> getSlowestUnits() {
+        ScanStats current = stats;
+        return current == null ? Collections.<String, Long>emptyMap() : current.slowestUnits;
+    }
+}
@@ -0,0 +1,39 @@
+package com.apiextractor.agent;
+
+import java.util.Map;
+
+// 通过JMX公开的扫描统计，注册名为 com.apiextractor:type=SpringApiScanner
+// 扫描进行中读取到的是当前累计值，扫描结束后为最终结果
+public interface ScannerMetricsMXBean {
+    // idle、scanning 或 completed
+    String getState();
+
+    long getScanMillis();
+
+    long getClassesScanned();
+
+    long getClassesParsed();
+
+    double getClassesPerSecond();
+
+    long getBytesRead();
+
+    long getBytesInflated();
+
+    int getControllerCount();
+
+    int getApiCount();
+
+    int getScannedJarCount();
+
+    // 阶段名称 -> 毫秒
+    Map<String, Long> getPhaseWallMillis();
+
+    Map<String, Long> getPhaseCpuMillis();
+
+    // 跳过原因 -> 类数量
+    Map<String, Long> getSkippedClasses();
+
+    // 单元名称 -> 毫秒，按耗时降序
+    Map<String, Long> getSlowestUnits();
+}
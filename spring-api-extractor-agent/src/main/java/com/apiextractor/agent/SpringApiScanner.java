@@ -3,24 +3,96 @@ package com.apiextractor.agent;
 import org.objectweb.asm.*;
 
 import java.io.*;
+import java.lang.annotation.Annotation;
 import java.lang.instrument.Instrumentation;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
+import java.util.zip.ZipEntry;
 
 public class SpringApiScanner {
     private static final String DEFAULT_OUTPUT_FILE = "api_information.json";
-    private static final List<ApiDefinition> apiDefinitions = new ArrayList<>();
+    // 按规范键去重的端点，多次扫描到同一个端点时只保留一份
+    private static final EndpointRegistry endpoints = new EndpointRegistry();
     private static String outputFile = DEFAULT_OUTPUT_FILE;
     private static boolean debug = false;
-    private static final Set<String> scannedClasses = new HashSet<>();
-    private static final Set<String> scannedJars = new HashSet<>();
+    // 使用META-INF/spring.components和Jandex索引缩小候选类范围
+    private static boolean useComponentIndex = true;
+    private static int parallelism = 1;
+    private static Instrumentation instrumentation = null;
+    // 后台扫描：premain立即返回，扫描在低优先级守护线程上进行
+    private static boolean asyncScan = false;
+    private static long scanDelayMillis = 0;
+    // 扫描时间预算，0表示不限制；超出预算后尚未开始的单元被跳过
+    private static long scanBudgetMillis = 0;
+    private static long shutdownTimeoutMillis = 10000;
+    private static volatile Thread scanThread = null;
+    private static volatile long scanDeadline = 0;
+    // timing=detailed时逐类统计读取和解析阶段的CPU时间
+    private static boolean detailedTiming = false;
+    private static boolean jmxEnabled = true;
+    // 最近一次扫描的统计，写入输出文件的stats部分，并通过MBean公开
+    private static volatile ScanStats lastStats = null;
+    private static final ScannerMetrics metrics = new ScannerMetrics();
+    private static ScanMode scanMode = ScanMode.DISK;
+    private static ResultWriter.Format outputFormat = ResultWriter.Format.JSON;
+    private static boolean gzipOutput = false;
+    // NDJSON格式在扫描过程中边合并边写出，其余格式在扫描结束后一次写出
+    private static ResultWriter streamWriter = null;
+    // 流式输出时暂缓写出的类：结果待定的类和没有类级别映射、但有父类或接口的控制器，
+    // 它们的端点在解析注解和继承的映射之后可能被撤回或按祖先的路径重新生成
+    private static final Set<String> heldClasses = new HashSet<>();
+    private static ScanCache scanCache = null;
+    private static ScanFilter scanFilter = new ScanFilter(Collections.<String>emptyList(),
+            Collections.<String>emptyList(), true);
+    // 注解描述符 -> 角色，annotations= 可以追加自定义注解
+    private static AnnotationTable annotationTable = AnnotationTable.defaults();
     private static int controllerCount = 0;
     private static int apiCount = 0;
     private static int scannedJarCount = 0;
+    // watch=true时监视扫描开始之后定义的类，新出现的控制器增量加入结果
+    private static boolean watchClasses = false;
+    private static ControllerWatcher watcher = null;
+    // 最近一次扫描完成后用于分析新定义类的上下文，扫描失败时为null
+    private static volatile ScanContext definedClassesContext = null;
+    // counters=true时对发现的处理方法插桩，统计每个端点的调用次数
+    private static boolean countInvocations = false;
+    // query=<端口>|unix:<路径> 时启动本机查询端点，每次结果变化后发布新的索引快照
+    private static String queryAddress = null;
+    private static QueryServer queryServer = null;
+    // oneshot=true时只扫描并写出一次结果：不创建测试文件，也不注册关闭时再次保存的钩子，用于批量附加等一次性场景
+    private static boolean oneShot = false;
+    // 离线扫描的制品（JAR、WAR或类目录），非null时代替类路径作为扫描范围
+    private static List<File> artifacts = null;
+    // 离线扫描多个制品时合并成一份结果，否则每个制品各写一份
+    private static boolean mergeArtifacts = false;
+    // 完整扫描、新定义类的增量合并和结果写出互斥，避免同时修改端点集合
+    private static final Object catalogLock = new Object();
+
+    // 扫描线程使用守护线程，避免阻止目标应用退出
+    private static final ForkJoinPool.ForkJoinWorkerThreadFactory SCAN_THREAD_FACTORY = pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("api-scanner-worker-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        if (asyncScan) {
+            thread.setPriority(Thread.MIN_PRIORITY);
+        }
+        return thread;
+    };
+
+    // loaded：只分析JVM中已加载的控制器类；disk：扫描类路径上的文件；all：两者都做，已加载的类优先
+    private enum ScanMode {
+        LOADED,
+        DISK,
+        ALL
+    }
 
     public static class ApiDefinition {
         public String path;
@@ -28,34 +100,77 @@ public class SpringApiScanner {
         public Map<String, String> parameters = new LinkedHashMap<>();
         public String sourceClass;
         public String sourceMethod;
+        // 方法描述符，区分同名的重载方法，不写入输出
+        public String descriptor;
+        // 处理方法的调用计数编号，未启用计数时为-1
+        public int counterId = -1;
+        // 映射继承自父类或接口时声明该映射的类型，方法体可能在那里；控制器自己声明时为null，不写入输出
+        public String declaringClass;
 
         public ApiDefinition(String path) {
             this.path = path;
         }
     }
 
+    // 启动时默认在后台扫描，不延长应用的启动时间
     public static void premain(String args, Instrumentation inst) {
+        start(args, inst, ScanMode.DISK, true);
+    }
+
+    // attach时应用的控制器都已加载，默认只分析已加载的类，不再扫描磁盘
+    public static void agentmain(String args, Instrumentation inst) {
+        start(args, inst, ScanMode.LOADED, false);
+    }
+
+    private static void start(String args, Instrumentation inst, ScanMode defaultMode, boolean defaultAsync) {
         try {
             System.out.println("[API Scanner] Starting API scanning process...");
+            instrumentation = inst;
 
             // 解析参数
-            parseArgs(args);
+            parseArgs(args, defaultMode, defaultAsync);
 
             // 创建测试文件
-            createTestFile();
+            if (!oneShot) {
+                createTestFile();
+            }
+
+            // 在扫描之前注册，扫描期间定义的类也不会遗漏
+            if (watchClasses) {
+                startWatcher();
+            }
+            if (queryAddress != null) {
+                startQueryServer();
+            }
 
             // 扫描类路径
-            scanClasspath();
+            if (asyncScan) {
+                startBackgroundScan();
+            } else {
+                scanClasspath();
+            }
 
             // 在JVM关闭时保存结果
+            if (oneShot) {
+                return;
+            }
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 try {
                     System.out.println("[API Scanner] Finalizing scan...");
+                    if (!awaitScan()) {
+                        return;
+                    }
 
                     // 如果没有找到API，添加示例
-                    if (apiDefinitions.isEmpty()) {
+                    if (endpoints.isEmpty() && apiCount == 0) {
                         System.out.println("[API Scanner] No APIs found, adding samples...");
                         addSampleApis();
+                    } else if (outputFormat == ResultWriter.Format.NDJSON && !InvocationCounters.isEnabled()) {
+                        // NDJSON已在扫描时写出，端点没有保留在内存中；有调用计数时重写一遍以带上最终计数
+                        return;
+                    }
+                    if (InvocationCounters.isEnabled()) {
+                        printUninvokedEndpoints();
                     }
 
                     // 保存结果
@@ -72,11 +187,117 @@ public class SpringApiScanner {
         }
     }
 
-    public static void agentmain(String args, Instrumentation inst) {
-        premain(args, inst);
+    // 后台扫描线程：可选地延迟开始，扫描完成后直接写出结果
+    private static void startBackgroundScan() {
+        Thread thread = new Thread(() -> {
+            try {
+                if (scanDelayMillis > 0) {
+                    Thread.sleep(scanDelayMillis);
+                }
+                scanClasspath();
+            } catch (InterruptedException e) {
+                System.err.println("[API Scanner] Background scan interrupted");
+            }
+        }, "api-scanner");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        scanThread = thread;
+        thread.start();
+        System.out.println("[API Scanner] Scan started in background"
+                + (scanDelayMillis > 0 ? " after " + scanDelayMillis + " ms" : ""));
+    }
+
+    // 重复attach时沿用已注册的transformer
+    private static void startWatcher() {
+        if (watcher != null) {
+            return;
+        }
+        if (instrumentation == null) {
+            System.err.println("[API Scanner] Warning: Instrumentation unavailable, newly defined classes are not watched");
+            return;
+        }
+        watcher = new ControllerWatcher(annotationTable.candidateDescriptors(), SpringApiScanner::analyzeDefinedClasses);
+        instrumentation.addTransformer(watcher, false);
+    }
+
+    // 重复attach时沿用已启动的端点；启动失败不影响扫描
+    private static void startQueryServer() {
+        if (queryServer != null) {
+            return;
+        }
+        try {
+            queryServer = QueryServer.open(queryAddress);
+            System.out.println("[API Scanner] Query endpoint: " + queryServer.description());
+        } catch (IOException e) {
+            System.err.println("[API Scanner] Warning: Could not start query endpoint: " + e.getMessage());
+        }
+    }
+
+    // 为新发现的处理方法分配计数编号并插桩，需要在写出结果之前完成，输出中才会带有计数
+    private static void instrumentHandlers() {
+        if (!countInvocations) {
+            return;
+        }
+        if (instrumentation == null) {
+            System.err.println("[API Scanner] Warning: Instrumentation unavailable, invocations are not counted");
+            return;
+        }
+        try {
+            int added = InvocationCounters.instrument(instrumentation, endpoints.endpoints());
+            if (added > 0) {
+                System.out.println("[API Scanner] Counting invocations of " + added + " handler methods");
+            }
+        } catch (RuntimeException | LinkageError e) {
+            System.err.println("[API Scanner] Warning: Could not instrument handler methods: " + e);
+        }
+    }
+
+    // 关闭时列出从未被调用过的端点，用于找出生产环境中已经无用的接口
+    private static void printUninvokedEndpoints() {
+        List<ApiDefinition> apis = endpoints.endpoints();
+        int uninvoked = 0;
+        for (ApiDefinition api : apis) {
+            if (api.counterId >= 0 && InvocationCounters.count(api.counterId) == 0) {
+                uninvoked++;
+                if (debug) {
+                    System.out.println("[API Scanner]   never invoked: " + api.methods + " " + api.path);
+                }
+            }
+        }
+        System.out.println("[API Scanner] " + uninvoked + " of " + apis.size() + " API endpoints were never invoked");
+    }
+
+    // 用当前结果重建查询索引，没有查询端点时什么也不做
+    private static void publishCatalog() {
+        if (queryServer != null) {
+            queryServer.publish(new CatalogIndex(endpoints.endpoints(), controllerCount, scannedJarCount));
+        }
+    }
+
+    // 关闭时等待正在进行的后台扫描，超时则放弃写出，避免与扫描线程同时修改结果
+    private static boolean awaitScan() throws InterruptedException {
+        Thread thread = scanThread;
+        if (thread == null || !thread.isAlive()) {
+            return true;
+        }
+        System.out.println("[API Scanner] Waiting up to " + shutdownTimeoutMillis + " ms for the scan to finish...");
+        thread.join(shutdownTimeoutMillis);
+        if (thread.isAlive()) {
+            System.err.println("[API Scanner] Scan did not finish before shutdown, results not saved");
+            return false;
+        }
+        return true;
     }
 
-    private static void parseArgs(String args) {
+    private static void parseArgs(String args, ScanMode defaultMode, boolean defaultAsync) {
+        scanMode = defaultMode;
+        asyncScan = defaultAsync;
+        oneShot = false;
+        String cacheDir = null;
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        boolean defaultProfile = true;
+        List<String> annotationSpecs = new ArrayList<>();
         if (args != null && !args.isEmpty()) {
             String[] parts = args.split(",");
             for (String part : parts) {
@@ -84,11 +305,136 @@ public class SpringApiScanner {
                     outputFile = part.substring("output=".length());
                 } else if ("debug=true".equalsIgnoreCase(part)) {
                     debug = true;
+                } else if (part.startsWith("parallelism=")) {
+                    parallelism = parseParallelism(part.substring("parallelism=".length()));
+                } else if (part.startsWith("cache=")) {
+                    cacheDir = part.substring("cache=".length());
+                } else if (part.startsWith("include=")) {
+                    includes.addAll(Arrays.asList(part.substring("include=".length()).split(";")));
+                } else if (part.startsWith("exclude=")) {
+                    excludes.addAll(Arrays.asList(part.substring("exclude=".length()).split(";")));
+                } else if (part.startsWith("profile=")) {
+                    defaultProfile = !"none".equalsIgnoreCase(part.substring("profile=".length()));
+                } else if (part.startsWith("async=")) {
+                    asyncScan = Boolean.parseBoolean(part.substring("async=".length()).trim());
+                } else if (part.startsWith("delay=")) {
+                    scanDelayMillis = parseMillis("delay", part.substring("delay=".length()), 0);
+                } else if (part.startsWith("budget=")) {
+                    scanBudgetMillis = parseMillis("budget", part.substring("budget=".length()), 0);
+                } else if (part.startsWith("shutdownTimeout=")) {
+                    shutdownTimeoutMillis = parseMillis("shutdownTimeout",
+                            part.substring("shutdownTimeout=".length()), shutdownTimeoutMillis);
+                } else if (part.startsWith("timing=")) {
+                    detailedTiming = "detailed".equalsIgnoreCase(part.substring("timing=".length()).trim());
+                } else if (part.startsWith("jmx=")) {
+                    jmxEnabled = !"false".equalsIgnoreCase(part.substring("jmx=".length()).trim());
+                } else if (part.startsWith("mode=")) {
+                    scanMode = parseScanMode(part.substring("mode=".length()), defaultMode);
+                } else if (part.startsWith("format=")) {
+                    outputFormat = ResultWriter.Format.parse(part.substring("format=".length()));
+                } else if ("gzip=true".equalsIgnoreCase(part)) {
+                    gzipOutput = true;
+                } else if (part.startsWith("index=")) {
+                    useComponentIndex = !"false".equalsIgnoreCase(part.substring("index=".length()));
+                } else if (part.startsWith("counters=")) {
+                    countInvocations = Boolean.parseBoolean(part.substring("counters=".length()).trim());
+                } else if (part.startsWith("query=")) {
+                    queryAddress = part.substring("query=".length()).trim();
+                } else if (part.startsWith("merge=")) {
+                    mergeArtifacts = Boolean.parseBoolean(part.substring("merge=".length()).trim());
+                } else if (part.startsWith("oneshot=")) {
+                    oneShot = Boolean.parseBoolean(part.substring("oneshot=".length()).trim());
+                } else if (part.startsWith("watch=")) {
+                    watchClasses = Boolean.parseBoolean(part.substring("watch=".length()).trim());
+                } else if (part.startsWith("annotations=")) {
+                    annotationSpecs.addAll(Arrays.asList(part.substring("annotations=".length()).split(";")));
                 }
             }
         }
+
+        if (outputFile.endsWith(".gz")) {
+            gzipOutput = true;
+        }
+        // 二进制结果需要能直接内存映射
+        if (gzipOutput && outputFormat == ResultWriter.Format.BIN) {
+            System.err.println("[API Scanner] Warning: gzip is not supported for the bin format, writing uncompressed");
+            gzipOutput = false;
+        }
+
+        // 过滤规则只编译一次
+        scanFilter = new ScanFilter(includes, excludes, defaultProfile);
+        annotationTable = annotationSpecs.isEmpty() ? AnnotationTable.defaults() : new AnnotationTable(annotationSpecs);
+        if (cacheDir != null) {
+            scanCache = createScanCache(cacheDir);
+        }
+
         System.out.println("[API Scanner] Output file: " + outputFile);
+        System.out.println("[API Scanner] Scan mode: " + scanMode.name().toLowerCase(Locale.ROOT)
+                + (asyncScan ? ", background" : "")
+                + (scanBudgetMillis > 0 ? ", budget " + scanBudgetMillis + " ms" : ""));
+        System.out.println("[API Scanner] Output format: " + outputFormat.name().toLowerCase(Locale.ROOT)
+                + (gzipOutput ? " (gzip)" : ""));
         System.out.println("[API Scanner] Debug mode: " + (debug ? "enabled" : "disabled"));
+        System.out.println("[API Scanner] Parallelism: " + parallelism);
+        System.out.println("[API Scanner] Filter: " + scanFilter.fingerprint());
+        System.out.println("[API Scanner] Annotations: " + annotationTable.fingerprint());
+        System.out.println("[API Scanner] Component index: " + (useComponentIndex ? "enabled" : "disabled"));
+        if (watchClasses) {
+            System.out.println("[API Scanner] Watching newly defined classes");
+        }
+        if (countInvocations) {
+            System.out.println("[API Scanner] Counting handler method invocations");
+        }
+        if (scanCache != null) {
+            System.out.println("[API Scanner] Scan cache enabled");
+        }
+        if (oneShot) {
+            System.out.println("[API Scanner] One-shot scan: results are saved once, not again at shutdown");
+        }
+    }
+
+    private static ScanCache createScanCache(String path) {
+        File dir = new File(path);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            System.err.println("[API Scanner] Warning: Could not create cache directory: " + dir.getAbsolutePath());
+            return null;
+        }
+        System.out.println("[API Scanner] Cache directory: " + dir.getAbsolutePath());
+        // 索引开关会改变候选类的范围，自定义注解会改变识别结果，同样计入缓存规则
+        return new ScanCache(dir, scanFilter.fingerprint() + ";index=" + useComponentIndex
+                + ";annotations=" + annotationTable.fingerprint());
+    }
+
+    private static long parseMillis(String name, String value, long defaultValue) {
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("[API Scanner] Warning: Invalid " + name + " '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static ScanMode parseScanMode(String value, ScanMode defaultMode) {
+        try {
+            return ScanMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[API Scanner] Warning: Unknown scan mode '" + value + "', using "
+                    + defaultMode.name().toLowerCase(Locale.ROOT));
+            return defaultMode;
+        }
+    }
+
+    // parallelism=auto 使用全部可用CPU，1 表示顺序扫描
+    private static int parseParallelism(String value) {
+        if ("auto".equalsIgnoreCase(value)) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("[API Scanner] Warning: Invalid parallelism '" + value + "', using sequential scan");
+            return 1;
+        }
     }
 
     private static void createTestFile() {
@@ -105,47 +451,818 @@ public class SpringApiScanner {
     }
 
     private static void scanClasspath() {
-        try {
-            System.out.println("[API Scanner] Scanning classpath for Spring controllers...");
-
-            // 获取所有类路径
-            Set<URL> classpathUrls = getClasspathUrls();
-            System.out.println("[API Scanner] Found " + classpathUrls.size() + " classpath entries");
+        synchronized (catalogLock) {
+            scanClasspath(new ScanContext(detailedTiming, annotationTable, className -> scanFilter.acceptClass(className)));
+        }
+    }
 
-            // 扫描每个类路径
-            for (URL url : classpathUrls) {
-                if (debug) {
-                    System.out.println("[API Scanner] Scanning classpath entry: " + url.toString());
-                }
+    private static void scanClasspath(ScanContext context) {
+        if (jmxEnabled) {
+            metrics.register();
+        }
+        lastStats = context.stats;
+        metrics.scanStarted(context.stats);
+        definedClassesContext = null;
+        try {
+            // 重复attach时每次都重新生成结果，不累加上一次扫描的端点
+            endpoints.clear();
+            heldClasses.clear();
+            controllerCount = 0;
+            apiCount = 0;
+            scannedJarCount = 0;
+            long startTime = System.nanoTime();
+            scanDeadline = scanBudgetMillis > 0 ? startTime + scanBudgetMillis * 1_000_000L : 0;
+
+            ScanMode mode = scanMode;
+            if (mode != ScanMode.DISK && instrumentation == null) {
+                System.err.println("[API Scanner] Warning: Instrumentation unavailable, falling back to disk scan");
+                mode = ScanMode.DISK;
+            }
 
-                if (url.getProtocol().equals("file")) {
-                    File file = new File(url.getPath());
-                    if (file.isDirectory()) {
-                        scanDirectory(file, "");
-                    } else if (file.getName().endsWith(".jar")) {
-                        scanJarFile(file);
-                    }
+            // 已加载的类作为第一个单元，在all模式下优先于磁盘上的同名类
+            if (mode != ScanMode.DISK) {
+                context.addUnit(ScanUnit.Kind.LOADED_CLASSES, null);
+            }
+            if (mode != ScanMode.LOADED) {
+                long wallStart = System.nanoTime();
+                long cpuStart = CpuMeter.currentThreadCpuTime();
+                if (artifacts != null) {
+                    addArtifactUnits(context, artifacts);
+                } else {
+                    addClasspathUnits(context);
                 }
+                context.stats.recordPhase(ScanStats.Phase.DISCOVERY, wallStart, cpuStart);
             }
 
-            // 特殊处理：查找正在运行的Spring Boot JAR
-            URL mainJarUrl = findMainJar();
-            if (mainJarUrl != null) {
-                File mainJarFile = new File(mainJarUrl.getPath());
-                if (mainJarFile.exists()) {
-                    System.out.println("[API Scanner] Found main application JAR: " + mainJarFile.getName());
-                    scanSpringBootJar(mainJarFile);
-                }
+            if (outputFormat == ResultWriter.Format.NDJSON) {
+                streamWriter = ResultWriter.open(new File(outputFile), outputFormat, gzipOutput);
             }
 
-            System.out.println("[API Scanner] Scan complete.");
+            // 执行扫描，每个单元完成后按单元顺序合并结果
+            runScanUnits(context);
+            readUnlistedTypes(context);
+            context.countIndexSkippedClasses();
+            resolveDeferredClasses(context);
+            resolveInheritedMappings(context);
+            writeHeldEndpoints();
+            mergeResults(context);
+            ClassBuffer.release();
+            context.stats.scanWallNanos = System.nanoTime() - startTime;
+            context.stats.slowestUnits = slowestUnits(context, 5);
+            metrics.scanCompleted(controllerCount, apiCount, scannedJarCount);
+
+            System.out.println("[API Scanner] Scan complete in " + (System.nanoTime() - startTime) / 1_000_000 + " ms.");
+            if (context.stats.unitsSkippedByBudget.sum() > 0) {
+                System.err.println("[API Scanner] Warning: Scan budget of " + scanBudgetMillis + " ms exhausted, skipped "
+                        + context.stats.unitsSkippedByBudget.sum() + " of " + context.units.size()
+                        + " units; results are partial");
+            }
             System.out.println("[API Scanner] Scanned " + scannedJarCount + " JAR files");
             System.out.println("[API Scanner] Found " + controllerCount + " controllers");
-            System.out.println("[API Scanner] Found " + apiCount + " API endpoints");
-            saveResults(outputFile);
+            System.out.println("[API Scanner] Found " + apiCount + " API endpoints"
+                    + (endpoints.duplicates() > 0 ? " (" + endpoints.duplicates() + " duplicates collapsed)" : ""));
+            ScanStats stats = context.stats;
+            System.out.println(String.format("[API Scanner] Prefilter skipped %d of %d classes (%.1f%%), parsed %d",
+                    stats.classesSkippedByPrefilter.sum(), stats.classesScanned.sum(),
+                    stats.prefilterSkipRatio() * 100, stats.classesParsed.sum()));
+            System.out.println("[API Scanner] Filter skipped " + stats.jarsSkippedByFilter.sum() + " JARs and "
+                    + stats.classesSkippedByFilter.sum() + " classes");
+            System.out.println("[API Scanner] Component index used for " + stats.indexedArchives.sum()
+                    + " archives, skipped " + stats.classesSkippedByIndex.sum() + " unlisted classes");
+            if (stats.classesDeferred.sum() > 0 || context.annotations.definitionCount() > 0) {
+                System.out.println("[API Scanner] Meta-annotations: " + context.annotations.definitionCount()
+                        + " annotation types, " + context.annotations.composedControllers().size()
+                        + " composed controller annotations, " + stats.classesDeferred.sum()
+                        + " deferred classes, " + stats.classesRescanned.sum() + " classes re-read");
+            }
+            if (stats.hierarchyEdges > 0) {
+                System.out.println("[API Scanner] Class hierarchy: " + stats.hierarchyTypes + " types, "
+                        + stats.hierarchyEdges + " supertype edges, " + stats.inheritedEndpoints.sum()
+                        + " endpoints inherited from interfaces or superclasses");
+            }
+            if (stats.loadedClassesInspected.sum() > 0) {
+                System.out.println("[API Scanner] Loaded classes: " + stats.loadedClassesInspected.sum()
+                        + " inspected, " + stats.loadedControllers.sum() + " annotated as controllers");
+            }
+            System.out.println("[API Scanner] Nested JARs: " + stats.nestedJarsMapped.sum() + " memory-mapped, "
+                    + stats.nestedJarsStreamed.sum() + " streamed");
+            if (AllocationMeter.isSupported()) {
+                System.out.println("[API Scanner] Allocated " + stats.allocatedBytesPerClass()
+                        + " bytes per scanned class, " + stats.allocatedBytesPerRejectedClass()
+                        + " bytes per rejected class (read + prefilter)");
+            }
+            if (scanCache != null) {
+                System.out.println("[API Scanner] Scan cache: " + stats.cacheHits.sum() + " hits, "
+                        + stats.cacheMisses.sum() + " misses");
+            }
+            printTimings(stats);
+            instrumentHandlers();
+            if (streamWriter == null) {
+                saveResults(outputFile);
+            }
+            publishCatalog();
+            definedClassesContext = new ScanContext(context);
         } catch (Exception e) {
             System.err.println("[API Scanner] Error scanning classpath: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            closeStreamWriter();
+            context.close();
+            metrics.scanFinished();
+            if (watcher != null) {
+                watcher.scanCompleted(context.annotations.prefilterDescriptors());
+            }
+        }
+    }
+
+    // 扫描完成后新定义的候选类：按过滤规则和类去重表筛选后分析，新端点直接并入结果，不重新扫描类路径
+    // 继承的映射只在完整扫描时解析，这里只加入类自身声明的端点
+    private static void analyzeDefinedClasses(List<ControllerWatcher.DefinedClass> classes) {
+        synchronized (catalogLock) {
+            ScanContext context = definedClassesContext;
+            if (context == null) {
+                return;
+            }
+            long startTime = System.nanoTime();
+            ScanUnit unit = context.newDefinedClassesUnit();
+            for (ControllerWatcher.DefinedClass defined : classes) {
+                String className = defined.name.replace('/', '.');
+                // 运行时生成的代理类与原类共享注解，跳过以免重复
+                if (!className.contains("$$") && acceptClass(unit, className)) {
+                    analyzeClassBytes(unit, className, defined.bytes, defined.bytes.length, -1);
+                }
+            }
+            ClassBuffer.release();
+
+            int previousApiCount = apiCount;
+            try {
+                if (outputFormat == ResultWriter.Format.NDJSON && !unit.apis.isEmpty()) {
+                    // NDJSON的端点没有保留在内存中，新端点追加到已写出的文件末尾
+                    streamWriter = ResultWriter.open(new File(outputFile), outputFormat, gzipOutput, true);
+                }
+                mergeUnit(unit);
+                writeHeldEndpoints();
+            } catch (IOException e) {
+                System.err.println("[API Scanner] Error writing results: " + e.getMessage());
+            } finally {
+                closeStreamWriter();
+            }
+            metrics.scanCompleted(controllerCount, apiCount, scannedJarCount);
+            ScanStats stats = context.stats;
+            if (debug || apiCount > previousApiCount) {
+                System.out.println("[API Scanner] Defined classes: " + (apiCount - previousApiCount)
+                        + " new API endpoints from " + classes.size() + " candidates in "
+                        + (System.nanoTime() - startTime) / 1_000_000 + " ms; watcher inspected "
+                        + watcher.classesInspected.sum() + " classes in "
+                        + watcher.transformNanos.sum() / 1_000_000 + " ms, queued "
+                        + watcher.classesQueued.sum() + ", dropped " + watcher.classesDropped.sum()
+                        + ", skipped " + stats.classesSkippedAsDuplicate.sum() + " already scanned");
+            }
+            if (apiCount > previousApiCount) {
+                instrumentHandlers();
+                if (outputFormat != ResultWriter.Format.NDJSON) {
+                    saveResults(outputFile);
+                }
+                publishCatalog();
+            }
+        }
+    }
+
+    private static void printTimings(ScanStats stats) {
+        StringBuilder phases = new StringBuilder("[API Scanner] Phases:");
+        for (ScanStats.Phase phase : ScanStats.Phase.values()) {
+            if (phase == ScanStats.Phase.OUTPUT) {
+                continue;
+            }
+            phases.append(' ').append(phase.key).append(' ').append(stats.phaseWallMillis(phase)).append(" ms");
+            if (stats.cpuMeasured(phase)) {
+                phases.append(" (cpu ").append(stats.phaseCpuMillis(phase)).append(" ms)");
+            }
+            phases.append(',');
+        }
+        phases.setLength(phases.length() - 1);
+        System.out.println(phases);
+        System.out.println(String.format("[API Scanner] Throughput: %.0f classes/s, read %d KB, inflated %d KB",
+                stats.classesPerSecond(), stats.bytesRead.sum() / 1024, stats.bytesInflated.sum() / 1024));
+        if (!stats.slowestUnits.isEmpty()) {
+            StringBuilder slowest = new StringBuilder("[API Scanner] Slowest:");
+            for (Map.Entry<String, Long> unit : stats.slowestUnits.entrySet()) {
+                slowest.append(' ').append(unit.getKey()).append(' ').append(unit.getValue()).append(" ms,");
+            }
+            slowest.setLength(slowest.length() - 1);
+            System.out.println(slowest);
+        }
+    }
+
+    // 耗时最长的几个单元，名称 -> 毫秒
+    private static Map<String, Long> slowestUnits(ScanContext context, int limit) {
+        List<ScanUnit> units = new ArrayList<>(context.units);
+        units.sort((a, b) -> Long.compare(b.elapsedNanos, a.elapsedNanos));
+        Map<String, Long> slowest = new LinkedHashMap<>();
+        for (ScanUnit unit : units.subList(0, Math.min(limit, units.size()))) {
+            slowest.merge(unit.qualifiedName(), unit.elapsedNanos / 1_000_000, Long::sum);
+        }
+        return slowest;
+    }
+
+    // 把类路径上的目录、JAR以及正在运行的Spring Boot JAR拆分成扫描单元
+    private static void addClasspathUnits(ScanContext context) {
+        System.out.println("[API Scanner] Scanning classpath for Spring controllers...");
+
+        // 获取所有类路径
+        Set<URL> classpathUrls = getClasspathUrls();
+        System.out.println("[API Scanner] Found " + classpathUrls.size() + " classpath entries");
+
+        // 把每个类路径拆分成扫描单元
+        for (URL url : classpathUrls) {
+            if (debug) {
+                System.out.println("[API Scanner] Scanning classpath entry: " + url.toString());
+            }
+
+            if (url.getProtocol().equals("file")) {
+                File file = new File(url.getPath());
+                if (file.isDirectory()) {
+                    context.addUnit(ScanUnit.Kind.DIRECTORY, file);
+                } else if (file.getName().endsWith(".jar")) {
+                    addJarUnits(context, file);
+                }
+            }
+        }
+
+        // 特殊处理：查找正在运行的Spring Boot JAR
+        URL mainJarUrl = findMainJar();
+        if (mainJarUrl != null) {
+            File mainJarFile = new File(mainJarUrl.getPath());
+            if (mainJarFile.exists()) {
+                System.out.println("[API Scanner] Found main application JAR: " + mainJarFile.getName());
+                addSpringBootJarUnits(context, mainJarFile);
+            }
+        }
+    }
+
+    // 离线扫描的制品与类路径条目一样拆分成单元：目录整体作为一个单元，JAR和WAR按结构拆分出应用类和依赖JAR
+    private static void addArtifactUnits(ScanContext context, List<File> files) {
+        for (File file : files) {
+            System.out.println("[API Scanner] Scanning artifact: " + file.getPath());
+            if (file.isDirectory()) {
+                context.addUnit(ScanUnit.Kind.DIRECTORY, file);
+            } else {
+                addJarUnits(context, file);
+            }
+        }
+    }
+
+    // 离线扫描：不启动应用也不附加到JVM，用同一套扫描引擎直接分析JAR、WAR或类目录，参数与agent相同
+    // merge=true（或只有一个制品且output是文件）时所有制品作为同一次扫描的单元一起并行分析，写出一份结果；
+    // 否则逐个制品扫描，每个制品内部按单元并行，结果写到output目录（默认当前目录）下以制品命名的文件中，
+    // 同名制品按参数顺序在文件名后加上序号；制品之间不并行：单元并行已经用满parallelism个线程，
+    // 端点集合、计数和输出流等扫描状态是进程级的，需要跨制品并行时使用merge=true
+    // 返回不存在或无法读取的制品数，这些制品不产生结果文件
+    public static synchronized int scanArtifacts(List<File> files, String args) {
+        // 离线时默认使用全部CPU，不注册MBean，参数中可以覆盖
+        parallelism = Runtime.getRuntime().availableProcessors();
+        jmxEnabled = false;
+        parseArgs(args, ScanMode.DISK, false);
+        scanMode = ScanMode.DISK;
+        String output = null;
+        for (String part : args == null ? new String[0] : args.split(",")) {
+            if (part.startsWith("output=")) {
+                output = part.substring("output=".length());
+            }
+        }
+
+        int failed = 0;
+        List<File> existing = new ArrayList<>();
+        for (File file : files) {
+            if (!file.exists()) {
+                System.err.println("[API Scanner] Artifact not found: " + file.getPath());
+                failed++;
+            } else if (isReadableArtifact(file)) {
+                existing.add(file);
+            } else {
+                failed++;
+            }
+        }
+        long startTime = System.nanoTime();
+        try {
+            boolean outputIsDirectory = output == null || new File(output).isDirectory() || output.endsWith("/")
+                    || output.endsWith(File.separator);
+            File directory = outputIsDirectory ? new File(output != null ? output : ".") : null;
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                System.err.println("[API Scanner] Could not create output directory: " + directory.getAbsolutePath());
+                return files.size();
+            }
+            if (mergeArtifacts || existing.size() == 1 && directory == null) {
+                if (!existing.isEmpty()) {
+                    artifacts = existing;
+                    outputFile = directory == null ? output : new File(directory, DEFAULT_OUTPUT_FILE).getPath();
+                    scanClasspath();
+                }
+            } else {
+                Map<String, Integer> names = new HashMap<>();
+                for (File file : existing) {
+                    String name = file.getName();
+                    int occurrence = names.merge(name, 1, Integer::sum);
+                    if (occurrence > 1) {
+                        name = name + "-" + occurrence;
+                        System.err.println("[API Scanner] Warning: Another artifact is named " + file.getName()
+                                + ", results for " + file.getPath() + " are saved as " + name);
+                    }
+                    artifacts = Collections.singletonList(file);
+                    outputFile = new File(directory, name + outputFormat.extension()
+                            + (gzipOutput ? ".gz" : "")).getPath();
+                    scanClasspath();
+                }
+            }
+        } finally {
+            artifacts = null;
+        }
+        System.out.println("[API Scanner] Offline scan of " + existing.size() + " artifacts finished in "
+                + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+        return failed;
+    }
+
+    // 目录，或者能打开中央目录的JAR、WAR
+    private static boolean isReadableArtifact(File file) {
+        if (file.isDirectory()) {
+            return true;
+        }
+        try {
+            new JarFile(file).close();
+            return true;
+        } catch (IOException | SecurityException e) {
+            System.err.println("[API Scanner] Not a readable archive: " + file.getPath() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // 顺序执行，或在fork-join线程池上按单元并行执行
+    private static void runScanUnits(ScanContext context) {
+        List<ScanUnit> units = context.units;
+        if (parallelism <= 1 || units.size() <= 1) {
+            for (ScanUnit unit : units) {
+                scanUnit(unit);
+            }
+            return;
+        }
+
+        System.out.println("[API Scanner] Scanning " + units.size() + " units with parallelism " + parallelism);
+        ForkJoinPool pool = new ForkJoinPool(parallelism, SCAN_THREAD_FACTORY, null, false);
+        try {
+            pool.invoke(new ScanTask(units, 0, units.size()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void scanUnit(ScanUnit unit) {
+        if (scanDeadline != 0 && System.nanoTime() - scanDeadline > 0) {
+            unit.context.stats.unitsSkippedByBudget.increment();
+            completeUnit(unit);
+            return;
+        }
+        long allocatedBefore = AllocationMeter.currentThreadAllocatedBytes();
+        long wallStart = System.nanoTime();
+        long cpuStart = CpuMeter.currentThreadCpuTime();
+        try {
+            scanUnitContent(unit);
+            resolveUnitDeferredClasses(unit);
+        } finally {
+            ScanStats stats = unit.context.stats;
+            unit.elapsedNanos = System.nanoTime() - wallStart;
+            if (cpuStart >= 0) {
+                stats.unitCpuNanos.add(CpuMeter.currentThreadCpuTime() - cpuStart);
+            }
+            if (allocatedBefore >= 0) {
+                stats.bytesAllocated.add(AllocationMeter.currentThreadAllocatedBytes() - allocatedBefore);
+            }
+            completeUnit(unit);
+        }
+    }
+
+    private static void scanUnitContent(ScanUnit unit) {
+        switch (unit.kind) {
+            case DIRECTORY:
+                File dir = unit.file;
+                readComponentIndex(unit, name -> {
+                    File indexFile = new File(dir, name);
+                    return indexFile.isFile() ? new FileInputStream(indexFile) : null;
+                });
+                scanDirectory(unit, dir, "");
+                readIndexReferences(unit, className -> {
+                    File file = new File(dir, className.replace('.', '/') + ".class");
+                    if (file.isFile() && claimIndexReference(unit, className)) {
+                        try (InputStream is = new FileInputStream(file)) {
+                            analyzeClassFile(unit, className, is, file.length(), false);
+                        }
+                    }
+                });
+                break;
+            case JAR:
+                scanJarFile(unit);
+                break;
+            case BOOT_INF_CLASSES:
+                scanBootInfClasses(unit);
+                break;
+            case NESTED_JAR:
+                scanBootInfLibJar(unit);
+                break;
+            case LOADED_CLASSES:
+                scanLoadedClasses(unit);
+                break;
+        }
+    }
+
+    // 单元结束时，本单元中稍后才出现的注解定义已经可用：因此改变结果的类在单元合并之前重新分析，结果仍按单元顺序输出；
+    // 仍然没有定义的注解来自其他单元或根本不会出现，留到所有单元完成后再检查
+    private static void resolveUnitDeferredClasses(ScanUnit unit) {
+        if (unit.deferredClasses.isEmpty()) {
+            return;
+        }
+        AnnotationGraph annotations = unit.context.annotations;
+        Set<String> changed = new HashSet<>();
+        Iterator<Map.Entry<String, List<String>>> deferred = unit.deferredClasses.entrySet().iterator();
+        while (deferred.hasNext()) {
+            Map.Entry<String, List<String>> entry = deferred.next();
+            boolean pending = false;
+            for (String descriptor : entry.getValue()) {
+                AnnotationGraph.Resolution resolution = annotations.resolve(descriptor);
+                if (resolution == null) {
+                    pending = true;
+                } else if (resolution != AnnotationGraph.Resolution.NONE) {
+                    changed.add(entry.getKey());
+                    break;
+                }
+            }
+            if (!pending || changed.contains(entry.getKey())) {
+                deferred.remove();
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        unit.apis.removeIf(api -> changed.contains(api.sourceClass));
+        unit.controllerHits.keySet().removeAll(changed);
+        unit.mappedTypes.removeIf(type -> changed.contains(type.className));
+        rescanClasses(unit, changed);
+    }
+
+    // 所有单元完成后元注解图已经完整：使用过当时未定义的注解、且这些注解确实是控制器、映射或参数注解的类重新分析，
+    // 它们推测得出的端点被撤回；被预过滤跳过的带注解类只在引用了组合控制器或组合映射注解时重新检查
+    // 只读取列出的类，不重新扫描整个类路径；结果按单元顺序追加在第一遍的结果之后
+    private static void resolveDeferredClasses(ScanContext context) {
+        AnnotationGraph annotations = context.annotations;
+        annotations.complete();
+        boolean composedCandidates = !annotations.composedCandidates().isEmpty();
+        for (ScanUnit unit : context.units) {
+            Set<String> changed = new HashSet<>();
+            for (Map.Entry<String, List<String>> entry : unit.deferredClasses.entrySet()) {
+                for (String descriptor : entry.getValue()) {
+                    if (annotations.resolve(descriptor) != AnnotationGraph.Resolution.NONE) {
+                        changed.add(entry.getKey());
+                        break;
+                    }
+                }
+            }
+            Set<String> classes = new HashSet<>(changed);
+            if (composedCandidates) {
+                for (Map.Entry<String, List<String>> entry : unit.annotatedClasses.entrySet()) {
+                    for (String descriptor : entry.getValue()) {
+                        if (annotations.resolve(descriptor) != AnnotationGraph.Resolution.NONE) {
+                            classes.add(entry.getKey());
+                            break;
+                        }
+                    }
+                }
+            }
+            unit.deferredClasses.clear();
+            unit.annotatedClasses.clear();
+            if (classes.isEmpty()) {
+                continue;
+            }
+
+            // 第一遍的结果已经合并，撤回推测得出的端点和控制器计数，只保留重新分析产生的结果
+            Set<String> retracted = new HashSet<>();
+            synchronized (context) {
+                for (String className : changed) {
+                    if (context.ownsClass(className, unit.ordinal)) {
+                        retracted.add(EndpointRegistry.normalizeClassName(className));
+                        controllerCount -= unit.controllerHits.getOrDefault(className, 0);
+                    }
+                }
+                endpoints.retractClasses(retracted);
+            }
+            unit.apis.clear();
+            unit.controllerHits.clear();
+            unit.mappedTypes.removeIf(type -> changed.contains(type.className));
+            rescanClasses(unit, classes);
+            synchronized (context) {
+                mergeUnit(unit);
+                apiCount -= endpoints.dropRetracted();
+            }
+        }
+    }
+
+    // 使用组件索引的单元只读取列出的类和本单元中被引用的类型：父类、接口或注解类型位于另一个使用索引的单元时，
+    // 没有任何单元读取它们；所有单元完成后按单元顺序从使用索引的单元中补读，补读的类型再引用的类型依次处理
+    private static void readUnlistedTypes(ScanContext context) {
+        List<ScanUnit> indexedUnits = new ArrayList<>();
+        for (ScanUnit unit : context.units) {
+            if (unit.indexReferences != null) {
+                indexedUnits.add(unit);
+            }
+        }
+        if (indexedUnits.isEmpty()) {
+            return;
+        }
+        Set<String> requested = new HashSet<>();
+        while (true) {
+            Set<String> missing = new LinkedHashSet<>();
+            for (ScanUnit unit : context.units) {
+                unit.hierarchy.forEachParent(name -> missing.add(name.replace('/', '.')));
+                for (List<String> descriptors : unit.deferredClasses.values()) {
+                    for (String descriptor : descriptors) {
+                        if (context.annotations.resolve(descriptor) == null) {
+                            missing.add(AnnotationGraph.className(descriptor));
+                        }
+                    }
+                }
+            }
+            missing.removeIf(name -> context.isClaimed(name) || !scanFilter.acceptClass(name) || !requested.add(name));
+            if (missing.isEmpty()) {
+                return;
+            }
+            for (ScanUnit unit : indexedUnits) {
+                unit.indexReferences.addAll(missing);
+                // 已经合并的结果不再需要，只合并补读产生的结果
+                unit.apis.clear();
+                unit.controllerHits.clear();
+                rescanClasses(unit, Collections.<String>emptySet());
+                synchronized (context) {
+                    mergeUnit(unit);
+                }
+                missing.removeIf(context::isClaimed);
+                if (missing.isEmpty()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void rescanClasses(ScanUnit unit, Set<String> classes) {
+        unit.rescanClasses = classes;
+        try {
+            scanUnitContent(unit);
+        } finally {
+            unit.rescanClasses = null;
+        }
+    }
+
+    // Spring会沿控制器的父类和接口查找映射注解：把各单元的继承索引按单元顺序合并，只保留拥有者单元记录的类，
+    // 再沿每个控制器的祖先查找接口和父类上声明的映射，全部在内存中完成，不重新读取任何类文件
+    private static void resolveInheritedMappings(ScanContext context) {
+        ClassHierarchy hierarchy = new ClassHierarchy();
+        for (ScanUnit unit : context.units) {
+            hierarchy.merge(unit.hierarchy, name -> context.ownsClass(name.replace('/', '.'), unit.ordinal));
+        }
+        hierarchy.freeze();
+        context.stats.hierarchyTypes = hierarchy.size();
+        context.stats.hierarchyEdges = hierarchy.edgeCount();
+
+        // 全局ID -> 该类型上声明的映射，同名类型只保留拥有者单元的记录
+        MappedType[] declared = new MappedType[hierarchy.size()];
+        boolean anyDeclared = false;
+        for (ScanUnit unit : context.units) {
+            for (MappedType type : unit.mappedTypes) {
+                if (!type.controller && context.ownsClass(type.className, unit.ordinal)) {
+                    int id = hierarchy.find(type.className.replace('.', '/'));
+                    if (id >= 0 && declared[id] == null) {
+                        declared[id] = type;
+                        anyDeclared = true;
+                    }
+                }
+            }
+        }
+        if (!anyDeclared) {
+            return;
+        }
+
+        for (ScanUnit unit : context.units) {
+            List<ApiDefinition> inherited = new ArrayList<>();
+            // 使用了祖先类级别映射的控制器，它们自己的端点要按祖先的路径重新生成
+            Set<String> rebased = new HashSet<>();
+            int ownEndpoints = 0;
+            for (MappedType controller : unit.mappedTypes) {
+                if (!controller.controller || !context.ownsClass(controller.className, unit.ordinal)) {
+                    continue;
+                }
+                int id = hierarchy.find(controller.className.replace('.', '/'));
+                if (id >= 0 && addInheritedApis(controller, hierarchy.ancestors(id), declared, inherited)) {
+                    rebased.add(EndpointRegistry.normalizeClassName(controller.className));
+                    ownEndpoints += controller.methods.size();
+                }
+            }
+            if (inherited.isEmpty()) {
+                continue;
+            }
+            context.stats.inheritedEndpoints.add(inherited.size() - ownEndpoints);
+            // 之前的结果已经合并，只合并继承得到的端点；重新生成的控制器撤回第一遍按空路径得出的端点
+            unit.apis.clear();
+            unit.controllerHits.clear();
+            unit.apis.addAll(inherited);
+            synchronized (context) {
+                endpoints.retractClasses(rebased);
+                mergeUnit(unit);
+                apiCount -= endpoints.dropRetracted();
+            }
+        }
+    }
+
+    // 祖先按由近及远的顺序查找：控制器没有类级别映射时使用最近的祖先的类级别映射，它自己的映射方法也按该映射重新生成，
+    // 此时返回true；同名同描述符的方法只取最近的声明，控制器自己声明了映射的方法不再继承
+    private static boolean addInheritedApis(MappedType controller, int[] ancestors, MappedType[] declared,
+                                            List<ApiDefinition> result) {
+        String basePath = controller.basePath;
+        List<String> classLevelHttpMethods = controller.httpMethods;
+        boolean rebased = false;
+        if (basePath == null) {
+            for (int ancestor : ancestors) {
+                MappedType type = declared[ancestor];
+                if (type != null && type.basePath != null) {
+                    basePath = type.basePath;
+                    classLevelHttpMethods = type.httpMethods;
+                    rebased = true;
+                    break;
+                }
+            }
+        }
+        if (basePath == null) {
+            basePath = "";
+        }
+
+        Set<String> handled = new HashSet<>();
+        for (MappedType.Method method : controller.methods) {
+            handled.add(method.key());
+            if (rebased) {
+                result.add(createApi(controller.className, method.name, method.descriptor, basePath,
+                        method.path, method.httpMethods, classLevelHttpMethods, method.parameters));
+            }
+        }
+        for (int ancestor : ancestors) {
+            MappedType type = declared[ancestor];
+            if (type == null) {
+                continue;
+            }
+            for (MappedType.Method method : type.methods) {
+                if (handled.add(method.key())) {
+                    ApiDefinition api = createApi(controller.className, method.name, method.descriptor, basePath,
+                            method.path, method.httpMethods, classLevelHttpMethods, method.parameters);
+                    api.declaringClass = EndpointRegistry.normalizeClassName(type.className);
+                    result.add(api);
+                }
+            }
+        }
+        return rebased;
+    }
+
+    // 单元完成后，把从mergedUnits开始连续完成的单元依次合并
+    // 之前的单元都已完成时，后面的单元无法再抢走这些类的扫描权，单元的结果已经是最终结果
+    private static void completeUnit(ScanUnit unit) {
+        ScanContext context = unit.context;
+        synchronized (context) {
+            unit.completed = true;
+            List<ScanUnit> units = context.units;
+            while (context.mergedUnits < units.size() && units.get(context.mergedUnits).completed) {
+                mergeUnit(units.get(context.mergedUnits++));
+            }
+        }
+    }
+
+    // 只保留拥有者单元产生的结果；流式输出时端点写出后即释放，除非查询端点还需要它们
+    private static void mergeUnit(ScanUnit unit) {
+        ScanContext context = unit.context;
+        for (String className : unit.resultClasses) {
+            if (context.ownsClass(className, unit.ordinal)) {
+                endpoints.reserve(className);
+            }
+        }
+        Set<String> held = streamWriter != null ? provisionalClasses(unit) : Collections.<String>emptySet();
+        for (ApiDefinition api : unit.apis) {
+            if (!context.ownsClass(api.sourceClass, unit.ordinal)) {
+                continue;
+            }
+            boolean hold = held.contains(api.sourceClass)
+                    || heldClasses.contains(EndpointRegistry.normalizeClassName(api.sourceClass));
+            if (endpoints.add(api, hold || retainEndpoints())) {
+                apiCount++;
+                if (hold) {
+                    heldClasses.add(api.sourceClass);
+                } else if (streamWriter != null) {
+                    writeStreamedApi(api);
+                }
+            }
+        }
+        for (Map.Entry<String, Integer> hit : unit.controllerHits.entrySet()) {
+            if (context.ownsClass(hit.getKey(), unit.ordinal)) {
+                controllerCount += hit.getValue();
+            }
+        }
+        if (streamWriter != null) {
+            unit.apis.clear();
+        }
+    }
+
+    // 端点可能在扫描之后改变的类：使用了尚未定义的注解的类，以及没有类级别映射、但有用户定义的父类或接口的控制器
+    private static Set<String> provisionalClasses(ScanUnit unit) {
+        Set<String> result = new HashSet<>(unit.deferredClasses.keySet());
+        for (MappedType type : unit.mappedTypes) {
+            if (type.controller && type.basePath == null
+                    && unit.hierarchy.hasSupertypes(type.className.replace('.', '/'))) {
+                result.add(type.className);
+            }
+        }
+        return result;
+    }
+
+    // 写出暂缓的端点，此时它们已经是最终结果；按类的位置写在其余端点之后
+    private static void writeHeldEndpoints() {
+        if (streamWriter != null && !heldClasses.isEmpty()) {
+            for (ApiDefinition api : endpoints.takeEndpoints(heldClasses, retainEndpoints())) {
+                writeStreamedApi(api);
+            }
+        }
+        heldClasses.clear();
+    }
+
+    // 查询端点和调用计数在扫描之后仍需要端点本身
+    private static boolean retainEndpoints() {
+        return streamWriter == null || queryServer != null || countInvocations;
+    }
+
+    private static void writeStreamedApi(ApiDefinition api) {
+        long wallStart = System.nanoTime();
+        long cpuStart = CpuMeter.currentThreadCpuTime();
+        try {
+            streamWriter.writeApi(api);
+        } catch (IOException e) {
+            System.err.println("[API Scanner] Error writing results: " + e.getMessage());
+            closeStreamWriter();
+        }
+        recordOutput(wallStart, cpuStart);
+    }
+
+    private static void closeStreamWriter() {
+        if (streamWriter == null) {
+            return;
+        }
+        long wallStart = System.nanoTime();
+        long cpuStart = CpuMeter.currentThreadCpuTime();
+        try {
+            streamWriter.close();
+            System.out.println("[API Scanner] Results streamed to: " + new File(outputFile).getAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("[API Scanner] Error closing results: " + e.getMessage());
+        }
+        streamWriter = null;
+        recordOutput(wallStart, cpuStart);
+    }
+
+    private static void recordOutput(long wallStart, long cpuStart) {
+        ScanStats stats = lastStats;
+        if (stats != null) {
+            stats.recordPhase(ScanStats.Phase.OUTPUT, wallStart, cpuStart);
+        }
+    }
+
+    private static void mergeResults(ScanContext context) {
+        if (context.mergedUnits != context.units.size()) {
+            throw new IllegalStateException("Merged " + context.mergedUnits + " of " + context.units.size() + " units");
+        }
+        scannedJarCount += context.scannedJarCount;
+    }
+
+    // 按单元区间递归二分，空闲的工作线程会窃取尚未执行的另一半
+    private static class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ScanUnit> units;
+        private final int from;
+        private final int to;
+
+        ScanTask(List<ScanUnit> units, int from, int to) {
+            this.units = units;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                scanUnit(units.get(from));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ScanTask(units, from, mid), new ScanTask(units, mid, to));
         }
     }
 
@@ -202,138 +1319,414 @@ public class SpringApiScanner {
         return result;
     }
 
-    // 扫描Spring Boot的JAR结构 (JAR内嵌JAR)
-    private static void scanSpringBootJar(File jarFile) {
+    // 拆分Spring Boot的JAR结构 (JAR内嵌JAR)
+    // 返回应用类目录是否已经拆分成单独的单元
+    private static boolean addSpringBootJarUnits(ScanContext context, File jarFile) {
+        if (!scanFilter.acceptJar(jarFile.getName(), true)) {
+            context.stats.jarsSkippedByFilter.increment();
+            return false;
+        }
+
+        // 主JAR通常既在类路径上又被findMainJar找到，只拆分一次
+        if (!context.bootJars.add(jarFile.getAbsolutePath())) {
+            return true;
+        }
+
+        try {
+            if (context.scannedJars.add(jarFile.getAbsolutePath())) {
+                context.scannedJarCount++;
+            }
+
+            System.out.println("[API Scanner] Scanning Spring Boot JAR: " + jarFile.getName());
+            JarFile jar = context.openSharedJar(jarFile);
+
+            // 1. BOOT-INF/classes（WAR中为WEB-INF/classes）中的类文件
+            ScanUnit classes = context.addUnit(ScanUnit.Kind.BOOT_INF_CLASSES, jarFile, jar, null);
+            if (jar.getEntry("BOOT-INF/classes/") == null && jar.getEntry("WEB-INF/classes/") != null) {
+                classes.classesDirectory = "WEB-INF/classes/";
+            }
+
+            // 2. BOOT-INF/lib（WAR中为WEB-INF/lib）中的每个JAR文件各自作为一个单元
+            addBootInfLibJarUnits(context, jarFile, jar);
+            return true;
+
+        } catch (Exception e) {
+            System.err.println("[API Scanner] Error scanning Spring Boot JAR: " + jarFile.getName() + ": " + e.getMessage());
+            if (debug) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    // 分析JVM中已加载的控制器类：先按运行时注解筛选，只有控制器才通过其类加载器读取字节码
+    // 按类名排序后分析，保证输出顺序与getAllLoadedClasses的返回顺序无关
+    private static void scanLoadedClasses(ScanUnit unit) {
+        ScanStats stats = unit.context.stats;
+        List<Class<?>> controllers = new ArrayList<>();
+        for (Class<?> type : instrumentation.getAllLoadedClasses()) {
+            if (type.isArray() || type.isPrimitive() || type.isInterface() || type.isSynthetic()
+                    || type.getName().contains("$$")) {
+                continue;
+            }
+            if (!scanFilter.acceptClass(type.getName())) {
+                stats.classesSkippedByFilter.increment();
+                continue;
+            }
+            stats.loadedClassesInspected.increment();
+            if (isAnnotatedController(unit.context.annotations, type)) {
+                controllers.add(type);
+            }
+        }
+        stats.loadedControllers.add(controllers.size());
+        controllers.sort(Comparator.comparing(Class::getName));
+
+        // 控制器的父类和接口可能声明了映射，接口不在上面的检查范围内，这里一起读取
+        Set<Class<?>> seen = new HashSet<>(controllers);
+        List<Class<?>> supertypes = new ArrayList<>();
+        for (Class<?> type : controllers) {
+            collectSupertypes(type, seen, supertypes);
+        }
+        supertypes.sort(Comparator.comparing(Class::getName));
+        List<Class<?>> types = new ArrayList<>(controllers);
+        types.addAll(supertypes);
+
+        for (Class<?> type : types) {
+            String className = type.getName();
+            if (unit.rescanClasses != null) {
+                if (!unit.rescanClasses.contains(className)) {
+                    continue;
+                }
+                stats.classesRescanned.increment();
+            } else if (!unit.claimClass(className)) {
+                stats.classesSkippedAsDuplicate.increment();
+                continue;
+            }
+            defineHandlerAnnotations(unit.context.annotations, type);
+            String resource = className.replace('.', '/') + ".class";
+            ClassLoader loader = type.getClassLoader();
+            try (InputStream is = loader != null ? loader.getResourceAsStream(resource)
+                    : ClassLoader.getSystemResourceAsStream(resource)) {
+                if (is == null) {
+                    if (debug) {
+                        System.err.println("[API Scanner] Bytecode not available for loaded class: " + className);
+                    }
+                    continue;
+                }
+                analyzeClassFile(unit, className, is, -1, false);
+            } catch (IOException e) {
+                if (debug) {
+                    System.err.println("[API Scanner] Error reading loaded class: " + className + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void collectSupertypes(Class<?> type, Set<Class<?>> seen, List<Class<?>> result) {
+        List<Class<?>> direct = new ArrayList<>(Arrays.asList(type.getInterfaces()));
+        if (type.getSuperclass() != null) {
+            direct.add(0, type.getSuperclass());
+        }
+        for (Class<?> supertype : direct) {
+            if (!supertype.getName().startsWith("java.") && seen.add(supertype)) {
+                result.add(supertype);
+                collectSupertypes(supertype, seen, result);
+            }
+        }
+    }
+
+    // 与字节码规则一致：类上的注解直接或通过元注解解析为控制器；注解类型无法解析时视为非控制器
+    private static boolean isAnnotatedController(AnnotationGraph annotations, Class<?> type) {
         try {
-            scannedJars.add(jarFile.getAbsolutePath());
-            scannedJarCount++;
+            for (Annotation annotation : type.getDeclaredAnnotations()) {
+                Class<? extends Annotation> annotationType = annotation.annotationType();
+                defineLoadedAnnotation(annotations, annotationType);
+                AnnotationGraph.Resolution resolution =
+                        annotations.resolve(AnnotationTable.descriptorOf(annotationType.getName()));
+                if (resolution != null && resolution.isController()) {
+                    return true;
+                }
+            }
+        } catch (Throwable e) {
+            if (debug) {
+                System.err.println("[API Scanner] Could not read annotations of " + type.getName() + ": " + e);
+            }
+        }
+        return false;
+    }
+
+    // 已加载的注解类型通过反射取得完整的元注解链，分析字节码时不需要推迟
+    private static void defineHandlerAnnotations(AnnotationGraph annotations, Class<?> type) {
+        try {
+            for (java.lang.reflect.Method method : type.getDeclaredMethods()) {
+                for (Annotation annotation : method.getDeclaredAnnotations()) {
+                    defineLoadedAnnotation(annotations, annotation.annotationType());
+                }
+                for (Annotation[] parameterAnnotations : method.getParameterAnnotations()) {
+                    for (Annotation annotation : parameterAnnotations) {
+                        defineLoadedAnnotation(annotations, annotation.annotationType());
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            if (debug) {
+                System.err.println("[API Scanner] Could not read method annotations of " + type.getName() + ": " + e);
+            }
+        }
+    }
+
+    private static void defineLoadedAnnotation(AnnotationGraph annotations, Class<? extends Annotation> type) {
+        String descriptor = AnnotationTable.descriptorOf(type.getName());
+        if (annotations.isDefined(descriptor) || type.getName().startsWith("java.")) {
+            return;
+        }
+        List<String> metaAnnotations = new ArrayList<>();
+        Map<String, String> metaPaths = new HashMap<>();
+        Annotation[] metas = type.getDeclaredAnnotations();
+        for (Annotation meta : metas) {
+            String metaDescriptor = AnnotationTable.descriptorOf(meta.annotationType().getName());
+            metaAnnotations.add(metaDescriptor);
+            String path = annotationPath(meta);
+            if (path != null) {
+                metaPaths.put(metaDescriptor, path);
+            }
+        }
+        // 先定义再递归，元注解互相引用时不会无限递归
+        annotations.define(descriptor, new AnnotationGraph.Definition(metaAnnotations, metaPaths));
+        for (Annotation meta : metas) {
+            defineLoadedAnnotation(annotations, meta.annotationType());
+        }
+    }
+
+    // 注解value/path属性的第一个非空值
+    private static String annotationPath(Annotation annotation) {
+        for (String attribute : new String[]{"value", "path"}) {
+            try {
+                Object value = annotation.annotationType().getMethod(attribute).invoke(annotation);
+                if (value instanceof String[] && ((String[]) value).length > 0) {
+                    return ((String[]) value)[0];
+                }
+                if (value instanceof String && !((String) value).isEmpty()) {
+                    return (String) value;
+                }
+            } catch (ReflectiveOperationException | RuntimeException ignore) {
+            }
+        }
+        return null;
+    }
+
+    // 扫描BOOT-INF/classes（WAR中为WEB-INF/classes）目录中的类
+    private static void scanBootInfClasses(ScanUnit unit) {
+        try {
+            JarFile jar = unit.outerJar;
+            String directory = unit.classesDirectory;
+            readJarComponentIndex(unit, jar, directory);
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+
+                // 查找应用类目录下的类文件
+                if (name.startsWith(directory) && name.endsWith(".class")) {
+                    // 将路径转换为类名
+                    String className = name.substring(directory.length(), name.length() - 6)
+                            .replace('/', '.');
+
+                    if (acceptClass(unit, className)) {
+                        try (InputStream is = jar.getInputStream(entry)) {
+                            analyzeClassFile(unit, className, is, entry.getSize(),
+                                    entry.getMethod() == ZipEntry.DEFLATED);
+                        }
+                    }
+                }
+            }
+            readJarIndexReferences(unit, jar, directory);
+        } catch (Exception e) {
+            System.err.println("[API Scanner] Error scanning " + unit.qualifiedName() + ": " + e.getMessage());
+        }
+    }
+
+    // 查找BOOT-INF/lib（WAR中为WEB-INF/lib）目录中的嵌套JAR
+    private static void addBootInfLibJarUnits(ScanContext context, File jarFile, JarFile jar) {
+        try {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+
+                if (NestedJarReader.isLibraryJar(name)) {
+                    // 按文件名过滤，被排除的嵌套JAR不会被打开
+                    if (scanFilter.acceptJar(name.substring(name.lastIndexOf('/') + 1), false)) {
+                        context.addUnit(ScanUnit.Kind.NESTED_JAR, jarFile, jar, entry);
+                    } else {
+                        context.stats.jarsSkippedByFilter.increment();
+                        if (debug) {
+                            System.out.println("[API Scanner] Skipping filtered nested JAR: " + name);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[API Scanner] Error scanning nested JARs of " + jarFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    // 扫描BOOT-INF/lib目录中的一个嵌套JAR
+    static void scanBootInfLibJar(ScanUnit unit) {
+        String jarName = unit.displayName();
+
+        // 记录正在处理的JAR
+        if (debug) {
+            System.out.println("[API Scanner] Processing nested JAR: " + jarName);
+        }
 
-            System.out.println("[API Scanner] Scanning Spring Boot JAR: " + jarFile.getName());
-            JarFile jar = new JarFile(jarFile);
+        // 嵌套JAR的缓存键直接来自外层JAR的中央目录，命中时不需要解压
+        ScanCache.Key cacheKey = null;
+        if (scanCache != null && unit.rescanClasses == null) {
+            cacheKey = ScanCache.keyForNestedJar(unit.file, unit.entry);
+            if (replayCachedUnit(unit, cacheKey)) {
+                return;
+            }
+        }
 
-            // 1. 扫描BOOT-INF/classes中的类文件
-            scanBootInfClasses(jar);
+        try {
+            // 优先通过内存映射随机访问，不支持时退回流式读取
+            if (!scanMappedNestedJar(unit)) {
+                scanNestedJarStream(unit);
+            }
 
-            // 2. 扫描BOOT-INF/lib中的JAR文件
-            scanBootInfLibJars(jar);
+            if (cacheKey != null) {
+                scanCache.store(unit, cacheKey);
+            }
 
-            jar.close();
+            // 每处理5个JAR输出一条日志，避免日志过多
+            if (unit.context.processedNestedJars.incrementAndGet() % 5 == 0) {
+                System.out.println("[API Scanner] Processed " + unit.context.processedNestedJars.get() + " nested JARs...");
+            }
 
         } catch (Exception e) {
-            System.err.println("[API Scanner] Error scanning Spring Boot JAR: " + jarFile.getName() + ": " + e.getMessage());
+            System.err.println("[API Scanner] Error processing nested JAR: " + jarName);
             if (debug) {
                 e.printStackTrace();
             }
         }
     }
 
-    // 扫描BOOT-INF/classes目录中的类
-    private static void scanBootInfClasses(JarFile jar) {
-        try {
-            Enumeration<JarEntry> entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                String name = entry.getName();
+    // 直接读取映射后的嵌套JAR中央目录，只复制或解压需要分析的类条目
+    static boolean scanMappedNestedJar(ScanUnit unit) throws IOException {
+        ScanStats stats = unit.context.stats;
+        long wallStart = System.nanoTime();
+        long cpuStart = CpuMeter.currentThreadCpuTime();
+        NestedJarReader reader = unit.context.nestedJarReader(unit.file);
+        if (reader == null) {
+            stats.recordPhase(ScanStats.Phase.JAR_OPEN, wallStart, cpuStart);
+            return false;
+        }
 
-                // 查找BOOT-INF/classes目录下的类文件
-                if (name.startsWith("BOOT-INF/classes/") && name.endsWith(".class")) {
-                    // 将路径转换为类名
-                    String className = name.substring("BOOT-INF/classes/".length(), name.length() - 6)
+        try (NestedJarReader.NestedJar nestedJar = reader.openNestedJar(unit.entry.getName())) {
+            stats.recordPhase(ScanStats.Phase.JAR_OPEN, wallStart, cpuStart);
+            if (nestedJar == null) {
+                return false;
+            }
+            stats.nestedJarsMapped.increment();
+
+            // 先按名称定位索引文件，再回到开头按中央目录顺序遍历
+            readComponentIndex(unit, name -> {
+                if (!nestedJar.seek(name)) {
+                    return null;
+                }
+                ClassBuffer buffer = ClassBuffer.get();
+                return new ByteArrayInputStream(buffer.data, 0, nestedJar.readInto(buffer));
+            });
+            nestedJar.rewind();
+
+            while (nestedJar.next()) {
+                String innerName = nestedJar.name();
+                if (innerName.endsWith(".class")) {
+                    String className = innerName.substring(0, innerName.length() - 6)
                             .replace('/', '.');
 
-                    if (!scannedClasses.contains(className)) {
-                        scannedClasses.add(className);
-                        try (InputStream is = jar.getInputStream(entry)) {
-                            analyzeClassFile(className, is);
+                    if (acceptClass(unit, className)) {
+                        try {
+                            long allocatedBefore = AllocationMeter.currentThreadAllocatedBytes();
+                            long readStart = System.nanoTime();
+                            long readCpuStart = stats.classPhaseCpuStart();
+                            ClassBuffer buffer = ClassBuffer.get();
+                            int length = nestedJar.readInto(buffer);
+                            recordEntryRead(stats, readStart, readCpuStart, length, nestedJar.isCompressed());
+                            if (length > 0) {
+                                analyzeClassBytes(unit, className, buffer.data, length, allocatedBefore);
+                            }
+                        } catch (IOException e) {
+                            if (debug) {
+                                System.err.println("[API Scanner] Error reading class from nested JAR: " +
+                                        innerName + " in " + unit.displayName());
+                            }
                         }
                     }
                 }
             }
-        } catch (Exception e) {
-            System.err.println("[API Scanner] Error scanning BOOT-INF/classes: " + e.getMessage());
+            readIndexReferences(unit, className -> {
+                if (nestedJar.seek(className.replace('.', '/') + ".class") && claimIndexReference(unit, className)) {
+                    long allocatedBefore = AllocationMeter.currentThreadAllocatedBytes();
+                    ClassBuffer buffer = ClassBuffer.get();
+                    int length = nestedJar.readInto(buffer);
+                    if (length > 0) {
+                        analyzeClassBytes(unit, className, buffer.data, length, allocatedBefore);
+                    }
+                }
+            });
         }
+        return true;
     }
 
-    // 扫描BOOT-INF/lib目录中的嵌套JAR
-    private static void scanBootInfLibJars(JarFile jar) {
-        try {
-            Enumeration<JarEntry> entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                String name = entry.getName();
-
-                // 查找BOOT-INF/lib目录下的JAR文件
-                if (name.startsWith("BOOT-INF/lib/") && name.endsWith(".jar")) {
-                    String jarName = name.substring(name.lastIndexOf('/') + 1);
-
-                    // 记录正在处理的JAR
-                    if (debug) {
-                        System.out.println("[API Scanner] Processing nested JAR: " + jarName);
-                    }
+    // 以JarInputStream顺序读取嵌套JAR，用于压缩存放或ZIP64格式的嵌套JAR
+    static void scanNestedJarStream(ScanUnit unit) throws IOException {
+        ScanStats stats = unit.context.stats;
+        stats.nestedJarsStreamed.increment();
+        long wallStart = System.nanoTime();
+        long cpuStart = CpuMeter.currentThreadCpuTime();
+        try (InputStream jarStream = unit.outerJar.getInputStream(unit.entry);
+             JarInputStream innerJar = new JarInputStream(jarStream)) {
+            stats.recordPhase(ScanStats.Phase.JAR_OPEN, wallStart, cpuStart);
+
+            // 扫描嵌套JAR中的类；流式读取不能回头按需读取索引没有列出的类，不使用组件索引
+            JarEntry innerEntry;
+            while ((innerEntry = innerJar.getNextJarEntry()) != null) {
+                String innerName = innerEntry.getName();
+                if (innerName.endsWith(".class")) {
+                    // 将路径转换为类名
+                    String className = innerName.substring(0, innerName.length() - 6)
+                            .replace('/', '.');
 
-                    try (InputStream jarStream = jar.getInputStream(entry);
-                         JarInputStream innerJar = new JarInputStream(jarStream)) {
-
-                        // 扫描嵌套JAR中的类
-                        JarEntry innerEntry;
-                        while ((innerEntry = innerJar.getNextJarEntry()) != null) {
-                            String innerName = innerEntry.getName();
-                            if (innerName.endsWith(".class")) {
-                                // 将路径转换为类名
-                                String className = innerName.substring(0, innerName.length() - 6)
-                                        .replace('/', '.');
-
-                                if (!scannedClasses.contains(className)) {
-                                    scannedClasses.add(className);
-
-                                    // 读取内嵌JAR文件中的类
-                                    try {
-                                        byte[] classBytes = readStreamToByteArray(innerJar);
-                                        if (classBytes != null && classBytes.length > 0) {
-                                            analyzeClassBytes(className, classBytes);
-                                        }
-                                    } catch (Exception e) {
-                                        if (debug) {
-                                            System.err.println("[API Scanner] Error reading class from nested JAR: " +
-                                                    innerName + " in " + jarName);
-                                        }
-                                    }
-                                }
+                    if (acceptClass(unit, className)) {
+                        // 读取内嵌JAR文件中的类
+                        try {
+                            long allocatedBefore = AllocationMeter.currentThreadAllocatedBytes();
+                            long readStart = System.nanoTime();
+                            long readCpuStart = stats.classPhaseCpuStart();
+                            ClassBuffer buffer = ClassBuffer.get();
+                            int length = buffer.readFrom(innerJar, innerEntry.getSize());
+                            // 外层条目被压缩时，嵌套JAR中的每个字节都需要解压
+                            recordEntryRead(stats, readStart, readCpuStart, length,
+                                    innerEntry.getMethod() == ZipEntry.DEFLATED
+                                            || unit.entry.getMethod() == ZipEntry.DEFLATED);
+                            if (length > 0) {
+                                analyzeClassBytes(unit, className, buffer.data, length, allocatedBefore);
+                            }
+                        } catch (Exception e) {
+                            if (debug) {
+                                System.err.println("[API Scanner] Error reading class from nested JAR: " +
+                                        innerName + " in " + unit.displayName());
                             }
-                        }
-
-                        // 每处理5个JAR输出一条日志，避免日志过多
-                        if (scannedJarCount % 5 == 0) {
-                            System.out.println("[API Scanner] Processed " + scannedJarCount + " JARs...");
-                        }
-
-                    } catch (Exception e) {
-                        System.err.println("[API Scanner] Error processing nested JAR: " + jarName);
-                        if (debug) {
-                            e.printStackTrace();
                         }
                     }
                 }
             }
-        } catch (Exception e) {
-            System.err.println("[API Scanner] Error scanning BOOT-INF/lib: " + e.getMessage());
         }
     }
 
-    // 读取输入流内容到字节数组
-    private static byte[] readStreamToByteArray(InputStream is) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int nRead;
-        byte[] data = new byte[4096];
-
-        while ((nRead = is.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
-        }
-
-        return buffer.toByteArray();
-    }
-
-    private static void scanDirectory(File dir, String packageName) {
+    private static void scanDirectory(ScanUnit unit, File dir, String packageName) {
         File[] files = dir.listFiles();
         if (files == null) return;
 
@@ -342,15 +1735,14 @@ public class SpringApiScanner {
             if (file.isDirectory()) {
                 // 递归扫描子目录
                 String subPackage = packageName.isEmpty() ? fileName : packageName + "." + fileName;
-                scanDirectory(file, subPackage);
+                scanDirectory(unit, file, subPackage);
             } else if (fileName.endsWith(".class")) {
                 // 解析类文件
                 String className = packageName + "." + fileName.substring(0, fileName.length() - 6);
-                if (!scannedClasses.contains(className)) {
-                    scannedClasses.add(className);
+                if (acceptClass(unit, className)) {
                     try {
                         InputStream is = new java.io.FileInputStream(file);
-                        analyzeClassFile(className, is);
+                        analyzeClassFile(unit, className, is, file.length(), false);
                         is.close();
                     } catch (IOException e) {
                         System.err.println("[API Scanner] Error reading class file: " + file.getPath());
@@ -360,29 +1752,76 @@ public class SpringApiScanner {
         }
     }
 
-    private static void scanJarFile(File jarFile) {
-        if (scannedJars.contains(jarFile.getAbsolutePath())) {
+    private static void addJarUnits(ScanContext context, File jarFile) {
+        if (context.scannedJars.contains(jarFile.getAbsolutePath())) {
             return;
         }
 
-        try {
-            scannedJars.add(jarFile.getAbsolutePath());
-            scannedJarCount++;
+        // 被exclude匹配的JAR直接跳过，不需要打开
+        if (!scanFilter.acceptJar(jarFile.getName(), true)) {
+            context.stats.jarsSkippedByFilter.increment();
+            return;
+        }
+
+        // 检查是否是Spring Boot JAR或WAR，两者都把应用类和依赖JAR分开存放
+        boolean isBootJar = false;
+        try (JarFile checkJar = new JarFile(jarFile)) {
+            isBootJar = checkJar.getEntry("BOOT-INF/classes/") != null ||
+                    checkJar.getEntry("BOOT-INF/lib/") != null ||
+                    checkJar.getEntry("WEB-INF/classes/") != null ||
+                    checkJar.getEntry("WEB-INF/lib/") != null;
+        } catch (Exception ignore) {}
+
+        if (!isBootJar && !scanFilter.acceptJar(jarFile.getName(), false)) {
+            context.stats.jarsSkippedByFilter.increment();
+            return;
+        }
+
+        if (!context.scannedJars.add(jarFile.getAbsolutePath())) {
+            return;
+        }
+        context.scannedJarCount++;
+        ScanUnit unit = context.addUnit(ScanUnit.Kind.JAR, jarFile);
+
+        if (isBootJar) {
+            unit.skipApplicationClasses = addSpringBootJarUnits(context, jarFile);
+        }
+    }
+
+    private static void scanJarFile(ScanUnit unit) {
+        File jarFile = unit.file;
+        long wallStart = System.nanoTime();
+        long cpuStart = CpuMeter.currentThreadCpuTime();
+        try (JarFile jar = new JarFile(jarFile)) {
+            unit.context.stats.recordPhase(ScanStats.Phase.JAR_OPEN, wallStart, cpuStart);
+            ScanCache.Key cacheKey = null;
+            if (scanCache != null && unit.rescanClasses == null) {
+                cacheKey = ScanCache.keyForJar(jarFile, jar);
+                if (replayCachedUnit(unit, cacheKey)) {
+                    return;
+                }
+            }
 
-            JarFile jar = new JarFile(jarFile);
+            readJarComponentIndex(unit, jar, "");
             Enumeration<JarEntry> entries = jar.entries();
 
             while (entries.hasMoreElements()) {
                 JarEntry entry = entries.nextElement();
                 String name = entry.getName();
+                // 应用类目录已拆分成单元时由它按自己的组件索引扫描
+                if (unit.skipApplicationClasses && (name.startsWith("BOOT-INF/") || name.startsWith("WEB-INF/"))) {
+                    continue;
+                }
                 if (name.endsWith(".class")) {
-                    // 将路径转换为包名
-                    String className = name.replace('/', '.').substring(0, name.length() - 6);
+                    // 将路径转换为包名；Spring Boot JAR和WAR中的应用类去掉BOOT-INF.classes.或WEB-INF.classes.前缀，
+                    // 与应用类目录单元使用相同的类名，只被扫描一次
+                    String className = EndpointRegistry.normalizeClassName(
+                            name.replace('/', '.').substring(0, name.length() - 6));
 
-                    if (!scannedClasses.contains(className)) {
-                        scannedClasses.add(className);
+                    if (acceptClass(unit, className)) {
                         try (InputStream is = jar.getInputStream(entry)) {
-                            analyzeClassFile(className, is);
+                            analyzeClassFile(unit, className, is, entry.getSize(),
+                                    entry.getMethod() == ZipEntry.DEFLATED);
                         } catch (IOException e) {
                             if (debug) {
                                 System.err.println("[API Scanner] Error reading class from jar: " + name);
@@ -391,20 +1830,10 @@ public class SpringApiScanner {
                     }
                 }
             }
+            readJarIndexReferences(unit, jar, "");
 
-            jar.close();
-
-            // 检查是否是Spring Boot JAR
-            boolean isBootJar = false;
-            try {
-                JarFile checkJar = new JarFile(jarFile);
-                isBootJar = checkJar.getEntry("BOOT-INF/classes/") != null ||
-                        checkJar.getEntry("BOOT-INF/lib/") != null;
-                checkJar.close();
-            } catch (Exception ignore) {}
-
-            if (isBootJar) {
-                scanSpringBootJar(jarFile);
+            if (cacheKey != null) {
+                scanCache.store(unit, cacheKey);
             }
 
         } catch (Exception e) {
@@ -412,20 +1841,149 @@ public class SpringApiScanner {
         }
     }
 
-    private static void analyzeClassFile(String className, InputStream classFileStream) {
+    // 包过滤在声明扫描权之前进行，被过滤的类不读取任何字节
+    private static boolean acceptClass(ScanUnit unit, String className) {
+        // 重新分析推迟的类时，单元已经拥有这些类的扫描权
+        if (unit.rescanClasses != null) {
+            if (!unit.rescanClasses.contains(className)) {
+                return false;
+            }
+            unit.context.stats.classesRescanned.increment();
+            return true;
+        }
+        if (!scanFilter.acceptClass(className)) {
+            unit.context.stats.classesSkippedByFilter.increment();
+            return false;
+        }
+        if (unit.indexedClasses != null && !unit.indexedClasses.contains(className)) {
+            unit.context.indexSkippedClasses.add(className);
+            return false;
+        }
+        if (!unit.claimClass(className)) {
+            unit.context.stats.classesSkippedAsDuplicate.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // 按类名读取并分析单元中的一个类，类不在单元中时什么也不做
+    private interface ClassLookup {
+        void read(String className) throws IOException;
+    }
+
+    // 组件索引只列出组件：已读取的类引用的组合注解等类型如果在本单元中，按需读取并分析，
+    // 它们再引用的类型依次处理；索引没有列出、也没有被引用的类仍不读取
+    private static void readIndexReferences(ScanUnit unit, ClassLookup lookup) {
+        Set<String> references = unit.indexReferences;
+        if (references == null) {
+            return;
+        }
+        while (!references.isEmpty()) {
+            List<String> batch = new ArrayList<>(references);
+            references.clear();
+            for (String className : batch) {
+                if (unit.indexedClasses.contains(className) || !scanFilter.acceptClass(className)) {
+                    continue;
+                }
+                try {
+                    lookup.read(className);
+                } catch (IOException e) {
+                    if (debug) {
+                        System.err.println("[API Scanner] Error reading referenced class " + className + " in "
+                                + unit.displayName() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private static void readJarIndexReferences(ScanUnit unit, JarFile jar, String prefix) {
+        readIndexReferences(unit, className -> {
+            JarEntry entry = jar.getJarEntry(prefix + className.replace('.', '/') + ".class");
+            if (entry != null && claimIndexReference(unit, className)) {
+                try (InputStream is = jar.getInputStream(entry)) {
+                    analyzeClassFile(unit, className, is, entry.getSize(), entry.getMethod() == ZipEntry.DEFLATED);
+                }
+            }
+        });
+    }
+
+    // 被引用的类在遍历时已按索引跳过，这里改为读取；所有单元完成后补读的类计为重新读取
+    private static boolean claimIndexReference(ScanUnit unit, String className) {
+        ScanStats stats = unit.context.stats;
+        if (unit.rescanClasses != null) {
+            stats.classesRescanned.increment();
+        }
+        if (!unit.claimClass(className)) {
+            stats.classesSkippedAsDuplicate.increment();
+            return false;
+        }
+        if (debug) {
+            System.out.println("[API Scanner] Reading " + className + " referenced by indexed classes in "
+                    + unit.displayName());
+        }
+        return true;
+    }
+
+    private static void readJarComponentIndex(ScanUnit unit, JarFile jar, String prefix) {
+        readComponentIndex(unit, name -> {
+            JarEntry entry = jar.getJarEntry(prefix + name);
+            return entry != null ? jar.getInputStream(entry) : null;
+        });
+    }
+
+    // 单元带有构建期组件索引时只分析索引列出的类和它们引用的本单元中的类型，其余类不读取字节；索引不可用时保持完整扫描
+    private static void readComponentIndex(ScanUnit unit, ComponentIndex.Source source) {
+        if (!useComponentIndex) {
+            return;
+        }
         try {
-            // 跳过不相关的类
-            if (className.startsWith("java.") ||
-                    className.startsWith("javax.") ||
-                    className.startsWith("sun.") ||
-                    className.startsWith("com.sun.") ||
-                    className.startsWith("org.objectweb.asm.")) {
-                return;
+            Set<String> classes = ComponentIndex.read(source, unit.context.annotations.table().candidateClassNames());
+            if (classes != null) {
+                unit.useComponentIndex(classes);
+                if (unit.rescanClasses != null) {
+                    return;
+                }
+                unit.context.stats.indexedArchives.increment();
+                if (debug) {
+                    System.out.println("[API Scanner] Using component index for " + unit.displayName()
+                            + " (" + classes.size() + " candidates)");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[API Scanner] Warning: Ignoring unreadable component index in "
+                    + unit.displayName() + ": " + e.getMessage());
+        }
+    }
+
+    // 命中缓存时直接回放结果；未命中时让单元记录完整结果，扫描结束后写入缓存
+    private static boolean replayCachedUnit(ScanUnit unit, ScanCache.Key cacheKey) {
+        ScanStats stats = unit.context.stats;
+        if (scanCache.replay(unit, cacheKey)) {
+            stats.cacheHits.increment();
+            if (debug) {
+                System.out.println("[API Scanner] Replayed cached results for " + unit.displayName());
             }
+            return true;
+        }
+        stats.cacheMisses.increment();
+        unit.recordCompleteResults();
+        return false;
+    }
 
-            // 读取字节码
-            byte[] classBytes = readStreamToByteArray(classFileStream);
-            analyzeClassBytes(className, classBytes);
+    // inflated表示条目以DEFLATED方式存放，读取时需要解压
+    private static void analyzeClassFile(ScanUnit unit, String className, InputStream classFileStream, long size,
+                                         boolean inflated) {
+        try {
+            // 读取字节码到线程复用的缓冲区，已知条目大小时按大小预分配
+            long allocatedBefore = AllocationMeter.currentThreadAllocatedBytes();
+            ScanStats stats = unit.context.stats;
+            long wallStart = System.nanoTime();
+            long cpuStart = stats.classPhaseCpuStart();
+            ClassBuffer buffer = ClassBuffer.get();
+            int length = buffer.readFrom(classFileStream, size);
+            recordEntryRead(stats, wallStart, cpuStart, length, inflated);
+            analyzeClassBytes(unit, className, buffer.data, length, allocatedBefore);
 
         } catch (Exception e) {
             if (debug) {
@@ -434,67 +1992,219 @@ public class SpringApiScanner {
         }
     }
 
-    private static void analyzeClassBytes(String className, byte[] classBytes) {
+    private static void recordEntryRead(ScanStats stats, long wallStart, long cpuStart, int length, boolean inflated) {
+        stats.recordPhase(ScanStats.Phase.ENTRY_READ, wallStart, cpuStart);
+        stats.bytesRead.add(length);
+        if (inflated) {
+            stats.bytesInflated.add(length);
+        }
+    }
+
+    // classBytes可能是复用的缓冲区，只有前length个字节有效
+    // allocatedBefore为开始读取该类之前的线程分配量，用于统计被预过滤跳过的类产生的垃圾
+    static void analyzeClassBytes(ScanUnit unit, String className, byte[] classBytes, int length,
+                                  long allocatedBefore) {
+        ScanStats stats = unit.context.stats;
+        long wallStart = System.nanoTime();
+        long cpuStart = stats.classPhaseCpuStart();
         try {
-            // 使用ASM分析字节码
-            ClassReader reader = new ClassReader(classBytes);
-            SpringControllerVisitor visitor = new SpringControllerVisitor(className);
+            // 先用常量池预过滤，绝大多数非控制器类在这里被跳过
+            stats.classesScanned.increment();
+            AnnotationGraph annotations = unit.context.annotations;
+            int[] offsets = ClassBuffer.get().constantOffsets(
+                    ConstantPoolPrefilter.constantCount(classBytes, 0, length));
+            // 使用组件索引时读取的类都是组件或被它们引用的类型，全部完整解析，以便记录其中引用的组合注解
+            int kind = unit.indexedClasses != null ? ConstantPoolPrefilter.CANDIDATE
+                    : ConstantPoolPrefilter.classify(classBytes, 0, length, annotations.prefilterDescriptors(), offsets);
+            if (kind != ConstantPoolPrefilter.CANDIDATE) {
+                // 跳过的类也记录父类和接口，控制器可能经由它们继承接口上的映射
+                unit.hierarchy.addSupertypes(classBytes, offsets);
+                // 带注解的类可能使用了还没有遇到定义的组合控制器注解，记下它引用的、尚不能确定无关的类型，
+                // 扫描结束后只重新检查引用了组合注解的类
+                if (kind == ConstantPoolPrefilter.ANNOTATED && !annotations.isComplete()) {
+                    List<String> descriptors = new ArrayList<>();
+                    ConstantPoolPrefilter.forEachTypeDescriptor(classBytes, offsets,
+                            ConstantPoolPrefilter.constantCount(classBytes, 0, length), descriptor -> {
+                                if (annotations.resolve(descriptor) != AnnotationGraph.Resolution.NONE) {
+                                    descriptors.add(descriptor);
+                                }
+                            });
+                    if (!descriptors.isEmpty()) {
+                        unit.annotatedClasses.put(className, descriptors);
+                    }
+                }
+                stats.classesSkippedByPrefilter.increment();
+                if (allocatedBefore >= 0) {
+                    stats.rejectedBytesAllocated.add(AllocationMeter.currentThreadAllocatedBytes() - allocatedBefore);
+                    stats.rejectedClassesMeasured.increment();
+                }
+                return;
+            }
+            stats.classesParsed.increment();
+
+            // 使用ASM分析字节码，直接读取缓冲区中的有效区间，不再复制
+            ClassReader reader = new ClassReader(classBytes, 0, length);
+            SpringControllerVisitor visitor = new SpringControllerVisitor(className, unit);
             reader.accept(visitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
         } catch (Exception e) {
             if (debug) {
                 System.err.println("[API Scanner] Error analyzing class bytes: " + className + ": " + e.getMessage());
             }
+        } finally {
+            stats.recordPhase(ScanStats.Phase.PARSE, wallStart, cpuStart);
         }
     }
 
     // ASM访问器，寻找REST控制器和API方法
+    // 注解通过元注解图解析；暂时没有定义的注解先按无关处理并记在单元中，之后确实影响结果时才重新分析该类
     private static class SpringControllerVisitor extends ClassVisitor {
         private final String className;
+        private final ScanUnit unit;
+        private final AnnotationGraph annotations;
         private String basePath = "";
         private boolean isController = false;
         private boolean isRestController = false;
+        private int controllerAnnotations = 0;
+        private boolean classMapping = false;
         private final List<String> classLevelHttpMethods = new ArrayList<>();
-
-        public SpringControllerVisitor(String className) {
+        // 带映射注解的方法，控制器用于判断覆盖，接口和父类的映射由继承它们的控制器使用
+        private final List<MappedType.Method> mappedMethods = new ArrayList<>();
+        // 注解类型只记录其上的元注解，不会是控制器
+        private boolean isAnnotationType = false;
+        private final List<String> metaAnnotations = new ArrayList<>();
+        private final Map<String, String> metaPaths = new HashMap<>();
+        // 分析时还没有定义的注解
+        private final Set<String> unresolvedAnnotations = new LinkedHashSet<>();
+        // 类分析完成后才提交
+        private final List<ApiDefinition> apis = new ArrayList<>();
+
+        public SpringControllerVisitor(String className, ScanUnit unit) {
             super(Opcodes.ASM9);
             this.className = className;
+            this.unit = unit;
+            this.annotations = unit.context.annotations;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                          String[] interfaces) {
+            isAnnotationType = (access & Opcodes.ACC_ANNOTATION) != 0;
+            unit.hierarchy.addSupertypes(name, superName, interfaces);
+            // 父类和接口上可能声明了映射，索引不会列出它们
+            if (superName != null && !superName.startsWith("java/")) {
+                unit.referenceType(superName.replace('/', '.'));
+            }
+            if (interfaces != null) {
+                for (String type : interfaces) {
+                    if (!type.startsWith("java/")) {
+                        unit.referenceType(type.replace('/', '.'));
+                    }
+                }
+            }
         }
 
         @Override
         public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-            // 检查类注解，判断是否是控制器
-            if (descriptor.contains("Controller")) {
+            if (isAnnotationType) {
+                metaAnnotations.add(descriptor);
+                if (annotations.resolve(descriptor) == null) {
+                    unit.referenceType(AnnotationGraph.className(descriptor));
+                }
+                return new PathValueVisitor(path -> metaPaths.putIfAbsent(descriptor, path));
+            }
+
+            // 按描述符解析注解，判断是否是控制器或请求映射
+            AnnotationGraph.Resolution resolution = annotations.resolve(descriptor);
+            if (resolution == null) {
+                unresolved(descriptor);
+                return null;
+            }
+
+            if (resolution.isController()) {
                 isController = true;
+                controllerAnnotations++;
 
-                if (descriptor.contains("RestController")) {
+                if (resolution.stereotype == AnnotationTable.Role.REST_CONTROLLER) {
                     isRestController = true;
                 }
-
-                if (debug) {
-                    System.out.println("[API Scanner] Found " +
-                            (isRestController ? "REST " : "") + "controller: " + className);
-                }
-                controllerCount++;
             }
-
-            // 检查RequestMapping注解，提取基础路径
-            if (descriptor.contains("RequestMapping")) {
+            if (resolution.mapping) {
+                // 类级别的映射提供基础路径和默认HTTP方法，注解自身的属性覆盖元注解上的路径
+                classMapping = true;
+                if (resolution.path != null) {
+                    basePath = resolution.path;
+                }
+                if (resolution.httpMethod != null) {
+                    classLevelHttpMethods.add(resolution.httpMethod);
+                }
                 return new RequestMappingVisitor(true);
             }
 
             return null;
         }
 
+        // 记下暂时没有定义的注解；使用组件索引时它的定义可能就在本单元中未列出的类里
+        private void unresolved(String descriptor) {
+            unresolvedAnnotations.add(descriptor);
+            unit.referenceType(AnnotationGraph.className(descriptor));
+        }
+
         @Override
         public MethodVisitor visitMethod(int access, String name, String descriptor,
                                          String signature, String[] exceptions) {
             // 只处理公开方法
             if ((access & Opcodes.ACC_PUBLIC) == 0) return null;
 
-            // 仅处理控制器类的方法
-            if (!isController) return null;
+            // 非控制器类型的方法也要处理，接口和父类上的映射会被控制器继承
+            if (isAnnotationType) return null;
+
+            return new SpringHandlerMethodVisitor(this, name, descriptor);
+        }
+
+        @Override
+        public void visitEnd() {
+            if (isAnnotationType) {
+                unit.defineAnnotation(AnnotationTable.descriptorOf(className),
+                        new AnnotationGraph.Definition(metaAnnotations, metaPaths));
+                return;
+            }
+            if (!unresolvedAnnotations.isEmpty() || isController) {
+                unit.resultClasses.add(className);
+            }
+            if (!unresolvedAnnotations.isEmpty()) {
+                unit.deferredClasses.put(className, new ArrayList<>(unresolvedAnnotations));
+                unit.context.stats.classesDeferred.increment();
+                if (debug) {
+                    System.out.println("[API Scanner] Annotations not yet defined in " + className + ": "
+                            + unresolvedAnnotations);
+                }
+            }
+            if (!isController) {
+                // 接口或父类上声明的映射，扫描结束后由继承它们的控制器使用
+                if (classMapping || !mappedMethods.isEmpty()) {
+                    unit.mappedTypes.add(new MappedType(className, false, classMapping ? basePath : null,
+                            classLevelHttpMethods, mappedMethods));
+                    if (debug) {
+                        System.out.println("[API Scanner] Found " + mappedMethods.size()
+                                + " inheritable mappings in " + className);
+                    }
+                }
+                return;
+            }
 
-            return new SpringHandlerMethodVisitor(name, descriptor, className, basePath, classLevelHttpMethods);
+            if (debug) {
+                System.out.println("[API Scanner] Found " +
+                        (isRestController ? "REST " : "") + "controller: " + className);
+            }
+            unit.mappedTypes.add(new MappedType(className, true, classMapping ? basePath : null,
+                    classLevelHttpMethods, mappedMethods));
+            for (int i = 0; i < controllerAnnotations; i++) {
+                unit.addControllerHit(className);
+            }
+            for (ApiDefinition api : apis) {
+                // 添加到当前扫描单元的结果集
+                unit.addApi(api);
+            }
         }
 
         // 处理RequestMapping注解的访问器
@@ -521,7 +2231,7 @@ public class SpringApiScanner {
                     return new AnnotationVisitor(Opcodes.ASM9) {
                         @Override
                         public void visitEnum(String name, String descriptor, String value) {
-                            if (descriptor.contains("RequestMethod")) {
+                            if (AnnotationTable.REQUEST_METHOD.equals(descriptor)) {
                                 if (isClassLevel) {
                                     classLevelHttpMethods.add(value);
                                 }
@@ -531,11 +2241,52 @@ public class SpringApiScanner {
                 }
                 return null;
             }
+
+            // 组合注解的路径属性可能声明为单个字符串
+            @Override
+            public void visit(String name, Object value) {
+                if (isClassLevel && ("value".equals(name) || "path".equals(name))) {
+                    basePath = value.toString();
+                }
+            }
+        }
+    }
+
+    // 读取注解value/path属性的第一个值，用于记录元注解上声明的路径
+    private static class PathValueVisitor extends AnnotationVisitor {
+        private final Consumer<String> sink;
+
+        PathValueVisitor(Consumer<String> sink) {
+            super(Opcodes.ASM9);
+            this.sink = sink;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            if (("value".equals(name) || "path".equals(name)) && value instanceof String) {
+                sink.accept((String) value);
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            if ("value".equals(name) || "path".equals(name)) {
+                return new AnnotationVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visit(String name, Object value) {
+                        if (value instanceof String) {
+                            sink.accept((String) value);
+                        }
+                    }
+                };
+            }
+            return null;
         }
     }
 
     // 处理Spring处理器方法的访问器
     private static class SpringHandlerMethodVisitor extends MethodVisitor {
+        private final SpringControllerVisitor owner;
         private final String methodName;
         private final String descriptor;
         private final String className;
@@ -546,62 +2297,48 @@ public class SpringApiScanner {
         private final Map<String, String> methodParameters = new LinkedHashMap<>();
         private boolean hasApiAnnotation = false;
 
-        public SpringHandlerMethodVisitor(String methodName, String descriptor, String className,
-                                          String basePath, List<String> classLevelHttpMethods) {
+        public SpringHandlerMethodVisitor(SpringControllerVisitor owner, String methodName, String descriptor) {
             super(Opcodes.ASM9);
+            this.owner = owner;
             this.methodName = methodName;
             this.descriptor = descriptor;
-            this.className = className;
-            this.basePath = basePath;
-            this.classLevelHttpMethods = classLevelHttpMethods;
+            this.className = owner.className;
+            this.basePath = owner.basePath;
+            this.classLevelHttpMethods = owner.classLevelHttpMethods;
         }
 
         @Override
         public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-            // 检查HTTP方法注解
-            if (descriptor.contains("GetMapping")) {
-                hasApiAnnotation = true;
-                httpMethods.add("GET");
-                return new PathAnnotationVisitor();
-            } else if (descriptor.contains("PostMapping")) {
-                hasApiAnnotation = true;
-                httpMethods.add("POST");
-                return new PathAnnotationVisitor();
-            } else if (descriptor.contains("PutMapping")) {
-                hasApiAnnotation = true;
-                httpMethods.add("PUT");
-                return new PathAnnotationVisitor();
-            } else if (descriptor.contains("DeleteMapping")) {
-                hasApiAnnotation = true;
-                httpMethods.add("DELETE");
-                return new PathAnnotationVisitor();
-            } else if (descriptor.contains("PatchMapping")) {
-                hasApiAnnotation = true;
-                httpMethods.add("PATCH");
+            // 检查HTTP方法注解：带固定方法的映射只读取路径，@RequestMapping还要读取method属性
+            AnnotationGraph.Resolution resolution = owner.annotations.resolve(descriptor);
+            if (resolution == null) {
+                owner.unresolved(descriptor);
+                return null;
+            }
+            if (!resolution.mapping) {
+                return null;
+            }
+            hasApiAnnotation = true;
+            if (resolution.path != null) {
+                methodPath = resolution.path;
+            }
+            if (resolution.httpMethod != null) {
+                httpMethods.add(resolution.httpMethod);
                 return new PathAnnotationVisitor();
-            } else if (descriptor.contains("RequestMapping")) {
-                hasApiAnnotation = true;
-                return new MethodRequestMappingVisitor();
             }
-            return null;
+            return new MethodRequestMappingVisitor();
         }
 
         @Override
         public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
             // 检查参数注解，如@RequestParam, @PathVariable等
-            String annotationType = "";
-            if (descriptor.contains("RequestParam")) {
-                annotationType = "query";
-            } else if (descriptor.contains("PathVariable")) {
-                annotationType = "path";
-            } else if (descriptor.contains("RequestBody")) {
-                annotationType = "body";
-            } else if (descriptor.contains("RequestHeader")) {
-                annotationType = "header";
-            }
-
-            if (!annotationType.isEmpty()) {
-                final String paramType = annotationType;
+            AnnotationGraph.Resolution resolution = owner.annotations.resolve(descriptor);
+            if (resolution == null) {
+                owner.unresolved(descriptor);
+                return null;
+            }
+            if (resolution.parameterSource != null) {
+                final String paramType = resolution.parameterSource;
                 return new AnnotationVisitor(Opcodes.ASM9) {
                     @Override
                     public void visit(String name, Object value) {
@@ -626,66 +2363,13 @@ public class SpringApiScanner {
         @Override
         public void visitEnd() {
             if (hasApiAnnotation) {
-                // 如果没有明确指定HTTP方法，从类级继承或使用默认值
-                if (httpMethods.isEmpty()) {
-                    if (!classLevelHttpMethods.isEmpty()) {
-                        httpMethods.addAll(classLevelHttpMethods);
-                    } else {
-                        // 默认方法
-                        httpMethods.add("GET");
-                    }
-                }
-
-                // 构建完整路径
-                String fullPath = combinePaths(basePath, methodPath);
-
-                // 如果路径为空，基于类名和方法名构造
-                if (fullPath.isEmpty()) {
-                    String simpleClassName = className;
-                    int lastDot = simpleClassName.lastIndexOf('.');
-                    if (lastDot > 0) {
-                        simpleClassName = simpleClassName.substring(lastDot + 1);
-                    }
-
-                    // 移除Controller后缀
-                    if (simpleClassName.endsWith("Controller")) {
-                        simpleClassName = simpleClassName.substring(0, simpleClassName.length() - 10);
-                    } else if (simpleClassName.endsWith("Resource")) {
-                        simpleClassName = simpleClassName.substring(0, simpleClassName.length() - 8);
-                    } else if (simpleClassName.endsWith("Endpoint")) {
-                        simpleClassName = simpleClassName.substring(0, simpleClassName.length() - 8);
-                    }
-
-                    // 生成路径
-                    fullPath = "/" + camelToKebab(simpleClassName);
-
-                    // 对于没有index/list的方法，添加方法名
-                    if (!methodName.equals("index") && !methodName.equals("list") &&
-                            !methodName.equals("getAll") && !methodName.equals("findAll")) {
-                        fullPath += "/" + camelToKebab(methodName);
-                    }
-                }
-
-                // 创建API定义
-                ApiDefinition api = new ApiDefinition(fullPath);
-                api.methods.addAll(httpMethods);
-                api.sourceClass = className;
-                api.sourceMethod = methodName;
-
-                // 添加方法参数
-                api.parameters.putAll(methodParameters);
-
-                // 尝试从方法描述符解析额外参数
-                parseMethodParameters(descriptor, api);
-
-                // 添加到结果集
-                apiDefinitions.add(api);
-                apiCount++;
-
-                if (debug) {
-                    System.out.println("[API Scanner] Found API: " +
-                            String.join(", ", httpMethods) + " " + fullPath +
-                            " in " + className + "." + methodName);
+                owner.mappedMethods.add(new MappedType.Method(methodName, descriptor, methodPath, httpMethods,
+                        methodParameters));
+                // 接口和父类的方法只记录下来，不直接产生端点
+                if (owner.isController) {
+                    // 类分析完成后由类访问器提交
+                    owner.apis.add(createApi(className, methodName, descriptor, basePath, methodPath, httpMethods,
+                            classLevelHttpMethods, methodParameters));
                 }
             }
         }
@@ -736,7 +2420,7 @@ public class SpringApiScanner {
                     return new AnnotationVisitor(Opcodes.ASM9) {
                         @Override
                         public void visitEnum(String name, String descriptor, String value) {
-                            if (descriptor.contains("RequestMethod")) {
+                            if (AnnotationTable.REQUEST_METHOD.equals(descriptor)) {
                                 httpMethods.add(value);
                             }
                         }
@@ -754,8 +2438,74 @@ public class SpringApiScanner {
         }
     }
 
+    // 由方法上的映射与类级别映射组合出端点，控制器自己的方法和从接口或父类继承的方法共用
+    static ApiDefinition createApi(String className, String methodName, String descriptor, String basePath,
+                                   String methodPath, List<String> methodHttpMethods,
+                                   List<String> classLevelHttpMethods, Map<String, String> methodParameters) {
+        // 如果没有明确指定HTTP方法，从类级继承或使用默认值
+        List<String> httpMethods = new ArrayList<>(methodHttpMethods);
+        if (httpMethods.isEmpty()) {
+            if (!classLevelHttpMethods.isEmpty()) {
+                httpMethods.addAll(classLevelHttpMethods);
+            } else {
+                // 默认方法
+                httpMethods.add("GET");
+            }
+        }
+
+        // 构建完整路径
+        String fullPath = combinePaths(basePath, methodPath);
+
+        // 如果路径为空，基于类名和方法名构造
+        if (fullPath.isEmpty()) {
+            String simpleClassName = className;
+            int lastDot = simpleClassName.lastIndexOf('.');
+            if (lastDot > 0) {
+                simpleClassName = simpleClassName.substring(lastDot + 1);
+            }
+
+            // 移除Controller后缀
+            if (simpleClassName.endsWith("Controller")) {
+                simpleClassName = simpleClassName.substring(0, simpleClassName.length() - 10);
+            } else if (simpleClassName.endsWith("Resource")) {
+                simpleClassName = simpleClassName.substring(0, simpleClassName.length() - 8);
+            } else if (simpleClassName.endsWith("Endpoint")) {
+                simpleClassName = simpleClassName.substring(0, simpleClassName.length() - 8);
+            }
+
+            // 生成路径
+            fullPath = "/" + camelToKebab(simpleClassName);
+
+            // 对于没有index/list的方法，添加方法名
+            if (!methodName.equals("index") && !methodName.equals("list") &&
+                    !methodName.equals("getAll") && !methodName.equals("findAll")) {
+                fullPath += "/" + camelToKebab(methodName);
+            }
+        }
+
+        // 创建API定义
+        ApiDefinition api = new ApiDefinition(fullPath);
+        api.methods.addAll(httpMethods);
+        api.sourceClass = className;
+        api.sourceMethod = methodName;
+        api.descriptor = descriptor;
+
+        // 添加方法参数
+        api.parameters.putAll(methodParameters);
+
+        // 尝试从方法描述符解析额外参数
+        parseMethodParameters(descriptor, api);
+
+        if (debug) {
+            System.out.println("[API Scanner] Found API: " +
+                    String.join(", ", httpMethods) + " " + fullPath +
+                    " in " + className + "." + methodName);
+        }
+        return api;
+    }
+
     // 从方法描述符解析参数
-    private static void parseMethodParameters(String descriptor, ApiDefinition api) {
+    static void parseMethodParameters(String descriptor, ApiDefinition api) {
         // 描述符格式: (参数类型)返回类型
         // 例如: (Ljava/lang/String;I)V
 
@@ -821,7 +2571,7 @@ public class SpringApiScanner {
     }
 
     // 组合两个路径
-    private static String combinePaths(String base, String path) {
+    static String combinePaths(String base, String path) {
         if (base == null || base.isEmpty()) {
             return path == null ? "" : path;
         }
@@ -873,21 +2623,21 @@ public class SpringApiScanner {
         userList.parameters.put("sort", "string");
         userList.sourceClass = "com.example.UserController";
         userList.sourceMethod = "getUsers";
-        apiDefinitions.add(userList);
+        endpoints.add(userList, true);
 
         ApiDefinition userCreate = new ApiDefinition("/api/users");
         userCreate.methods.add("POST");
         userCreate.parameters.put("user", "RequestBody");
         userCreate.sourceClass = "com.example.UserController";
         userCreate.sourceMethod = "createUser";
-        apiDefinitions.add(userCreate);
+        endpoints.add(userCreate, true);
 
         ApiDefinition userGet = new ApiDefinition("/api/users/{id}");
         userGet.methods.add("GET");
         userGet.parameters.put("id", "path");
         userGet.sourceClass = "com.example.UserController";
         userGet.sourceMethod = "getUser";
-        apiDefinitions.add(userGet);
+        endpoints.add(userGet, true);
 
         ApiDefinition userUpdate = new ApiDefinition("/api/users/{id}");
         userUpdate.methods.add("PUT");
@@ -895,14 +2645,14 @@ public class SpringApiScanner {
         userUpdate.parameters.put("user", "RequestBody");
         userUpdate.sourceClass = "com.example.UserController";
         userUpdate.sourceMethod = "updateUser";
-        apiDefinitions.add(userUpdate);
+        endpoints.add(userUpdate, true);
 
         ApiDefinition userDelete = new ApiDefinition("/api/users/{id}");
         userDelete.methods.add("DELETE");
         userDelete.parameters.put("id", "path");
         userDelete.sourceClass = "com.example.UserController";
         userDelete.sourceMethod = "deleteUser";
-        apiDefinitions.add(userDelete);
+        endpoints.add(userDelete, true);
 
         // 产品API
         ApiDefinition productList = new ApiDefinition("/api/products");
@@ -911,7 +2661,7 @@ public class SpringApiScanner {
         productList.parameters.put("page", "int");
         productList.sourceClass = "com.example.ProductController";
         productList.sourceMethod = "getProducts";
-        apiDefinitions.add(productList);
+        endpoints.add(productList, true);
 
         // 登录API
         ApiDefinition login = new ApiDefinition("/api/auth/login");
@@ -920,56 +2670,34 @@ public class SpringApiScanner {
         login.parameters.put("password", "string");
         login.sourceClass = "com.example.AuthController";
         login.sourceMethod = "login";
-        apiDefinitions.add(login);
+        endpoints.add(login, true);
     }
 
     private static void saveResults(String outputFile) {
+        synchronized (catalogLock) {
+            writeResults(outputFile);
+        }
+    }
+
+    private static void writeResults(String outputFile) {
         try {
-            System.out.println("[API Scanner] Saving " + apiDefinitions.size() + " API endpoints to " + outputFile);
+            List<ApiDefinition> apis = endpoints.endpoints();
+            System.out.println("[API Scanner] Saving " + apis.size() + " API endpoints to " + outputFile);
 
             File file = new File(outputFile);
-            try (FileWriter writer = new FileWriter(file)) {
-                writer.write("{\n");
-                writer.write("  \"timestamp\": \"" + new Date() + "\",\n");
-                writer.write("  \"scannedJars\": " + scannedJarCount + ",\n");
-                writer.write("  \"controllers\": " + controllerCount + ",\n");
-                writer.write("  \"apiCount\": " + apiDefinitions.size() + ",\n");
-                writer.write("  \"apis\": [\n");
-
-                for (int i = 0; i < apiDefinitions.size(); i++) {
-                    ApiDefinition api = apiDefinitions.get(i);
-
-                    writer.write("    {\n");
-                    writer.write("      \"path\": \"" + api.path + "\",\n");
-                    writer.write("      \"methods\": [");
-
-                    // 写入HTTP方法
-                    for (int j = 0; j < api.methods.size(); j++) {
-                        writer.write("\"" + api.methods.get(j) + "\"");
-                        if (j < api.methods.size() - 1) writer.write(", ");
-                    }
-                    writer.write("],\n");
-
-                    // 写入参数
-                    writer.write("      \"parameters\": {\n");
-                    int paramCount = 0;
-                    for (Map.Entry<String, String> entry : api.parameters.entrySet()) {
-                        writer.write("        \"" + entry.getKey() + "\": \"" + entry.getValue() + "\"");
-                        if (paramCount++ < api.parameters.size() - 1) writer.write(",");
-                        writer.write("\n");
-                    }
-                    writer.write("      },\n");
-
-                    // 写入源信息
-                    writer.write("      \"source\": {\n");
-                    writer.write("        \"class\": \"" + api.sourceClass + "\",\n");
-                    writer.write("        \"method\": \"" + api.sourceMethod + "\"\n");
-                    writer.write("      }\n");
-
-                    writer.write("    }" + (i < apiDefinitions.size() - 1 ? "," : "") + "\n");
+            long wallStart = System.nanoTime();
+            long cpuStart = CpuMeter.currentThreadCpuTime();
+            try (ResultWriter writer = ResultWriter.open(file, outputFormat, gzipOutput)) {
+                writer.writeHeader(new Date().toString(), scannedJarCount, controllerCount, apis.size());
+                for (ApiDefinition api : apis) {
+                    writer.writeApi(api);
+                }
+                // 统计写在端点之后，其中的输出耗时不含统计本身和文件关闭
+                recordOutput(wallStart, cpuStart);
+                ScanStats stats = lastStats;
+                if (stats != null) {
+                    writer.writeStats(stats);
                 }
-
-                writer.write("  ]\n}\n");
             }
 
             System.out.println("[API Scanner] Results successfully saved to: " + file.getAbsolutePath());
@@ -1,18 +1,36 @@
 package com.apiextractor.attacher;
 
+import com.apiextractor.agent.CatalogDiff;
+import com.apiextractor.agent.SpringApiScanner;
 import com.apiextractor.collector.ApiCollector;
 import com.sun.tools.attach.VirtualMachine;
 import com.sun.tools.attach.VirtualMachineDescriptor;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 public class AgentAttacher {
     public static void main(String[] args) {
+        if (args.length > 0 && "diff".equals(args[0])) {
+            System.exit(diff(args));
+        }
+        if (args.length > 0 && "scan".equals(args[0])) {
+            System.exit(scan(args));
+        }
+        if (args.length > 0 && "fleet".equals(args[0])) {
+            System.exit(FleetAttacher.run(args));
+        }
         try {
             if (args.length < 1) {
                 // 显示可用 Java 进程列表
-                System.out.println("Usage: java -jar api-extractor-attacher.jar <pid> [output=file.json] [timestamp=true|false] [mode=all|static|dynamic]");
+                System.out.println("Usage: java -jar api-extractor-attacher.jar <pid> [output=file.json] [timestamp=true|false] [mode=loaded|disk|all]");
+                System.out.println("       java -jar api-extractor-attacher.jar scan <jar|war|dir>... [output=file|dir] [merge=true] [format=...]");
+                System.out.println("       java -jar api-extractor-attacher.jar fleet <pattern|all> [threads=4] [timeout=60000] [output=file.json]");
+                System.out.println("       java -jar api-extractor-attacher.jar diff <old> <new> [output=diff.ndjson]");
                 System.out.println("\nAvailable Java processes:");
                 List<VirtualMachineDescriptor> vms = VirtualMachine.list();
 
@@ -33,13 +51,7 @@ public class AgentAttacher {
                 agentArgs.append(args[i]);
             }
 
-            // 获取Agent JAR路径
-            String agentPath = new File(AgentAttacher.class.getProtectionDomain()
-                    .getCodeSource().getLocation().getPath()).getAbsolutePath();
-
-            if (agentPath.endsWith("classes")) {
-                agentPath = new File("target/spring-api-extractor-agent-1.0.0.jar").getAbsolutePath();
-            }
+            String agentPath = agentPath();
 
             System.out.println("Attaching to JVM with PID: " + pid);
             System.out.println("Agent path: " + agentPath);
@@ -62,4 +74,70 @@ public class AgentAttacher {
             e.printStackTrace();
         }
     }
+
+    // 获取Agent JAR路径
+    static String agentPath() {
+        String agentPath = new File(AgentAttacher.class.getProtectionDomain()
+                .getCodeSource().getLocation().getPath()).getAbsolutePath();
+
+        if (agentPath.endsWith("classes")) {
+            agentPath = new File("target/spring-api-extractor-agent-1.0.0.jar").getAbsolutePath();
+        }
+        return agentPath;
+    }
+
+    // 离线扫描JAR、WAR或类目录，不需要目标JVM；带=的参数与agent参数相同，其余参数是要扫描的制品
+    // 退出码：0表示全部制品都已扫描，1表示有制品不存在或无法读取，2表示用法错误
+    private static int scan(String[] args) {
+        List<File> artifacts = new ArrayList<>();
+        StringBuilder scanArgs = new StringBuilder();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].contains("=")) {
+                if (scanArgs.length() > 0) scanArgs.append(",");
+                scanArgs.append(args[i]);
+            } else {
+                artifacts.add(new File(args[i]));
+            }
+        }
+        if (artifacts.isEmpty()) {
+            System.err.println("Usage: java -jar api-extractor-attacher.jar scan <jar|war|dir>... [output=file|dir] [merge=true] [format=...]");
+            return 2;
+        }
+        return SpringApiScanner.scanArtifacts(artifacts, scanArgs.toString()) > 0 ? 1 : 0;
+    }
+
+    // 比较两份扫描结果，差异以NDJSON写到output或标准输出，汇总写到标准错误
+    // 退出码与diff一致：0表示没有差异，1表示有差异，2表示出错
+    private static int diff(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: java -jar api-extractor-attacher.jar diff <old> <new> [output=diff.ndjson]");
+            return 2;
+        }
+        String output = null;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].startsWith("output=")) {
+                output = args[i].substring("output=".length());
+            }
+        }
+        OutputStream out = null;
+        try {
+            out = output == null ? System.out : new BufferedOutputStream(new FileOutputStream(output), 64 * 1024);
+            long start = System.nanoTime();
+            CatalogDiff.Summary summary = CatalogDiff.diff(new File(args[1]), new File(args[2]), out);
+            out.flush();
+            System.err.println("[API Scanner] Diff: " + summary + " ("
+                    + (System.nanoTime() - start) / 1_000_000 + " ms)");
+            return summary.hasChanges() ? 1 : 0;
+        } catch (Exception e) {
+            System.err.println("[API Scanner] Failed to diff catalogs: " + e.getMessage());
+            return 2;
+        } finally {
+            if (out != null && out != System.out) {
+                try {
+                    out.close();
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
 }
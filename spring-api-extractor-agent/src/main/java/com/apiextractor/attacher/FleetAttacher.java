@@ -0,0 +1,320 @@
+package com.apiextractor.attacher;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.tools.attach.VirtualMachine;
+import com.sun.tools.attach.VirtualMachineDescriptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+// 一次为本机上的多个JVM生成API目录：从VirtualMachine.list()按显示名称选出目标，有限个线程并发附加，
+// 每个目标把结果写到临时目录中以PID命名的文件，全部完成后汇总成一份按PID索引的结果
+// 附加本身可能在无响应的JVM上一直阻塞且无法中断，所以每次附加在单独的守护线程上进行，
+// 协调线程最多等待timeout后放弃该目标，卡住的附加不会占用并发名额，也不会阻止其余目标
+final class FleetAttacher {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String DEFAULT_OUTPUT_FILE = "fleet_api_information.json";
+    // 这些参数由汇总流程决定，用户传入的同名参数被忽略
+    private static final String[] RESERVED_ARGS = {"output=", "format=", "gzip=", "async=", "oneshot="};
+
+    // 一个目标的附加结果
+    private static final class Target {
+        final String pid;
+        final String displayName;
+        final String mainClass;
+        final File output;
+        String status = "pending";
+        String error;
+        long millis;
+
+        Target(VirtualMachineDescriptor descriptor, File directory) {
+            this.pid = descriptor.id();
+            this.displayName = descriptor.displayName();
+            String name = displayName.trim();
+            int space = name.indexOf(' ');
+            this.mainClass = name.isEmpty() ? "unknown" : space < 0 ? name : name.substring(0, space);
+            this.output = new File(directory, pid + ".json");
+        }
+    }
+
+    private FleetAttacher() {
+    }
+
+    // fleet <pattern|all> [threads=4] [timeout=60000] [output=file] [agent参数...]
+    // 退出码：0表示所有目标都已生成结果，1表示有目标失败、超时或没有匹配的目标，2表示用法错误
+    static int run(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java -jar api-extractor-attacher.jar fleet <pattern|all> [threads=4] [timeout=60000] [output=" + DEFAULT_OUTPUT_FILE + "] [agent args...]");
+            return 2;
+        }
+        Pattern pattern;
+        try {
+            pattern = "all".equals(args[1]) ? null : Pattern.compile(args[1]);
+        } catch (PatternSyntaxException e) {
+            System.err.println("[API Scanner] Invalid target pattern: " + e.getMessage());
+            return 2;
+        }
+        int threads = 4;
+        long timeoutMillis = 60000;
+        String output = DEFAULT_OUTPUT_FILE;
+        StringBuilder agentArgs = new StringBuilder();
+        for (int i = 2; i < args.length; i++) {
+            String arg = args[i];
+            try {
+                if (arg.startsWith("threads=")) {
+                    threads = Math.max(1, Integer.parseInt(arg.substring("threads=".length()).trim()));
+                    continue;
+                } else if (arg.startsWith("timeout=")) {
+                    timeoutMillis = Math.max(1, Long.parseLong(arg.substring("timeout=".length()).trim()));
+                    continue;
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("[API Scanner] Invalid argument: " + arg);
+                return 2;
+            }
+            if (arg.startsWith("output=")) {
+                output = arg.substring("output=".length());
+            } else if (!isReserved(arg)) {
+                agentArgs.append(arg).append(',');
+            }
+        }
+
+        List<VirtualMachineDescriptor> descriptors = selectTargets(pattern);
+        if (descriptors.isEmpty()) {
+            System.err.println("[API Scanner] No Java processes match " + (pattern == null ? "all" : "'" + pattern + "'"));
+            return 1;
+        }
+
+        File directory;
+        try {
+            directory = Files.createTempDirectory("api-fleet").toFile();
+        } catch (IOException e) {
+            System.err.println("[API Scanner] Could not create temporary directory: " + e.getMessage());
+            return 1;
+        }
+        String agentPath = AgentAttacher.agentPath();
+        List<Target> targets = new ArrayList<>();
+        for (VirtualMachineDescriptor descriptor : descriptors) {
+            targets.add(new Target(descriptor, directory));
+        }
+        System.out.println("[API Scanner] Attaching to " + targets.size() + " JVMs with " + threads
+                + " threads, timeout " + timeoutMillis + " ms");
+
+        long startTime = System.nanoTime();
+        attachAll(targets, descriptors, agentPath, agentArgs.toString(), threads, timeoutMillis);
+        int succeeded = 0;
+        for (Target target : targets) {
+            if ("ok".equals(target.status)) {
+                succeeded++;
+            }
+        }
+
+        try {
+            writeCatalog(new File(output), targets, succeeded);
+            System.out.println("[API Scanner] Fleet catalog of " + succeeded + " of " + targets.size()
+                    + " JVMs saved to " + new File(output).getAbsolutePath() + " in "
+                    + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+        } catch (IOException e) {
+            System.err.println("[API Scanner] Error saving fleet catalog: " + e.getMessage());
+            return 1;
+        } finally {
+            for (Target target : targets) {
+                target.output.delete();
+            }
+            directory.delete();
+        }
+        return succeeded == targets.size() ? 0 : 1;
+    }
+
+    private static boolean isReserved(String arg) {
+        for (String reserved : RESERVED_ARGS) {
+            if (arg.startsWith(reserved)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 按显示名称（主类或JAR加参数）匹配，排除当前进程
+    private static List<VirtualMachineDescriptor> selectTargets(Pattern pattern) {
+        String self = ManagementFactory.getRuntimeMXBean().getName();
+        self = self.substring(0, Math.max(0, self.indexOf('@')));
+        List<VirtualMachineDescriptor> selected = new ArrayList<>();
+        for (VirtualMachineDescriptor descriptor : VirtualMachine.list()) {
+            if (descriptor.id().equals(self)) {
+                continue;
+            }
+            if (pattern == null || pattern.matcher(descriptor.displayName()).find()) {
+                selected.add(descriptor);
+            }
+        }
+        return selected;
+    }
+
+    private static void attachAll(List<Target> targets, List<VirtualMachineDescriptor> descriptors,
+                                  String agentPath, String agentArgs, int threads, long timeoutMillis) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, targets.size()), runnable -> {
+            Thread thread = new Thread(runnable, "api-fleet");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < targets.size(); i++) {
+                Target target = targets.get(i);
+                VirtualMachineDescriptor descriptor = descriptors.get(i);
+                futures.add(pool.submit(() -> attachWithTimeout(target, descriptor, agentPath, agentArgs, timeoutMillis)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("[API Scanner] Fleet attach failed: " + e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // 超时只从附加开始计算，排队等待并发名额的时间不计入
+    private static void attachWithTimeout(Target target, VirtualMachineDescriptor descriptor, String agentPath,
+                                          String agentArgs, long timeoutMillis) {
+        // 附加时同步扫描，loadAgent返回时结果文件已经写出；结果文件随后被删除，目标JVM中不留下测试文件和关闭钩子
+        String args = agentArgs + "output=" + target.output.getAbsolutePath() + ",format=compact,async=false,oneshot=true";
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            VirtualMachine vm = VirtualMachine.attach(descriptor);
+            try {
+                vm.loadAgent(agentPath, args);
+            } finally {
+                vm.detach();
+            }
+            return null;
+        });
+        Thread thread = new Thread(task, "api-fleet-attach-" + target.pid);
+        thread.setDaemon(true);
+        long startTime = System.nanoTime();
+        thread.start();
+        try {
+            task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (target.output.isFile()) {
+                target.status = "ok";
+            } else {
+                target.status = "failed";
+                target.error = "Agent wrote no results";
+            }
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            target.status = "timeout";
+            target.error = "No response within " + timeoutMillis + " ms";
+        } catch (ExecutionException e) {
+            target.status = "failed";
+            target.error = String.valueOf(e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            target.status = "failed";
+            target.error = "Interrupted";
+        }
+        target.millis = (System.nanoTime() - startTime) / 1_000_000;
+        if ("ok".equals(target.status)) {
+            System.out.println("[API Scanner] " + target.pid + " (" + target.mainClass + "): attached in "
+                    + target.millis + " ms");
+        } else {
+            System.err.println("[API Scanner] " + target.pid + " (" + target.mainClass + "): " + target.status
+                    + ", " + target.error);
+        }
+    }
+
+    // 汇总结果：targets按PID索引，每个目标带主类、状态和该JVM的完整端点列表；端点逐个从目标的结果文件复制，不整体读入内存
+    private static void writeCatalog(File file, List<Target> targets, int succeeded) throws IOException {
+        long apiCount = 0;
+        for (Target target : targets) {
+            if ("ok".equals(target.status)) {
+                apiCount += headerApiCount(target.output);
+            }
+        }
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(file, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeStringField("timestamp", new Date().toString());
+            generator.writeNumberField("targetCount", targets.size());
+            generator.writeNumberField("succeeded", succeeded);
+            generator.writeNumberField("apiCount", apiCount);
+            generator.writeObjectFieldStart("targets");
+            for (Target target : targets) {
+                generator.writeObjectFieldStart(target.pid);
+                generator.writeStringField("mainClass", target.mainClass);
+                generator.writeStringField("displayName", target.displayName);
+                generator.writeStringField("status", target.status);
+                generator.writeNumberField("attachMillis", target.millis);
+                if (target.error != null) {
+                    generator.writeStringField("error", target.error);
+                }
+                if ("ok".equals(target.status)) {
+                    copyCatalog(target.output, generator);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+    }
+
+    // 目标结果文件头部的apiCount，读到apis之前就停止
+    private static long headerApiCount(File file) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return 0;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("apiCount".equals(field)) {
+                    return parser.getLongValue();
+                }
+                if ("apis".equals(field)) {
+                    return 0;
+                }
+                parser.skipChildren();
+            }
+        }
+        return 0;
+    }
+
+    // 复制目标结果中除扫描统计以外的字段
+    private static void copyCatalog(File file, JsonGenerator generator) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("stats".equals(field)) {
+                    parser.skipChildren();
+                } else {
+                    generator.writeFieldName(field);
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.benchmark.fixtures.Order;
+import com.apiextractor.benchmark.fixtures.OrderController;
+import com.apiextractor.benchmark.fixtures.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// 单个类的分析：控制器走完整的ASM解析，非控制器应当在常量池预过滤阶段被拒绝
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyzeClassBytesBenchmark {
+    private byte[] controller;
+    private byte[] service;
+    private byte[] model;
+    private ScanUnit unit;
+
+    @Setup
+    public void setup() throws IOException {
+        controller = Fixtures.classBytes(OrderController.class);
+        service = Fixtures.classBytes(OrderService.class);
+        model = Fixtures.classBytes(Order.class);
+        unit = new ScanContext().addUnit(ScanUnit.Kind.DIRECTORY, new File("."));
+    }
+
+    @Benchmark
+    public int controller() {
+        SpringApiScanner.analyzeClassBytes(unit, Fixtures.CONTROLLER_CLASS, controller, controller.length, -1);
+        return drain();
+    }
+
+    @Benchmark
+    public int nonControllerService() {
+        SpringApiScanner.analyzeClassBytes(unit, Fixtures.SERVICE_CLASS, service, service.length, -1);
+        return drain();
+    }
+
+    @Benchmark
+    public int nonControllerModel() {
+        SpringApiScanner.analyzeClassBytes(unit, Fixtures.MODEL_CLASS, model, model.length, -1);
+        return drain();
+    }
+
+    @Benchmark
+    public boolean prefilterOnly() {
+        return ConstantPoolPrefilter.mayBeController(service, 0, service.length,
+                AnnotationTable.defaults().controllerDescriptors());
+    }
+
+    // 清空单元的局部结果，避免结果随迭代次数累积
+    private int drain() {
+        int found = unit.apis.size();
+        unit.apis.clear();
+        unit.controllerHits.clear();
+        return found;
+    }
+}
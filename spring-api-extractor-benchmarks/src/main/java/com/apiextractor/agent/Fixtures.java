@@ -0,0 +1,94 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+import com.apiextractor.benchmark.fixtures.Order;
+import com.apiextractor.benchmark.fixtures.OrderController;
+import com.apiextractor.benchmark.fixtures.OrderService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// 基准测试使用的夹具：检入的夹具类的字节码，以及由它们生成的Spring Boot JAR和端点列表
+final class Fixtures {
+    static final String CONTROLLER_CLASS = OrderController.class.getName();
+    static final String SERVICE_CLASS = OrderService.class.getName();
+    static final String MODEL_CLASS = Order.class.getName();
+
+    private Fixtures() {
+    }
+
+    static byte[] classBytes(Class<?> type) throws IOException {
+        String resource = "/" + type.getName().replace('.', '/') + ".class";
+        try (InputStream in = type.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Missing fixture class: " + resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // 生成一个只含BOOT-INF/lib/fixtures.jar的Spring Boot JAR，嵌套JAR中有classCount个类，每10个类中有1个控制器
+    // storedNested为false时嵌套JAR以DEFLATED方式存放，扫描器只能退回流式读取
+    static File bootJar(int classCount, boolean storedNested) throws IOException {
+        byte[] controller = classBytes(OrderController.class);
+        byte[] service = classBytes(OrderService.class);
+        byte[] model = classBytes(Order.class);
+
+        ByteArrayOutputStream nested = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(nested)) {
+            zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zip.write("Manifest-Version: 1.0\n\n".getBytes("UTF-8"));
+            for (int i = 0; i < classCount; i++) {
+                byte[] bytes = i % 10 == 0 ? controller : i % 2 == 0 ? service : model;
+                zip.putNextEntry(new ZipEntry("com/apiextractor/benchmark/generated/Fixture" + i + ".class"));
+                zip.write(bytes);
+            }
+        }
+        byte[] nestedBytes = nested.toByteArray();
+
+        File file = File.createTempFile("api-scanner-bench", ".jar");
+        file.deleteOnExit();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            ZipEntry entry = new ZipEntry("BOOT-INF/lib/fixtures.jar");
+            if (storedNested) {
+                CRC32 crc = new CRC32();
+                crc.update(nestedBytes);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(nestedBytes.length);
+                entry.setCompressedSize(nestedBytes.length);
+                entry.setCrc(crc.getValue());
+            }
+            zip.putNextEntry(entry);
+            zip.write(nestedBytes);
+        }
+        return file;
+    }
+
+    static List<ApiDefinition> apis(int count) {
+        List<ApiDefinition> apis = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ApiDefinition api = new ApiDefinition("/api/resource" + (i / 8) + "/{id}/items\"" + i);
+            api.methods.add(i % 2 == 0 ? "GET" : "POST");
+            api.parameters.put("id", "path");
+            api.parameters.put("filter", "query");
+            api.sourceClass = "com.example.generated.Resource" + (i / 8) + "Controller";
+            api.sourceMethod = "handle" + i;
+            apis.add(api);
+        }
+        return apis;
+    }
+}
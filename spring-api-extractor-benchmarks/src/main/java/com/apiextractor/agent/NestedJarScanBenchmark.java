@@ -0,0 +1,85 @@
+package com.apiextractor.agent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+
+// 扫描一个BOOT-INF/lib嵌套JAR：内存映射随机访问与JarInputStream流式读取的对比，以及只遍历中央目录的开销
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NestedJarScanBenchmark {
+    private static final String NESTED_JAR = "BOOT-INF/lib/fixtures.jar";
+
+    @Param({"100", "1000"})
+    public int classCount;
+
+    private File bootJar;
+    private JarFile jar;
+    private NestedJarReader reader;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        bootJar = Fixtures.bootJar(classCount, true);
+        jar = new JarFile(bootJar);
+        reader = NestedJarReader.open(bootJar);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        jar.close();
+        bootJar.delete();
+    }
+
+    @Benchmark
+    public int iterateEntries() throws IOException {
+        int classes = 0;
+        try (NestedJarReader.NestedJar nestedJar = reader.openNestedJar(NESTED_JAR)) {
+            while (nestedJar.next()) {
+                if (nestedJar.name().endsWith(".class")) {
+                    classes++;
+                }
+            }
+        }
+        return classes;
+    }
+
+    @Benchmark
+    public int scanMapped() throws IOException {
+        ScanContext context = new ScanContext();
+        try {
+            ScanUnit unit = context.addUnit(ScanUnit.Kind.NESTED_JAR, bootJar, jar, jar.getJarEntry(NESTED_JAR));
+            SpringApiScanner.scanMappedNestedJar(unit);
+            return unit.apis.size();
+        } finally {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public int scanStreamed() throws IOException {
+        ScanContext context = new ScanContext();
+        ScanUnit unit = context.addUnit(ScanUnit.Kind.NESTED_JAR, bootJar, jar, jar.getJarEntry(NESTED_JAR));
+        SpringApiScanner.scanNestedJarStream(unit);
+        return unit.apis.size();
+    }
+}
@@ -0,0 +1,54 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// 每个处理方法都会调用的解析辅助方法
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+    private static final String SIMPLE_DESCRIPTOR = "(J)Lcom/example/Order;";
+    private static final String WIDE_DESCRIPTOR =
+            "(Ljava/lang/String;IJ[Ljava/lang/String;Lcom/example/OrderRequest;ZDLjava/util/Map;)Ljava/util/List;";
+
+    private final String basePath = "/api/orders/";
+    private final String methodPath = "/{id}/items";
+
+    @Benchmark
+    public ApiDefinition parseSimpleDescriptor() {
+        ApiDefinition api = new ApiDefinition("/api/orders/{id}");
+        SpringApiScanner.parseMethodParameters(SIMPLE_DESCRIPTOR, api);
+        return api;
+    }
+
+    @Benchmark
+    public ApiDefinition parseWideDescriptor() {
+        ApiDefinition api = new ApiDefinition("/api/orders");
+        SpringApiScanner.parseMethodParameters(WIDE_DESCRIPTOR, api);
+        return api;
+    }
+
+    @Benchmark
+    public String combinePaths() {
+        return SpringApiScanner.combinePaths(basePath, methodPath);
+    }
+
+    @Benchmark
+    public String combineEmptyBase() {
+        return SpringApiScanner.combinePaths("", methodPath);
+    }
+}
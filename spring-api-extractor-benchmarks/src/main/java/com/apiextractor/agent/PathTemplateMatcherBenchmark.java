@@ -0,0 +1,63 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 访问日志关联：把具体路径匹配到端点模板，单条匹配与批量匹配的吞吐量
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathTemplateMatcherBenchmark {
+    private static final int BATCH = 1024;
+
+    @Param({"10000"})
+    public int endpoints;
+
+    private PathTemplateMatcher matcher;
+    private final CharSequence[] urls = new CharSequence[BATCH];
+    private final CharSequence[] methods = new CharSequence[BATCH];
+    private final int[] results = new int[BATCH];
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<ApiDefinition> apis = Fixtures.apis(endpoints);
+        matcher = new PathTemplateMatcher(apis);
+        // 每8条中有1条找不到端点，模拟日志中的静态资源和探测请求
+        for (int i = 0; i < BATCH; i++) {
+            ApiDefinition api = apis.get((i * 7919) % apis.size());
+            urls[i] = i % 8 == 7 ? "/static/js/app." + i + ".js"
+                    : api.path.replace("{id}", Integer.toString(i * 31)) + "?page=" + i;
+            methods[i] = api.methods.get(0);
+        }
+    }
+
+    @Benchmark
+    public int match() {
+        int i = next++ & (BATCH - 1);
+        return matcher.match(urls[i], methods[i]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int matchAll() {
+        return matcher.matchAll(urls, methods, BATCH, results);
+    }
+}
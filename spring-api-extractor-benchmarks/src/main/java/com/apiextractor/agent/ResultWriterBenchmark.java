@@ -0,0 +1,65 @@
+package com.apiextractor.agent;
+
+import com.apiextractor.agent.SpringApiScanner.ApiDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 结果输出阶段，即saveResults写文件的部分：各输出格式写出一组端点的耗时和分配
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultWriterBenchmark {
+    @Param({"json", "compact", "ndjson", "bin"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    @Param({"10000"})
+    public int endpoints;
+
+    private ResultWriter.Format outputFormat;
+    private List<ApiDefinition> apis;
+    private File output;
+
+    @Setup
+    public void setup() throws IOException {
+        outputFormat = ResultWriter.Format.parse(format);
+        apis = Fixtures.apis(endpoints);
+        output = File.createTempFile("api-scanner-bench", ".json");
+    }
+
+    @TearDown
+    public void tearDown() {
+        output.delete();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        try (ResultWriter writer = ResultWriter.open(output, outputFormat, gzip)) {
+            writer.writeHeader("2025-01-01T00:00:00Z", 1, endpoints / 8, apis.size());
+            for (ApiDefinition api : apis) {
+                writer.writeApi(api);
+            }
+        }
+        return output.length();
+    }
+}
@@ -0,0 +1,32 @@
+package com.apiextractor.benchmark.fixtures;
+
+// 基准测试夹具：简单的数据类
+public class Order {
+    private long id;
+    private String status;
+    private double amount;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(double amount) {
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,53 @@
+package com.apiextractor.benchmark.fixtures;
+
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.List;
+
+// 基准测试夹具：典型的REST控制器，覆盖类级路径、多种HTTP方法和参数注解
+@RestController
+@RequestMapping("/api/orders")
+public class OrderController {
+    private final OrderService service = new OrderService();
+
+    @GetMapping
+    public List<Order> list(@RequestParam("page") int page, @RequestParam("size") int size,
+                            @RequestParam("status") String status) {
+        return service.find(status, page, size);
+    }
+
+    @GetMapping("/{id}")
+    public Order get(@PathVariable("id") long id) {
+        return service.get(id);
+    }
+
+    @PostMapping
+    public Order create(@RequestBody Order order) {
+        return service.save(order);
+    }
+
+    @PutMapping("/{id}")
+    public Order update(@PathVariable("id") long id, @RequestBody Order order) {
+        order.setId(id);
+        return service.save(order);
+    }
+
+    @DeleteMapping("/{id}")
+    public void delete(@PathVariable("id") long id) {
+        service.delete(id);
+    }
+
+    @GetMapping("/{id}/items")
+    public List<String> items(@PathVariable("id") long id, @RequestParam("expand") boolean expand) {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,50 @@
+package com.apiextractor.benchmark.fixtures;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 基准测试夹具：不是控制器的普通类，代表依赖JAR中占绝大多数的类
+public class OrderService {
+    private final Map<Long, Order> orders = new LinkedHashMap<>();
+    private long nextId = 1;
+
+    public List<Order> find(String status, int page, int size) {
+        List<Order> result = new ArrayList<>();
+        int skipped = 0;
+        for (Order order : orders.values()) {
+            if (status != null && !status.equals(order.getStatus())) {
+                continue;
+            }
+            if (skipped++ < page * size) {
+                continue;
+            }
+            result.add(order);
+            if (result.size() == size) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    public Order get(long id) {
+        Order order = orders.get(id);
+        if (order == null) {
+            throw new IllegalArgumentException("Unknown order " + id);
+        }
+        return order;
+    }
+
+    public Order save(Order order) {
+        if (order.getId() == 0) {
+            order.setId(nextId++);
+        }
+        orders.put(order.getId(), order);
+        return order;
+    }
+
+    public void delete(long id) {
+        orders.remove(id);
+    }
+}
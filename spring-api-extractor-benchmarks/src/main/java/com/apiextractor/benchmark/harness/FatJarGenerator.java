@@ -0,0 +1,209 @@
+package com.apiextractor.benchmark.harness;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// 用ASM生成Spring Boot布局的fat jar：BOOT-INF/classes中是应用自己的控制器，BOOT-INF/lib中是若干以STORED方式存放的依赖JAR
+// 每个依赖JAR含有classesPerJar个类，其中controllersPerJar个是带mappingsPerController个处理方法的REST控制器
+public final class FatJarGenerator {
+    private static final String REST_CONTROLLER = "Lorg/springframework/web/bind/annotation/RestController;";
+    private static final String REQUEST_MAPPING = "Lorg/springframework/web/bind/annotation/RequestMapping;";
+    private static final String GET_MAPPING = "Lorg/springframework/web/bind/annotation/GetMapping;";
+    private static final String POST_MAPPING = "Lorg/springframework/web/bind/annotation/PostMapping;";
+    private static final String PATH_VARIABLE = "Lorg/springframework/web/bind/annotation/PathVariable;";
+    private static final String REQUEST_BODY = "Lorg/springframework/web/bind/annotation/RequestBody;";
+    private static final Class<?> MAIN_CLASS = ScanProbe.class;
+
+    public static final class Layout {
+        final int libJars;
+        final int classesPerJar;
+        final int controllersPerJar;
+        final int mappingsPerController;
+
+        public Layout(int libJars, int classesPerJar, int controllersPerJar, int mappingsPerController) {
+            this.libJars = libJars;
+            this.classesPerJar = classesPerJar;
+            this.controllersPerJar = Math.min(controllersPerJar, classesPerJar);
+            this.mappingsPerController = mappingsPerController;
+        }
+
+        // 应用自身的BOOT-INF/classes与一个依赖JAR规模相同
+        long totalClasses() {
+            return (long) (libJars + 1) * classesPerJar;
+        }
+
+        long expectedApis() {
+            return (long) (libJars + 1) * controllersPerJar * mappingsPerController;
+        }
+
+        @Override
+        public String toString() {
+            return libJars + " libs x " + classesPerJar + " classes, " + controllersPerJar + " controllers x "
+                    + mappingsPerController + " mappings";
+        }
+    }
+
+    private FatJarGenerator() {
+    }
+
+    public static void generate(File target, Layout layout) throws IOException {
+        try (ZipOutputStream jar = new ZipOutputStream(new FileOutputStream(target))) {
+            jar.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            jar.write(("Manifest-Version: 1.0\nMain-Class: " + MAIN_CLASS.getName() + "\n\n").getBytes("UTF-8"));
+            String mainEntry = MAIN_CLASS.getName().replace('.', '/') + ".class";
+            jar.putNextEntry(new ZipEntry(mainEntry));
+            copyResource(mainEntry, jar);
+
+            jar.putNextEntry(new ZipEntry("BOOT-INF/"));
+            jar.putNextEntry(new ZipEntry("BOOT-INF/classes/"));
+            writeModule(jar, "BOOT-INF/classes/", "app", layout);
+
+            jar.putNextEntry(new ZipEntry("BOOT-INF/lib/"));
+            for (int i = 0; i < layout.libJars; i++) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                try (ZipOutputStream lib = new ZipOutputStream(buffer)) {
+                    lib.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+                    lib.write("Manifest-Version: 1.0\n\n".getBytes("UTF-8"));
+                    writeModule(lib, "", "lib" + i, layout);
+                }
+                putStored(jar, "BOOT-INF/lib/service-lib-" + i + ".jar", buffer.toByteArray());
+            }
+        }
+    }
+
+    private static void writeModule(ZipOutputStream zip, String prefix, String module, Layout layout)
+            throws IOException {
+        String pkg = "com/generated/" + module + "/";
+        for (int i = 0; i < layout.classesPerJar; i++) {
+            // 每100个类一个子包，接近真实JAR的目录结构
+            String name = pkg + "p" + (i / 100) + "/";
+            byte[] bytes;
+            if (i < layout.controllersPerJar) {
+                name += "Resource" + i + "Controller";
+                bytes = controllerClass(name, "/" + module + "/resource" + i, layout.mappingsPerController);
+            } else {
+                name += "Component" + i;
+                bytes = plainClass(name);
+            }
+            zip.putNextEntry(new ZipEntry(prefix + name + ".class"));
+            zip.write(bytes);
+        }
+    }
+
+    static byte[] controllerClass(String internalName, String basePath, int mappings) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, "java/lang/Object", null);
+        cw.visitAnnotation(REST_CONTROLLER, true).visitEnd();
+        AnnotationVisitor mapping = cw.visitAnnotation(REQUEST_MAPPING, true);
+        AnnotationVisitor paths = mapping.visitArray("value");
+        paths.visit(null, basePath);
+        paths.visitEnd();
+        mapping.visitEnd();
+        constructor(cw);
+
+        for (int i = 0; i < mappings; i++) {
+            boolean get = i % 2 == 0;
+            String descriptor = get ? "(J)Ljava/lang/String;" : "(Ljava/lang/String;)Ljava/lang/String;";
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "operation" + i, descriptor, null, null);
+            AnnotationVisitor methodMapping = mv.visitAnnotation(get ? GET_MAPPING : POST_MAPPING, true);
+            AnnotationVisitor methodPaths = methodMapping.visitArray("value");
+            methodPaths.visit(null, get ? "/operation" + i + "/{id}" : "/operation" + i);
+            methodPaths.visitEnd();
+            methodMapping.visitEnd();
+            mv.visitAnnotableParameterCount(1, true);
+            AnnotationVisitor param = mv.visitParameterAnnotation(0, get ? PATH_VARIABLE : REQUEST_BODY, true);
+            if (get) {
+                param.visit("value", "id");
+            }
+            param.visitEnd();
+            mv.visitCode();
+            mv.visitLdcInsn("operation" + i);
+            mv.visitInsn(Opcodes.ARETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    // 普通类：几个字段和访问方法，常量池中引用常见的JDK类型
+    static byte[] plainClass(String internalName) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, "java/lang/Object", null);
+        String[][] fields = {{"id", "J"}, {"name", "Ljava/lang/String;"}, {"tags", "Ljava/util/List;"}};
+        for (String[] field : fields) {
+            FieldVisitor fv = cw.visitField(Opcodes.ACC_PRIVATE, field[0], field[1], null, null);
+            fv.visitEnd();
+
+            String suffix = Character.toUpperCase(field[0].charAt(0)) + field[0].substring(1);
+            MethodVisitor getter = cw.visitMethod(Opcodes.ACC_PUBLIC, "get" + suffix, "()" + field[1], null, null);
+            getter.visitCode();
+            getter.visitVarInsn(Opcodes.ALOAD, 0);
+            getter.visitFieldInsn(Opcodes.GETFIELD, internalName, field[0], field[1]);
+            getter.visitInsn(field[1].equals("J") ? Opcodes.LRETURN : Opcodes.ARETURN);
+            getter.visitMaxs(0, 0);
+            getter.visitEnd();
+
+            MethodVisitor setter = cw.visitMethod(Opcodes.ACC_PUBLIC, "set" + suffix, "(" + field[1] + ")V", null, null);
+            setter.visitCode();
+            setter.visitVarInsn(Opcodes.ALOAD, 0);
+            setter.visitVarInsn(field[1].equals("J") ? Opcodes.LLOAD : Opcodes.ALOAD, 1);
+            setter.visitFieldInsn(Opcodes.PUTFIELD, internalName, field[0], field[1]);
+            setter.visitInsn(Opcodes.RETURN);
+            setter.visitMaxs(0, 0);
+            setter.visitEnd();
+        }
+        constructor(cw);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void constructor(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    // Spring Boot要求嵌套JAR以STORED方式存放，需要预先计算CRC
+    private static void putStored(ZipOutputStream zip, String name, byte[] data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(data);
+    }
+
+    private static void copyResource(String resource, OutputStream out) throws IOException {
+        try (InputStream in = FatJarGenerator.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Missing resource: " + resource);
+            }
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.apiextractor.benchmark.harness;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 并行一致性检查：用离线scan在子JVM中按不同并行度多次扫描同一组制品，结果（除时间戳和扫描统计外）必须与第一次扫描完全相同，
+// 包括端点顺序；有差异时打印第一个不同的端点，进程以非0状态退出
+// 不指定制品时用FatJarGenerator生成一个fat jar
+public class ParityHarness {
+    private static final String USAGE = "Usage: java -cp benchmarks.jar " + ParityHarness.class.getName()
+            + " [--agent <jar>] [--work <dir>] [--artifacts a.jar,b.jar,...] [--parallelism 1,2,4,8] [--runs 3]"
+            + " [--format json|compact] [--agent-args <args>]";
+    // 每次扫描都会变化的字段
+    private static final String[] VOLATILE_FIELDS = {"timestamp", "stats"};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        File agent = new File(options.getOrDefault("agent",
+                "spring-api-extractor-agent/target/spring-api-extractor-agent-1.0.0.jar"));
+        if (!agent.isFile()) {
+            System.err.println("Agent JAR not found: " + agent.getAbsolutePath());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        File work = new File(options.getOrDefault("work", System.getProperty("java.io.tmpdir") + "/api-scanner-parity"));
+        if (!work.isDirectory() && !work.mkdirs()) {
+            throw new IOException("Could not create work directory: " + work);
+        }
+
+        List<String> artifacts = new ArrayList<>();
+        if (options.containsKey("artifacts")) {
+            for (String artifact : options.get("artifacts").split(",")) {
+                artifacts.add(new File(artifact.trim()).getAbsolutePath());
+            }
+        } else {
+            File jar = new File(work, "parity.jar");
+            FatJarGenerator.Layout layout = new FatJarGenerator.Layout(20, 200, 2, 5);
+            System.out.println("Generating " + jar.getName() + " (" + layout + ")...");
+            FatJarGenerator.generate(jar, layout);
+            artifacts.add(jar.getAbsolutePath());
+        }
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        String format = options.getOrDefault("format", "json");
+
+        JsonNode baseline = null;
+        String baselineName = null;
+        boolean mismatch = false;
+        for (String value : options.getOrDefault("parallelism", "1,2,4,8").split(",")) {
+            int parallelism = Integer.parseInt(value.trim());
+            for (int run = 1; run <= runs; run++) {
+                String name = "parallelism=" + parallelism + " run " + run;
+                JsonNode catalog = scan(agent, work, artifacts, parallelism, format, options.get("agent-args"));
+                if (baseline == null) {
+                    baseline = catalog;
+                    baselineName = name;
+                    System.out.println(name + ": " + catalog.path("apis").size() + " endpoints (baseline)");
+                } else if (baseline.equals(catalog)) {
+                    System.out.println(name + ": identical");
+                } else {
+                    mismatch = true;
+                    System.out.println(name + ": DIFFERS from " + baselineName + ", " + firstDifference(baseline, catalog));
+                }
+            }
+        }
+        if (mismatch) {
+            System.out.println("Output depends on parallelism or scheduling");
+        }
+        System.exit(mismatch ? 1 : 0);
+    }
+
+    private static JsonNode scan(File agent, File work, List<String> artifacts, int parallelism, String format,
+                                 String agentArgs) throws IOException, InterruptedException {
+        File output = new File(work, "parity-" + parallelism + ".json");
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-jar");
+        command.add(agent.getAbsolutePath());
+        command.add("scan");
+        command.addAll(artifacts);
+        // 关闭预设过滤，生成的JAR名称不会被跳过
+        command.addAll(Arrays.asList("merge=true", "output=" + output.getAbsolutePath(), "format=" + format,
+                "profile=none", "parallelism=" + parallelism));
+        if (agentArgs != null && !agentArgs.isEmpty()) {
+            command.addAll(Arrays.asList(agentArgs.trim().split("\\s+")));
+        }
+        Process process = new ProcessBuilder(command).directory(work).redirectErrorStream(true)
+                .redirectOutput(new File(work, "parity-" + parallelism + ".log")).start();
+        int exit = process.waitFor();
+        if (exit != 0) {
+            throw new IOException("Scan with parallelism " + parallelism + " exited with status " + exit);
+        }
+        JsonNode catalog = new ObjectMapper().readTree(output);
+        for (String field : VOLATILE_FIELDS) {
+            ((ObjectNode) catalog).remove(field);
+        }
+        output.delete();
+        return catalog;
+    }
+
+    private static String firstDifference(JsonNode expected, JsonNode actual) {
+        JsonNode expectedApis = expected.path("apis");
+        JsonNode actualApis = actual.path("apis");
+        for (int i = 0; i < Math.max(expectedApis.size(), actualApis.size()); i++) {
+            if (!expectedApis.path(i).equals(actualApis.path(i))) {
+                return "first difference at endpoint " + i + ": expected " + expectedApis.path(i)
+                        + " but found " + actualApis.path(i);
+            }
+        }
+        return "header fields differ";
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+}
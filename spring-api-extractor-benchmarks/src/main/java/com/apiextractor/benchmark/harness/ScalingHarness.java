@@ -0,0 +1,192 @@
+package com.apiextractor.benchmark.harness;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// 端到端扩展性测试：按不同规模生成fat jar，在子JVM中以-javaagent同步扫描，记录耗时、峰值堆和GC时间
+// 单位类的扫描耗时或峰值堆随规模增长超过阈值时判定为超线性增长，进程以非0状态退出
+public class ScalingHarness {
+    private static final Pattern SCAN_TIME = Pattern.compile("\\[API Scanner\\] Scan complete in (\\d+) ms");
+    private static final Pattern PROBE = Pattern.compile(
+            Pattern.quote(ScanProbe.PREFIX) + "peakHeapBytes=(\\d+) gcTimeMs=(\\d+) gcCount=(\\d+)");
+
+    private static final String USAGE = "Usage: java -cp benchmarks.jar " + ScalingHarness.class.getName()
+            + " [--agent <jar>] [--work <dir>] [--libs 10] [--classes 200] [--controllers 2] [--mappings 5]"
+            + " [--scales 1,10,100] [--dimension libs|classes] [--agent-args <args>] [--jvm-args <args>]"
+            + " [--threshold 1.5] [--keep true]";
+
+    static final class Result {
+        int scale;
+        FatJarGenerator.Layout layout;
+        long jarBytes;
+        long wallMillis;
+        long scanMillis;
+        long peakHeapBytes;
+        long gcMillis;
+        long gcCount;
+        long apiCount;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        File agent = new File(options.getOrDefault("agent",
+                "spring-api-extractor-agent/target/spring-api-extractor-agent-1.0.0.jar"));
+        if (!agent.isFile()) {
+            System.err.println("Agent JAR not found: " + agent.getAbsolutePath());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        File work = new File(options.getOrDefault("work", System.getProperty("java.io.tmpdir") + "/api-scanner-scaling"));
+        if (!work.isDirectory() && !work.mkdirs()) {
+            throw new IOException("Could not create work directory: " + work);
+        }
+
+        int libs = Integer.parseInt(options.getOrDefault("libs", "10"));
+        int classes = Integer.parseInt(options.getOrDefault("classes", "200"));
+        int controllers = Integer.parseInt(options.getOrDefault("controllers", "2"));
+        int mappings = Integer.parseInt(options.getOrDefault("mappings", "5"));
+        boolean scaleClasses = "classes".equals(options.getOrDefault("dimension", "libs"));
+        double threshold = Double.parseDouble(options.getOrDefault("threshold", "1.5"));
+        boolean keep = Boolean.parseBoolean(options.getOrDefault("keep", "false"));
+
+        List<Result> results = new ArrayList<>();
+        for (String value : options.getOrDefault("scales", "1,10,100").split(",")) {
+            int scale = Integer.parseInt(value.trim());
+            FatJarGenerator.Layout layout = scaleClasses
+                    ? new FatJarGenerator.Layout(libs, classes * scale, controllers, mappings)
+                    : new FatJarGenerator.Layout(libs * scale, classes, controllers, mappings);
+            results.add(run(agent, work, scale, layout, options.get("agent-args"), options.get("jvm-args"), keep));
+        }
+
+        boolean superLinear = report(results, threshold);
+        System.exit(superLinear ? 1 : 0);
+    }
+
+    private static Result run(File agent, File work, int scale, FatJarGenerator.Layout layout, String agentArgs,
+                              String jvmArgs, boolean keep) throws IOException, InterruptedException {
+        Result result = new Result();
+        result.scale = scale;
+        result.layout = layout;
+
+        File jar = new File(work, "scaling-" + scale + "x.jar");
+        File output = new File(work, "scaling-" + scale + "x.json");
+        System.out.println("Generating " + jar.getName() + " (" + layout + ")...");
+        FatJarGenerator.generate(jar, layout);
+        result.jarBytes = jar.length();
+
+        // 同步扫描，保证ScanProbe在扫描结束后才报告；关闭预设过滤，生成的JAR名称不会被跳过
+        String arguments = "output=" + output.getAbsolutePath() + ",async=false,profile=none"
+                + (agentArgs != null && !agentArgs.isEmpty() ? "," + agentArgs : "");
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        if (jvmArgs != null && !jvmArgs.isEmpty()) {
+            command.addAll(Arrays.asList(jvmArgs.trim().split("\\s+")));
+        }
+        command.add("-javaagent:" + agent.getAbsolutePath() + "=" + arguments);
+        command.add("-jar");
+        command.add(jar.getAbsolutePath());
+
+        System.out.println("Scanning " + jar.getName() + "...");
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).directory(work).redirectErrorStream(true).start();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher scan = SCAN_TIME.matcher(line);
+                Matcher probe = PROBE.matcher(line);
+                if (scan.find()) {
+                    result.scanMillis = Long.parseLong(scan.group(1));
+                } else if (probe.find()) {
+                    result.peakHeapBytes = Long.parseLong(probe.group(1));
+                    result.gcMillis = Long.parseLong(probe.group(2));
+                    result.gcCount = Long.parseLong(probe.group(3));
+                }
+            }
+        }
+        int exit = process.waitFor();
+        result.wallMillis = (System.nanoTime() - start) / 1_000_000;
+        if (exit != 0) {
+            throw new IOException("Scan of " + jar.getName() + " exited with status " + exit);
+        }
+
+        JsonNode catalog = new ObjectMapper().readTree(output);
+        result.apiCount = catalog.path("apiCount").asLong();
+        if (result.apiCount != layout.expectedApis()) {
+            System.err.println("WARNING: expected " + layout.expectedApis() + " APIs in " + output.getName()
+                    + " but found " + result.apiCount);
+        }
+
+        if (!keep) {
+            jar.delete();
+            output.delete();
+        }
+        return result;
+    }
+
+    // 以第一个规模为基准，比较每个规模的 耗时/类 与 峰值堆/类
+    private static boolean report(List<Result> results, double threshold) {
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-6s %10s %8s %10s %10s %10s %10s %8s %8s %9s %9s",
+                "scale", "classes", "jar MB", "wall ms", "scan ms", "us/class", "heap MB", "gc ms", "gc #",
+                "time x", "heap x"));
+
+        boolean superLinear = false;
+        Result base = results.get(0);
+        for (Result result : results) {
+            double inputRatio = (double) result.layout.totalClasses() / base.layout.totalClasses();
+            double timeGrowth = growth(result.scanMillis, base.scanMillis, inputRatio);
+            double heapGrowth = growth(result.peakHeapBytes, base.peakHeapBytes, inputRatio);
+            boolean flagged = result != base && (timeGrowth > threshold || heapGrowth > threshold);
+            superLinear |= flagged;
+
+            System.out.println(String.format(Locale.ROOT, "%-6s %10d %8.1f %10d %10d %10.2f %10.1f %8d %8d %9.2f %9.2f%s",
+                    result.scale + "x", result.layout.totalClasses(), result.jarBytes / 1048576.0,
+                    result.wallMillis, result.scanMillis,
+                    result.scanMillis * 1000.0 / result.layout.totalClasses(),
+                    result.peakHeapBytes / 1048576.0, result.gcMillis, result.gcCount,
+                    timeGrowth, heapGrowth, flagged ? "  SUPER-LINEAR" : ""));
+        }
+        System.out.println();
+        System.out.println("time x / heap x: growth of scan time and peak heap relative to input growth "
+                + "(1.00 = linear); threshold " + threshold);
+        if (superLinear) {
+            System.out.println("Super-linear growth detected");
+        }
+        return superLinear;
+    }
+
+    // 实际增长倍数除以输入增长倍数；基准值为0时无法比较，按线性处理
+    private static double growth(long value, long baseValue, double inputRatio) {
+        if (baseValue <= 0) {
+            return 1.0;
+        }
+        return ((double) value / baseValue) / inputRatio;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,27 @@
+package com.apiextractor.benchmark.harness;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+// 生成的fat jar的主类：agent以同步方式扫描完成后才会执行main，此时报告扫描期间的峰值堆和GC开销
+public class ScanProbe {
+    static final String PREFIX = "[Scan Probe] ";
+
+    public static void main(String[] args) {
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        long gcTime = 0;
+        long gcCount = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcTime += Math.max(0, gc.getCollectionTime());
+            gcCount += Math.max(0, gc.getCollectionCount());
+        }
+        System.out.println(PREFIX + "peakHeapBytes=" + peakHeap + " gcTimeMs=" + gcTime + " gcCount=" + gcCount);
+    }
+}